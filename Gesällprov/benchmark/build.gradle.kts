@@ -0,0 +1,30 @@
+/**
+ * Module :benchmark
+ * JMH-mätningar av budgetens kärnlogik i :budget-core (Ledger, Expense, Money och
+ * BudgetShares) på en vanlig JVM, utan Android. Körs med "gradle :benchmark:jmh" och resultatet
+ * skrivs som JSON till build/results/jmh/results.json så att körningar kan jämföras.
+ */
+
+plugins {
+    java
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+repositories {
+    mavenCentral()
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+dependencies {
+    implementation(project(":budget-core"))
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+}
@@ -0,0 +1,215 @@
+package com.budgy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LedgerBenchmark mäter de operationer som appen gör mot budgeten: att lägga till
+ * och ta bort utgifter, hämta totaler, hämta och gå igenom listorna, bläddra genom
+ * en lista sida för sida och jämföra listan före och efter en ändring, samt beräkna
+ * andelar och balans för Summary, summera en följd av månader, räkna fram balansen
+ * trettio år framåt med återkommande utgifter, göra en prognos över fyrtio år för
+ * tjugo scenarier och föreslå namn. Raderna sprids över
+ * fem års historik. Varje mätning görs med 10, 10 000 och 1 000 000 rader, och med
+ * standardkategorierna respektive 128 kategorier för att se att summeringen över
+ * alla kategorier inte blir märkbart långsammare.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LedgerBenchmark {
+    private static final int BATCH_SIZE = 1024;
+    private static final int NAME_COUNT = 100;
+    private static final int HISTORY_DAYS = 5 * 365;
+    private static final int RECURRING_COUNT = 16;
+    private static final int SCENARIO_COUNT = 20;
+
+    private final Forecast.Scenario[] scenarios = new Forecast.Scenario[SCENARIO_COUNT];
+
+    private final String[] suggestions = new String[NameIndex.MAX_SUGGESTIONS];
+
+    private final ExpensePages pages = new ExpensePages();
+    private int changedRanges;
+    private final ExpensePages.OnRangeChangedListener rangeCounter = new ExpensePages.OnRangeChangedListener() {
+        @Override
+        public void onInserted(int position, int count) {
+            changedRanges++;
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            changedRanges++;
+        }
+    };
+
+    @Param({"10", "10000", "1000000"})
+    public int entries;
+
+    @Param({"3", "128"})
+    public int categoryCount;
+
+    /**
+     * Fyller budgeten med det angivna antalet rader, fördelade jämnt över kategorierna.
+     */
+    @Setup(Level.Trial)
+    public void fill() {
+        Expense.resetData();
+        Expense.setIncome(Money.ofKronor(35_000));
+        while (Expense.getCategoryCount() < categoryCount) {
+            Expense.addCategory("Kategori " + Expense.getCategoryCount());
+        }
+
+        int[] categories = new int[BATCH_SIZE];
+        String[] names = new String[BATCH_SIZE];
+        long[] amounts = new long[BATCH_SIZE];
+        int[] days = new int[BATCH_SIZE];
+        int lastDay = Dates.today();
+        for (int start = 0; start < entries; start += BATCH_SIZE) {
+            int count = Math.min(BATCH_SIZE, entries - start);
+            for (int i = 0; i < count; i++) {
+                int row = start + i;
+                categories[i] = row % categoryCount;
+                names[i] = "Utgift " + (row % NAME_COUNT);
+                amounts[i] = 100 + row % 50_000;
+                days[i] = lastDay - row % HISTORY_DAYS;
+            }
+            Expense.addAll(categories, names, amounts, days, count);
+        }
+        for (int i = 0; i < RECURRING_COUNT; i++) {
+            Expense.addRecurring(i % categoryCount, "Abonnemang " + i, 9_900 + i, Recurrences.MONTHLY,
+                    Recurrences.NO_END);
+        }
+        Expense.addLoan(Ledger.LOAN_CREDIT, "Bolån", Money.ofKronor(2_500_000), 450, 360);
+        Expense.addLoan(Ledger.LOAN_CREDIT, "Billån", Money.ofKronor(180_000), 690, 60);
+        Expense.addLoan(Ledger.LOAN_CREDIT, "CSN", Money.ofKronor(250_000), 100, 300);
+        //Halva scenarierna amorterar extra, andra halvan får en ny ränta efter ett år
+        for (int i = 0; i < SCENARIO_COUNT; i++) {
+            scenarios[i] = i % 2 == 0
+                    ? new Forecast.Scenario(Money.ofKronor(500L * i), -1, 0)
+                    : new Forecast.Scenario(0, 12, 200 + 50 * i);
+        }
+    }
+
+    /**
+     * Lägger till en utgift och tar bort den igen, så att storleken är oförändrad mellan anropen.
+     */
+    @Benchmark
+    public void addAndRemove() {
+        Expense.add(Ledger.VARIABLE, "Kaffe", 4_500);
+        Expense.remove(Ledger.VARIABLE, Expense.getExpenses(Ledger.VARIABLE).size() - 1);
+    }
+
+    /**
+     * Summerar de löpande totalerna för alla kategorier.
+     */
+    @Benchmark
+    public long totals() {
+        return Expense.getState().totalExpenses();
+    }
+
+    /**
+     * Hämtar listan över rörliga utgifter utan att gå igenom den.
+     */
+    @Benchmark
+    public List<Expense> snapshot() {
+        return Expense.getExpenses(Ledger.VARIABLE);
+    }
+
+    /**
+     * Hämtar listan över rörliga utgifter och går igenom varje rad, som när listan visas.
+     */
+    @Benchmark
+    public void snapshotIterate(Blackhole blackhole) {
+        List<Expense> expenses = Expense.getExpenses(Ledger.VARIABLE);
+        for (int i = 0, n = expenses.size(); i < n; i++) {
+            blackhole.consume(expenses.get(i));
+        }
+    }
+
+    /**
+     * Bläddrar genom hela listan över rörliga utgifter sida för sida, som när
+     * användaren scrollar. Högst ExpensePages.MAX_PAGES sidor finns inlästa samtidigt.
+     */
+    @Benchmark
+    public void pagedIterate(Blackhole blackhole) {
+        pages.submit(Expense.getExpenses(Ledger.VARIABLE));
+        for (int i = 0, n = pages.size(); i < n; i++) {
+            blackhole.consume(pages.get(i));
+        }
+    }
+
+    /**
+     * Lägger till en utgift och jämför listan före och efter på id, som när listan
+     * uppdateras, och tar sedan bort utgiften igen.
+     */
+    @Benchmark
+    public int diffAfterAdd() {
+        Ledger.Snapshot before = Expense.getExpenses(Ledger.VARIABLE);
+        Expense.add(Ledger.VARIABLE, "Kaffe", 4_500);
+        Ledger.Snapshot after = Expense.getExpenses(Ledger.VARIABLE);
+        changedRanges = 0;
+        ExpensePages.diff(before, after, rangeCounter);
+        Expense.remove(Ledger.VARIABLE, after.size() - 1);
+        return changedRanges;
+    }
+
+    /**
+     * Summerar en kategori över de senaste tolv månaderna ur månadsindexet.
+     */
+    @Benchmark
+    public long yearTotal() {
+        int month = Dates.currentMonth();
+        return Expense.getState().months().monthsTotal(Ledger.VARIABLE, month - 11, month);
+    }
+
+    /**
+     * Beräknar balansen för de kommande trettio åren, där de återkommande utgifterna
+     * räknas fram i sluten form i stället för månad för månad.
+     */
+    @Benchmark
+    public long thirtyYearBalance() {
+        int month = Dates.currentMonth();
+        return Expense.getState().balance(month, month + 30 * 12 - 1);
+    }
+
+    /**
+     * Förbereder en prognos över fyrtio år och räknar fram den för alla scenarier parallellt.
+     */
+    @Benchmark
+    public Forecast.Result[] forecast() {
+        return Forecast.of(Expense.getState(), Dates.currentMonth() + 1, Forecast.MAX_YEARS).runAll(scenarios);
+    }
+
+    /**
+     * Beräknar procentandelar och balans så som Summary gör.
+     */
+    @Benchmark
+    public BudgetShares shares() {
+        return BudgetShares.forMonth(Expense.getState(), Dates.currentMonth());
+    }
+
+    /**
+     * Hämtar namnförslag för ett prefix, som vid en tangenttryckning i namnfältet.
+     */
+    @Benchmark
+    public int suggestNames() {
+        return Expense.suggestNames("utgift 1", suggestions);
+    }
+}
@@ -0,0 +1,23 @@
+/**
+ * Module :budget-core
+ * Budgetens kärnlogik utan beroenden till Android: lagringen av utgifter (Ledger),
+ * beloppstypen Money, beräkningarna för Summary och importen av kontoutdrag.
+ * Modulen används av :app och kan testas och mätas på en vanlig JVM.
+ */
+
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    testImplementation("junit:junit:4.13.2")
+}
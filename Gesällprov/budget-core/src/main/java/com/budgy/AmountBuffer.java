@@ -0,0 +1,235 @@
+package com.budgy;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * AmountBuffer håller ett belopp som användaren skriver in, som siffror i en buffert.
+ * <p>
+ * Bufferten läser siffrorna och decimaltecknet ur en text, oavsett vilka andra
+ * tecken texten innehåller, och formaterar dem med språkets tusentalsavgränsare
+ * och decimaltecken, till exempel "12 345,5" för svenska. Den formaterade texten
+ * läses direkt ur bufferten som en {@link CharSequence}, så varken läsning,
+ * formatering eller tolkning skapar några objekt. Tolkningen till öre kastar aldrig
+ * undantag: tecken som inte hör till ett belopp hoppas över och siffror utöver
+ * {@link #MAX_INTEGER_DIGITS} respektive två decimaler ignoreras.
+ */
+public final class AmountBuffer implements CharSequence {
+    /**
+     * Största antalet heltalssiffror, så att beloppet i öre alltid ryms i en long.
+     */
+    public static final int MAX_INTEGER_DIGITS = 13;
+
+    private static final int MAX_DECIMALS = 2;
+    private static final int GROUP_SIZE = 3;
+    private static final int MAX_LENGTH = MAX_INTEGER_DIGITS + (MAX_INTEGER_DIGITS - 1) / GROUP_SIZE + 1 + MAX_DECIMALS;
+
+    private final char groupSeparator;
+    private final char decimalSeparator;
+
+    //Siffrorna som skrivits in, utan avgränsare
+    private final char[] integerDigits = new char[MAX_INTEGER_DIGITS];
+    private final char[] decimalDigits = new char[MAX_DECIMALS];
+    private int integerCount = 0;
+    private int decimalCount = 0;
+    private boolean hasDecimalSeparator = false;
+
+    //Den formaterade texten, skrivs om efter varje ändring
+    private final char[] display = new char[MAX_LENGTH];
+    private int length = 0;
+
+    /**
+     * Konstruktor för AmountBuffer med avgränsare från ett språk.
+     *
+     * @param locale Språket vars tusentalsavgränsare och decimaltecken används.
+     */
+    public AmountBuffer(Locale locale) {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        this.groupSeparator = symbols.getGroupingSeparator();
+        this.decimalSeparator = symbols.getDecimalSeparator();
+    }
+
+    /**
+     * Läser siffrorna och decimaltecknet ur en del av en text och formaterar om bufferten.
+     * Både språkets decimaltecken och punkt eller komma godtas som decimaltecken, så
+     * länge tecknet inte är språkets tusentalsavgränsare. Bara det första decimaltecknet
+     * räknas och inledande nollor tas bort.
+     *
+     * @param text  Texten som läses.
+     * @param start Index för första tecknet.
+     * @param end   Index efter sista tecknet.
+     */
+    public void read(CharSequence text, int start, int end) {
+        integerCount = 0;
+        decimalCount = 0;
+        hasDecimalSeparator = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (hasDecimalSeparator) {
+                    if (decimalCount < MAX_DECIMALS) {
+                        decimalDigits[decimalCount++] = c;
+                    }
+                } else if (integerCount == 1 && integerDigits[0] == '0') {
+                    integerDigits[0] = c; //En inledande nolla ersätts av nästa siffra
+                } else if (integerCount < MAX_INTEGER_DIGITS) {
+                    integerDigits[integerCount++] = c;
+                }
+            } else if (isDecimalSeparator(c)) {
+                hasDecimalSeparator = true;
+            }
+        }
+        format();
+    }
+
+    /**
+     * Sätter bufferten till ett belopp. Ören visas bara om beloppet inte är jämna kronor.
+     *
+     * @param amount Beloppet i öre, negativa belopp räknas som noll.
+     */
+    public void set(long amount) {
+        long ore = Math.max(amount, 0);
+        long kronor = Math.min(ore / Money.ORE_PER_KRONA, 9_999_999_999_999L);
+        int rest = (int) (ore % Money.ORE_PER_KRONA);
+
+        integerCount = 0;
+        if (kronor > 0) {
+            //Räkna siffrorna först så att de kan skrivas bakifrån på rätt plats
+            for (long k = kronor; k > 0; k /= 10) {
+                integerCount++;
+            }
+            for (int i = integerCount - 1; i >= 0; i--) {
+                integerDigits[i] = (char) ('0' + kronor % 10);
+                kronor /= 10;
+            }
+        }
+        hasDecimalSeparator = rest != 0;
+        decimalCount = rest != 0 ? MAX_DECIMALS : 0;
+        decimalDigits[0] = (char) ('0' + rest / 10);
+        decimalDigits[1] = (char) ('0' + rest % 10);
+        if (integerCount == 0 && rest != 0) {
+            integerDigits[integerCount++] = '0';
+        }
+        format();
+    }
+
+    /**
+     * Tömmer bufferten.
+     */
+    public void clear() {
+        integerCount = 0;
+        decimalCount = 0;
+        hasDecimalSeparator = false;
+        length = 0;
+    }
+
+    /**
+     * Kontrollerar om bufferten saknar siffror.
+     *
+     * @return true om inga siffror har skrivits in.
+     */
+    public boolean isEmpty() {
+        return integerCount == 0 && decimalCount == 0 && !hasDecimalSeparator;
+    }
+
+    /**
+     * Tolkar bufferten som ett belopp. Kastar aldrig undantag.
+     *
+     * @return Beloppet i öre, eller 0 om bufferten är tom.
+     */
+    public long toAmount() {
+        long kronor = 0;
+        for (int i = 0; i < integerCount; i++) {
+            kronor = kronor * 10 + (integerDigits[i] - '0');
+        }
+        long ore = 0;
+        for (int i = 0; i < MAX_DECIMALS; i++) {
+            ore = ore * 10 + (i < decimalCount ? decimalDigits[i] - '0' : 0);
+        }
+        return kronor * Money.ORE_PER_KRONA + ore;
+    }
+
+    /**
+     * Räknar de tecken i en del av en text som {@link #read} tar med, alltså siffror
+     * och decimaltecken. Används för att behålla markörens plats när texten formateras om.
+     *
+     * @param text  Texten.
+     * @param start Index för första tecknet.
+     * @param end   Index efter sista tecknet.
+     * @return Antalet siffror och decimaltecken.
+     */
+    public int countSignificant(CharSequence text, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if ((c >= '0' && c <= '9') || isDecimalSeparator(c)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Hämtar positionen i den formaterade texten efter ett visst antal siffror och decimaltecken.
+     *
+     * @param significant Antalet siffror och decimaltecken före positionen.
+     * @return Positionen i den formaterade texten.
+     */
+    public int positionAfter(int significant) {
+        int position = 0;
+        while (significant > 0 && position < length) {
+            if (display[position] != groupSeparator) {
+                significant--;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return display[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new String(display, start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(display, 0, length);
+    }
+
+    private boolean isDecimalSeparator(char c) {
+        return c == decimalSeparator || ((c == '.' || c == ',') && c != groupSeparator);
+    }
+
+    /**
+     * Skriver siffrorna med avgränsare till den formaterade texten.
+     */
+    private void format() {
+        int position = 0;
+        if (integerCount == 0 && hasDecimalSeparator) {
+            display[position++] = '0';
+        }
+        for (int i = 0; i < integerCount; i++) {
+            if (i > 0 && (integerCount - i) % GROUP_SIZE == 0) {
+                display[position++] = groupSeparator;
+            }
+            display[position++] = integerDigits[i];
+        }
+        if (hasDecimalSeparator) {
+            display[position++] = decimalSeparator;
+            for (int i = 0; i < decimalCount; i++) {
+                display[position++] = decimalDigits[i];
+            }
+        }
+        length = position;
+    }
+}
@@ -0,0 +1,145 @@
+package com.budgy;
+
+import java.util.Arrays;
+
+/**
+ * BudgetShares beräknar hur budgeten fördelas mellan inkomst och utgiftskategorier,
+ * det vill säga procentandelarna och balansen som visas i Summary.
+ * Beräkningen görs från ett och samma {@link Ledger.State}, så andelar och balans
+ * alltid hör till samma version av budgeten.
+ */
+public final class BudgetShares {
+    private final long income;
+    private final long[] totals;
+    private final long balance;
+    private final long whole;
+    private final float incomePercent;
+    private final float[] percents;
+
+    private BudgetShares(long income, long[] totals, long balance, long whole,
+                         float incomePercent, float[] percents) {
+        this.income = income;
+        this.totals = totals;
+        this.balance = balance;
+        this.whole = whole;
+        this.incomePercent = incomePercent;
+        this.percents = percents;
+    }
+
+    /**
+     * Beräknar fördelningen för alla inlästa rader i ett tillstånd av budgeten.
+     * Andelarna räknas mot summan av inkomst och alla utgifter.
+     *
+     * @param state Tillståndet som ska sammanfattas.
+     * @return Fördelningen för tillståndet.
+     */
+    public static BudgetShares of(Ledger.State state) {
+        long[] totals = Arrays.copyOf(state.totals(), state.categoryCount());
+        return compute(state.getIncome(), totals);
+    }
+
+    /**
+     * Beräknar fördelningen för en enskild månad ur månadsindexet, oavsett om
+     * månadens rader är inlästa. Återkommande rader räknas med i varje månad som
+     * de infaller. Kostar en uppslagning per kategori plus en beräkning per regel,
+     * men aldrig en genomgång av raderna.
+     *
+     * @param state Tillståndet som ska sammanfattas.
+     * @param month Månaden, se {@link Dates}.
+     * @return Fördelningen för månaden.
+     */
+    public static BudgetShares forMonth(Ledger.State state, int month) {
+        MonthIndex months = state.months();
+        long[] totals = new long[state.categoryCount()];
+        for (int c = 0; c < totals.length; c++) {
+            totals[c] = months.monthTotal(c, month);
+        }
+        state.recurrences().addMonthsTotals(month, month, totals);
+        return compute(state.getIncome(), totals);
+    }
+
+    private static BudgetShares compute(long income, long[] totals) {
+        long whole = income;
+        long balance = income;
+        for (int c = 0; c < totals.length; c++) {
+            whole = Money.add(whole, totals[c]);
+            balance = Money.subtract(balance, totals[c]);
+        }
+
+        float[] percents = new float[totals.length];
+        float incomePercent = 0;
+        if (whole > 0) {
+            incomePercent = (float) (income * 100.0 / whole);
+            for (int c = 0; c < totals.length; c++) {
+                percents[c] = (float) (totals[c] * 100.0 / whole);
+            }
+        }
+        return new BudgetShares(income, totals, balance, whole, incomePercent, percents);
+    }
+
+    /**
+     * Kontrollerar om det finns något att fördela, det vill säga om inkomst
+     * och utgifter tillsammans är större än noll.
+     *
+     * @return true om andelarna går att visa.
+     */
+    public boolean hasShares() {
+        return whole > 0;
+    }
+
+    /**
+     * Hämtar antalet kategorier i fördelningen.
+     *
+     * @return Antalet kategorier.
+     */
+    public int getCategoryCount() {
+        return totals.length;
+    }
+
+    /**
+     * Hämtar inkomsten.
+     *
+     * @return Inkomsten i öre.
+     */
+    public long getIncome() {
+        return income;
+    }
+
+    /**
+     * Hämtar totalen för en kategori.
+     *
+     * @param category Kategorin.
+     * @return Kategorins total i öre.
+     */
+    public long getTotal(int category) {
+        return totals[category];
+    }
+
+    /**
+     * Hämtar inkomstens andel av budgeten.
+     *
+     * @return Andelen i procent.
+     */
+    public float getIncomePercent() {
+        return incomePercent;
+    }
+
+    /**
+     * Hämtar en kategoris andel av budgeten.
+     *
+     * @param category Kategorin.
+     * @return Andelen i procent.
+     */
+    public float getPercent(int category) {
+        return percents[category];
+    }
+
+    /**
+     * Hämtar balansen, det vill säga inkomsten minus alla utgifter.
+     *
+     * @return Balansen i öre.
+     */
+    public long getBalance() {
+        return balance;
+    }
+}
@@ -0,0 +1,128 @@
+package com.budgy;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * ChangeNotifier skickar meddelanden om ändringar i budgeten till prenumeranter.
+ * <p>
+ * Ändringar kan komma från vilken tråd som helst. De samlas ihop och skickas som
+ * ett enda {@link LedgerChange} när schemaläggaren kör utskicket, så att en skur av
+ * ändringar, till exempel en import, bara ger ett anrop per mottagare. I appen
+ * schemaläggs utskicket till nästa bildruta på huvudtråden; utan schemaläggare
+ * skickas varje ändring direkt på tråden som gjorde den.
+ */
+public final class ChangeNotifier {
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Runnable dispatch = this::dispatch;
+    private volatile Scheduler scheduler = Runnable::run;
+
+    //Ändringar som väntar på utskick, skyddas av this
+    private boolean scheduled = false;
+    private int pendingKinds = 0;
+    private long pendingCategories = 0;
+    private long pendingVersion = 0;
+    private long dispatchedVersion = 0;
+
+    /**
+     * Listener tar emot sammanslagna ändringsmeddelanden.
+     */
+    public interface Listener {
+        /**
+         * Anropas en gång per utskick med alla ändringar sedan förra utskicket.
+         *
+         * @param change Ändringarna.
+         */
+        void onLedgerChanged(LedgerChange change);
+    }
+
+    /**
+     * Scheduler bestämmer när och på vilken tråd ett utskick körs.
+     */
+    public interface Scheduler {
+        /**
+         * Schemalägger ett utskick. Anropas högst en gång innan utskicket har körts.
+         *
+         * @param dispatch Utskicket som ska köras.
+         */
+        void schedule(Runnable dispatch);
+    }
+
+    /**
+     * Subscription är en prenumeration som kan avslutas.
+     */
+    public final class Subscription {
+        private final Listener listener;
+
+        private Subscription(Listener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Avslutar prenumerationen. Mottagaren får inga fler meddelanden efter att
+         * ett pågående utskick är klart.
+         */
+        public void cancel() {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Sätter schemaläggaren för utskick, till exempel en som väntar till nästa bildruta.
+     *
+     * @param scheduler Schemaläggaren som ska användas.
+     */
+    public void setScheduler(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Lägger till en mottagare av ändringsmeddelanden.
+     *
+     * @param listener Mottagaren.
+     * @return Prenumerationen, som avslutas med {@link Subscription#cancel()}.
+     */
+    public Subscription subscribe(Listener listener) {
+        listeners.add(listener);
+        return new Subscription(listener);
+    }
+
+    /**
+     * Noterar en ändring och schemalägger ett utskick om inget redan väntar.
+     *
+     * @param kind       Sorten av ändring, se {@link LedgerChange}.
+     * @param categories Mask med de kategorier som ändrades, se {@link LedgerChange#maskOf(int)}.
+     * @param version    Budgetens version efter ändringen.
+     */
+    void record(int kind, long categories, long version) {
+        synchronized (this) {
+            pendingKinds |= kind;
+            pendingCategories |= categories;
+            pendingVersion = Math.max(pendingVersion, version);
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        scheduler.schedule(dispatch);
+    }
+
+    /**
+     * Skickar de samlade ändringarna till alla mottagare.
+     */
+    private void dispatch() {
+        LedgerChange change;
+        synchronized (this) {
+            scheduled = false;
+            if (pendingKinds == 0) {
+                return;
+            }
+            change = new LedgerChange(dispatchedVersion, pendingVersion, pendingKinds, pendingCategories);
+            dispatchedVersion = pendingVersion;
+            pendingKinds = 0;
+            pendingCategories = 0;
+        }
+        for (Listener listener : listeners) {
+            listener.onLedgerChanged(change);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.budgy;
+
+import java.util.TimeZone;
+
+/**
+ * Dates räknar med datum som heltal utan att skapa några objekt.
+ * Ett datum är antalet dagar sedan 1970-01-01 (epokdag) och en månad är antalet
+ * månader sedan januari 1970, så att båda kan lagras i primitiva arrayer och
+ * användas direkt som index. Omräkningen till år, månad och dag följer den
+ * proleptiska gregorianska kalendern.
+ */
+public final class Dates {
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final int DAYS_PER_ERA = 146_097; //Antal dagar på 400 år
+    private static final int EPOCH_SHIFT = 719_468; //Dagar från 0000-03-01 till 1970-01-01
+
+    private Dates() {
+    }
+
+    /**
+     * Hämtar dagens datum i enhetens tidszon.
+     *
+     * @return Dagens epokdag.
+     */
+    public static int today() {
+        long now = System.currentTimeMillis();
+        return (int) Math.floorDiv(now + TimeZone.getDefault().getOffset(now), MILLIS_PER_DAY);
+    }
+
+    /**
+     * Hämtar den aktuella månaden i enhetens tidszon.
+     *
+     * @return Månaden som antal månader sedan januari 1970.
+     */
+    public static int currentMonth() {
+        return monthOf(today());
+    }
+
+    /**
+     * Skapar ett datum från år, månad och dag.
+     *
+     * @param year       Året.
+     * @param month      Månaden, 1 till 12.
+     * @param dayOfMonth Dagen i månaden, 1 till 31.
+     * @return Epokdagen.
+     */
+    public static int of(int year, int month, int dayOfMonth) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + dayOfMonth - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_ERA + dayOfEra - EPOCH_SHIFT;
+    }
+
+    /**
+     * Hämtar månaden som ett datum ligger i.
+     *
+     * @param day Epokdagen.
+     * @return Månaden som antal månader sedan januari 1970.
+     */
+    public static int monthOf(int day) {
+        int z = day + EPOCH_SHIFT;
+        int era = Math.floorDiv(z, DAYS_PER_ERA);
+        int dayOfEra = z - era * DAYS_PER_ERA;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153; //Mars är 0
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return (year - 1970) * 12 + month - 1;
+    }
+
+    /**
+     * Hämtar dagen i månaden för ett datum.
+     *
+     * @param day Epokdagen.
+     * @return Dagen i månaden, 1 till 31.
+     */
+    public static int dayOfMonth(int day) {
+        return day - firstDayOf(monthOf(day)) + 1;
+    }
+
+    /**
+     * Hämtar första dagen i en månad.
+     *
+     * @param month Månaden som antal månader sedan januari 1970.
+     * @return Epokdagen för månadens första dag.
+     */
+    public static int firstDayOf(int month) {
+        return of(yearOf(month), monthOfYear(month), 1);
+    }
+
+    /**
+     * Hämtar sista dagen i en månad.
+     *
+     * @param month Månaden som antal månader sedan januari 1970.
+     * @return Epokdagen för månadens sista dag.
+     */
+    public static int lastDayOf(int month) {
+        return firstDayOf(month + 1) - 1;
+    }
+
+    /**
+     * Hämtar året för en månad.
+     *
+     * @param month Månaden som antal månader sedan januari 1970.
+     * @return Året.
+     */
+    public static int yearOf(int month) {
+        return 1970 + Math.floorDiv(month, 12);
+    }
+
+    /**
+     * Hämtar månadens nummer inom året.
+     *
+     * @param month Månaden som antal månader sedan januari 1970.
+     * @return Månadens nummer, 1 till 12.
+     */
+    public static int monthOfYear(int month) {
+        return Math.floorMod(month, 12) + 1;
+    }
+}
@@ -0,0 +1,487 @@
+package com.budgy;
+
+/**
+ * Expense-klassen hanterar inkomster och utgifter i olika kategorier.
+ * Från början finns fasta utgifter, lån och krediter samt rörliga utgifter,
+ * och användaren kan lägga till egna kategorier. Varje kategori har ett id,
+ * se {@link Ledger}, och alla metoder för utgifter tar kategorins id.
+ * Den möjliggör att lägga till, hämta, beräkna totaler och ta bort utgifter.
+ * Det finns en aktiv budget åt gången. Andra profiler byts in med {@link #switchTo(Ledger)}.
+ * Själva raderna lagras kolumnvis i en {@link Ledger}, som är trådsäker så att
+ * till exempel importer kan lägga till utgifter från en bakgrundstråd.
+ * Listan och totalen för en kategori gäller innevarande månad, precis som Summary,
+ * så båda skärmarna räknar med samma rader även när tidigare månader bara finns
+ * som summor i månadsindexet.
+ * Alla belopp anges i öre, se {@link Money}.
+ */
+public class Expense {
+    private static volatile Ledger ledger = new Ledger();
+    private static volatile boolean attached = false;
+    private static volatile boolean incomeChangedBeforeAttach = false;
+    private static volatile boolean resetBeforeAttach = false;
+    private static final ChangeNotifier changes = new ChangeNotifier();
+    //Den aktiva budgetens namnförslag, byggs när ett förslag efterfrågas om budgeten saknar dem
+    private static volatile NameIndex nameIndex;
+    private long id;
+    private String name;
+    private long amount;
+    private int day;
+
+    /**
+     * Konstruktor som skapar en ny Expense-instans med ett namn och ett belopp, daterad idag.
+     *
+     * @param name   Namnet på utgiften.
+     * @param amount Beloppet för utgiften i öre.
+     */
+    public Expense(String name, long amount) {
+        this(0, name, amount, Dates.today());
+    }
+
+    /**
+     * Konstruktor som skapar en ny Expense-instans för en sparad rad med ett id.
+     *
+     * @param id     Radens id i ledgern.
+     * @param name   Namnet på utgiften.
+     * @param amount Beloppet för utgiften i öre.
+     * @param day    Utgiftens datum som epokdag.
+     */
+    public Expense(long id, String name, long amount, int day) {
+        this.id = id;
+        this.name = name;
+        this.amount = amount;
+        this.day = day;
+    }
+
+    /**
+     * Hämtar id för utgiften. Id:t är stabilt så länge utgiften finns kvar.
+     *
+     * @return Id för utgiften.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Hämtar namnet på utgiften.
+     *
+     * @return Namnet på utgiften.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Hämtar beloppet för utgiften.
+     *
+     * @return Beloppet för utgiften i öre.
+     */
+    public long getAmount() {
+        return amount;
+    }
+
+    /**
+     * Hämtar datumet för utgiften.
+     *
+     * @return Utgiftens datum som epokdag, se {@link Dates}.
+     */
+    public int getDay() {
+        return day;
+    }
+
+    /**
+     * Sätter inkomsten till ett nytt belopp.
+     *
+     * @param newIncome Det nya inkomstbeloppet i öre.
+     */
+    public static void setIncome(long newIncome) {
+        Ledger current = ledger;
+        long before = current.getVersion();
+        current.setIncome(newIncome);
+        if (!attached) {
+            incomeChangedBeforeAttach = true;
+        }
+        notifyIfChanged(current, before, LedgerChange.INCOME_CHANGED, 0);
+    }
+
+    /**
+     * Hämtar den aktuella inkomsten.
+     *
+     * @return Det aktuella inkomstbeloppet i öre.
+     */
+    public static long getIncome() {
+        return ledger.getIncome();
+    }
+
+    /**
+     * Lägger till en utgift med dagens datum i en kategori.
+     *
+     * @param category Kategorins id.
+     * @param name     Namnet på utgiften.
+     * @param amount   Beloppet för utgiften i öre.
+     */
+    public static void add(int category, String name, long amount) {
+        Ledger current = ledger;
+        current.add(category, name, amount);
+        NameIndex index = nameIndex;
+        if (index != null) {
+            index.record(name, Dates.today());
+        }
+        changes.record(LedgerChange.ADDED, LedgerChange.maskOf(category), current.getVersion());
+    }
+
+    /**
+     * Lägger till en utgift med dagens datum som återkommer, till exempel hyra varje månad.
+     * Utgiften lagras en gång och räknas med i varje månad som den infaller.
+     *
+     * @param category Kategorins id.
+     * @param name     Namnet på utgiften.
+     * @param amount   Beloppet för varje förekomst i öre.
+     * @param period   Antalet månader mellan förekomsterna, till exempel {@link Recurrences#MONTHLY}.
+     * @param endMonth Sista månaden som utgiften återkommer, eller {@link Recurrences#NO_END}.
+     */
+    public static void addRecurring(int category, String name, long amount, int period, int endMonth) {
+        Ledger current = ledger;
+        int today = Dates.today();
+        current.addRecurring(category, name, amount, today, period, endMonth);
+        NameIndex index = nameIndex;
+        if (index != null) {
+            index.record(name, today);
+        }
+        changes.record(LedgerChange.ADDED, LedgerChange.maskOf(category), current.getVersion());
+    }
+
+    /**
+     * Lägger till ett annuitetslån med första betalningen idag. Månadsbeloppet räknas
+     * fram ur lånebelopp, ränta och löptid och återkommer varje månad under löptiden.
+     *
+     * @param category  Kategorins id, normalt {@link Ledger#LOAN_CREDIT}.
+     * @param name      Namnet på lånet.
+     * @param principal Lånebeloppet i öre.
+     * @param rate      Årsräntan i baspunkter, till exempel 450 för 4,5 %.
+     * @param term      Löptiden i månader.
+     */
+    public static void addLoan(int category, String name, long principal, int rate, int term) {
+        Ledger current = ledger;
+        int today = Dates.today();
+        current.addLoan(category, name, principal, rate, term, today);
+        NameIndex index = nameIndex;
+        if (index != null) {
+            index.record(name, today);
+        }
+        changes.record(LedgerChange.ADDED, LedgerChange.maskOf(category), current.getVersion());
+    }
+
+    /**
+     * Lägger till en ny kategori för användarens egna utgifter.
+     *
+     * @param name Kategorins namn.
+     * @return Den nya kategorins id.
+     */
+    public static int addCategory(String name) {
+        Ledger current = ledger;
+        int category = current.addCategory(name);
+        changes.record(LedgerChange.CATEGORY_ADDED, LedgerChange.maskOf(category), current.getVersion());
+        return category;
+    }
+
+    /**
+     * Hämtar antalet kategorier.
+     *
+     * @return Antalet kategorier, id:n går från 0 till antalet minus ett.
+     */
+    public static int getCategoryCount() {
+        return ledger.getCategoryCount();
+    }
+
+    /**
+     * Hämtar namnet på en kategori.
+     *
+     * @param category Kategorins id.
+     * @return Kategorins namn.
+     */
+    public static String getCategoryName(int category) {
+        return ledger.state().categoryName(category);
+    }
+
+    /**
+     * Lägger till en sats med utgifter i valfria kategorier på en gång, till exempel vid import.
+     *
+     * @param categories Kategorin för varje utgift.
+     * @param names      Namnet för varje utgift.
+     * @param amounts    Beloppet för varje utgift i öre.
+     * @param days       Datumet för varje utgift som epokdag.
+     * @param count      Antalet utgifter att lägga till.
+     */
+    public static void addAll(int[] categories, String[] names, long[] amounts, int[] days, int count) {
+        Ledger current = ledger;
+        current.addAll(categories, names, amounts, days, count);
+        NameIndex index = nameIndex;
+        long mask = 0;
+        for (int i = 0; i < count; i++) {
+            mask |= LedgerChange.maskOf(categories[i]);
+            if (index != null) {
+                index.record(names[i], days[i]);
+            }
+        }
+        changes.record(LedgerChange.ADDED, mask, current.getVersion());
+    }
+
+    /**
+     * Föreslår utgiftsnamn som börjar med det användaren har skrivit, vanligast och
+     * senast använda först. En inläst budget har redan förslag från alla sparade rader,
+     * se {@link Ledger#getNameIndex}. Annars byggs indexet från de inlästa raderna första
+     * gången det behövs. Indexet hålls sedan uppdaterat när utgifter läggs till.
+     *
+     * @param prefix Det användaren har skrivit hittills.
+     * @param out    Arrayen som förslagen skrivs till.
+     * @return Antalet förslag som skrevs.
+     */
+    public static int suggestNames(CharSequence prefix, String[] out) {
+        NameIndex index = nameIndex;
+        if (index == null) {
+            synchronized (Expense.class) {
+                index = nameIndex;
+                if (index == null) {
+                    Ledger current = ledger;
+                    index = NameIndex.build(current.state());
+                    current.setNameIndex(index);
+                    nameIndex = index;
+                }
+            }
+        }
+        return index.suggest(prefix, out);
+    }
+
+    /**
+     * Returnerar summan av en kategori för innevarande månad ur månadsindexet,
+     * inklusive förekomster av återkommande utgifter. Summan är densamma som
+     * kategorins andel i Summary, se {@link BudgetShares#forMonth}.
+     *
+     * @param category Kategorins id.
+     * @return Summan av kategorins utgifter i månaden i öre.
+     */
+    public static long getTotal(int category) {
+        int month = Dates.currentMonth();
+        return ledger.state().monthsTotal(category, month, month);
+    }
+
+    /**
+     * Hämtar en lista över utgifterna i en kategori för innevarande månad.
+     *
+     * @param category Kategorins id.
+     * @return En oföränderlig ögonblicksbild av kategorins utgifter i månaden.
+     */
+    public static Ledger.Snapshot getExpenses(int category) {
+        return ledger.state().snapshot(category, Dates.currentMonth());
+    }
+
+    /**
+     * Hämtar ett konsekvent tillstånd av hela budgeten. Inkomst och alla totaler
+     * i tillståndet hör till samma version, även om andra trådar ändrar samtidigt.
+     *
+     * @return Det aktuella tillståndet.
+     */
+    public static Ledger.State getState() {
+        return ledger.state();
+    }
+
+    /**
+     * Prenumererar på ändringar i budgeten. Ändringar som sker tätt efter varandra,
+     * till exempel under en import, slås ihop till ett meddelande.
+     *
+     * @param listener Mottagaren av ändringsmeddelanden.
+     * @return Prenumerationen, som ska avslutas när mottagaren inte längre behövs.
+     */
+    public static ChangeNotifier.Subscription subscribe(ChangeNotifier.Listener listener) {
+        return changes.subscribe(listener);
+    }
+
+    /**
+     * Sätter schemaläggaren som bestämmer när ändringsmeddelanden skickas.
+     * Utan schemaläggare skickas varje ändring direkt.
+     *
+     * @param scheduler Schemaläggaren, till exempel en som väntar till nästa bildruta.
+     */
+    public static void setChangeScheduler(ChangeNotifier.Scheduler scheduler) {
+        changes.setScheduler(scheduler);
+    }
+
+    /**
+     * Slår på eller av kontrolläget där de löpande totalerna jämförs med
+     * en full omräkning efter varje ändring. Tänkt att användas i tester.
+     *
+     * @param enabled true för att kontrollera totalerna efter varje ändring.
+     */
+    public static void setConsistencyChecks(boolean enabled) {
+        ledger.setConsistencyChecks(enabled);
+    }
+
+    /**
+     * Återställer alla data i Expense-klassen, inklusive inkomster och utgifter.
+     */
+    public static void resetData() {
+        Ledger current = ledger;
+        current.clear();
+        if (!attached) {
+            resetBeforeAttach = true;
+        }
+        changes.record(LedgerChange.RESET, LedgerChange.ALL_CATEGORIES, current.getVersion());
+    }
+
+    /**
+     * Tar bort en utgift ur en kategori baserat på dess position i {@link #getExpenses}.
+     * En återkommande utgift som började en tidigare månad avslutas i stället efter
+     * förra månaden, så att dess tidigare förekomster finns kvar i historiken.
+     *
+     * @param category Kategorins id.
+     * @param position Indexet för den utgift som ska tas bort.
+     */
+    public static void remove(int category, int position) {
+        Ledger current = ledger;
+        long before = current.getVersion();
+        Ledger.Snapshot expenses = current.state().snapshot(category, Dates.currentMonth());
+        if (position >= 0 && position < expenses.size()) {
+            removeFromMonth(current, category, expenses.getId(position));
+        }
+        notifyIfChanged(current, before, LedgerChange.REMOVED, LedgerChange.maskOf(category));
+    }
+
+    /**
+     * Tar bort en utgift ur en kategori baserat på dess id. En återkommande utgift
+     * avslutas på samma sätt som i {@link #remove(int, int)}.
+     *
+     * @param category Kategorins id.
+     * @param expense  Utgiften som ska tas bort.
+     */
+    public static void remove(int category, Expense expense) {
+        Ledger current = ledger;
+        long before = current.getVersion();
+        removeFromMonth(current, category, expense.getId());
+        notifyIfChanged(current, before, LedgerChange.REMOVED, LedgerChange.maskOf(category));
+    }
+
+    private static void removeFromMonth(Ledger current, int category, long id) {
+        if (!current.endRecurrence(id, Dates.currentMonth() - 1)) {
+            current.removeById(category, id);
+        }
+    }
+
+    /**
+     * Kopplar in en inläst ledger och en logg som ska ta emot alla framtida ändringar.
+     * Ändringar som hann göras innan inläsningen var klar läggs ovanpå den inlästa datan
+     * och skickas vidare till loggen, så att inget går förlorat. Egna kategorier kopplas
+     * till den inlästa kategorin med samma namn, och återkommande rader och lån behåller
+     * sina regler.
+     * Anropas en gång på huvudtråden när appen startar.
+     *
+     * @param restored Ledgern som lästs in från lagring.
+     * @param log      Loggen som ska ta emot ändringar.
+     */
+    public static void attach(Ledger restored, Ledger.MutationLog log) {
+        Ledger.State interim = ledger.state();
+        restored.setMutationLog(log);
+        if (resetBeforeAttach) {
+            restored.clear();
+        }
+        if (incomeChangedBeforeAttach || resetBeforeAttach) {
+            restored.setIncome(interim.getIncome());
+        }
+        //Egna kategorier som skapades innan inläsningen var klar kan ha samma id som en sparad kategori
+        int[] targets = new int[interim.categoryCount()];
+        for (int category = 0; category < targets.length; category++) {
+            targets[category] = category < Ledger.DEFAULT_CATEGORY_COUNT ? category
+                    : categoryNamed(restored, interim.categoryName(category));
+        }
+        //Namnförslagen från lagringen gäller inte om budgeten tömdes innan inläsningen var klar
+        NameIndex names = resetBeforeAttach ? null : restored.getNameIndex();
+        restored.setNameIndex(names);
+        for (int category = 0; category < interim.categoryCount(); category++) {
+            for (Expense expense : interim.snapshot(category)) {
+                replay(interim, expense, restored, targets[category]);
+                if (names != null) {
+                    names.record(expense.getName(), expense.getDay());
+                }
+            }
+        }
+        ledger = restored;
+        nameIndex = names; //Saknas förslag byggs de från den inlästa budgeten vid nästa förslag
+        attached = true;
+        incomeChangedBeforeAttach = false;
+        resetBeforeAttach = false;
+        //Hela budgeten har bytts ut, så mottagarna behöver läsa om allt
+        changes.record(LedgerChange.RESET, LedgerChange.ALL_CATEGORIES, restored.getVersion());
+    }
+
+    /**
+     * Hittar en egen kategori med ett visst namn, eller lägger till den om den saknas.
+     */
+    private static int categoryNamed(Ledger target, String name) {
+        Ledger.State state = target.state();
+        for (int category = Ledger.DEFAULT_CATEGORY_COUNT; category < state.categoryCount(); category++) {
+            if (name.equals(state.categoryName(category))) {
+                return category;
+            }
+        }
+        return target.addCategory(name);
+    }
+
+    /**
+     * Lägger till en rad från ett annat tillstånd i en ledger, tillsammans med dess
+     * lånevillkor eller regel för återkommande rader. Raden får ett nytt id.
+     */
+    private static void replay(Ledger.State source, Expense expense, Ledger target, int category) {
+        Loans loans = source.loans();
+        Recurrences rules = source.recurrences();
+        int loan = loans.positionOf(expense.getId());
+        int rule = rules.positionOf(expense.getId());
+        if (loan >= 0) {
+            target.addLoan(category, expense.getName(), loans.principalAt(loan), loans.rateAt(loan),
+                    loans.termAt(loan), expense.getDay());
+        } else if (rule >= 0) {
+            target.addRecurring(category, expense.getName(), expense.getAmount(), expense.getDay(),
+                    rules.periodAt(rule), rules.endMonthAt(rule));
+        } else {
+            target.add(category, expense.getName(), expense.getAmount(), expense.getDay());
+        }
+    }
+
+    /**
+     * Byter till en annan budget, till exempel en annan profil som redan är inläst.
+     * Bytet sker direkt och alla mottagare får ett meddelande om att hela budgeten har
+     * bytts ut. Ledgern ska redan ha sin logg, se {@link Ledger#setMutationLog}.
+     * Anropas på huvudtråden.
+     *
+     * @param next Ledgern som ska användas från och med nu.
+     */
+    public static void switchTo(Ledger next) {
+        if (next == ledger) {
+            return;
+        }
+        ledger = next;
+        nameIndex = next.getNameIndex(); //Saknas förslag byggs de från den nya budgeten
+        attached = true;
+        incomeChangedBeforeAttach = false;
+        resetBeforeAttach = false;
+        changes.record(LedgerChange.RESET, LedgerChange.ALL_CATEGORIES, next.getVersion());
+    }
+
+    /**
+     * Hämtar ledgern som används just nu, till exempel för att spara den i en cache
+     * innan en annan budget kopplas in.
+     *
+     * @return Den aktuella ledgern.
+     */
+    public static Ledger getLedger() {
+        return ledger;
+    }
+
+    /**
+     * Skickar ett ändringsmeddelande om ledgerns version ändrades av anropet.
+     */
+    private static void notifyIfChanged(Ledger current, long before, int kind, long categories) {
+        long after = current.getVersion();
+        if (after != before) {
+            changes.record(kind, categories, after);
+        }
+    }
+}
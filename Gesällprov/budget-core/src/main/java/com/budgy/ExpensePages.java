@@ -0,0 +1,225 @@
+package com.budgy;
+
+/**
+ * ExpensePages är ett fönster av sidor över en kategoris utgifter, för listor
+ * med hundratusentals rader.
+ * <p>
+ * Raderna finns redan kolumnvis i en {@link Ledger.Snapshot}, så antalet rader och
+ * varje rads id är kända utan att någon Expense skapas. Expense-objekt skapas en
+ * sida i taget när en rad på sidan efterfrågas, och högst {@link #MAX_PAGES} sidor
+ * hålls kvar. När fler behövs ersätts den sida som använts längst tillbaka, och
+ * dess array återanvänds. Minnet för objekten är därför begränsat oavsett hur många
+ * rader kategorin har och hur långt användaren bläddrar.
+ * <p>
+ * Nya ögonblicksbilder jämförs med {@link #diff} på radernas id i stället för
+ * att alla rader skapas och jämförs. Klassen är inte trådsäker och används från
+ * huvudtråden.
+ */
+public final class ExpensePages {
+    public static final int PAGE_SIZE = 64;
+    //Åtta sidor räcker till flera skärmar åt båda hållen från den synliga delen
+    public static final int MAX_PAGES = 8;
+
+    private Ledger.Snapshot snapshot;
+    //Sidnummer, rader och senaste användning för varje plats, -1 för en tom plats
+    private final int[] pageNumbers = new int[MAX_PAGES];
+    private final Expense[][] pageRows = new Expense[MAX_PAGES][PAGE_SIZE];
+    private final long[] lastUse = new long[MAX_PAGES];
+    private long clock;
+
+    /**
+     * Lyssnare som tar emot skillnaderna mellan två ögonblicksbilder, i ordning.
+     * Positionerna gäller listan efter de ändringar som redan har skickats.
+     */
+    public interface OnRangeChangedListener {
+        /**
+         * Anropas när rader har lagts till.
+         *
+         * @param position Positionen för den första nya raden.
+         * @param count    Antal nya rader.
+         */
+        void onInserted(int position, int count);
+
+        /**
+         * Anropas när rader har tagits bort.
+         *
+         * @param position Positionen för den första borttagna raden.
+         * @param count    Antal borttagna rader.
+         */
+        void onRemoved(int position, int count);
+    }
+
+    /**
+     * Konstruktor för ExpensePages. Fönstret är tomt tills en ögonblicksbild lämnas in.
+     */
+    public ExpensePages() {
+        evictAll();
+    }
+
+    /**
+     * Byter till en ny ögonblicksbild. Alla inlästa sidor släpps, eftersom raderna
+     * kan ha flyttats.
+     *
+     * @param next Den nya ögonblicksbilden, eller null för en tom lista.
+     */
+    public void submit(Ledger.Snapshot next) {
+        snapshot = next;
+        evictAll();
+    }
+
+    /**
+     * Hämtar den ögonblicksbild som fönstret visar.
+     *
+     * @return Ögonblicksbilden, eller null om listan är tom.
+     */
+    public Ledger.Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Hämtar antalet rader, även de som inte är inlästa.
+     *
+     * @return Antalet rader.
+     */
+    public int size() {
+        return snapshot != null ? snapshot.size() : 0;
+    }
+
+    /**
+     * Hämtar id:t för raden på en position utan att läsa in dess sida.
+     *
+     * @param position Positionen i listan.
+     * @return Utgiftens id.
+     */
+    public long getId(int position) {
+        return snapshot.getId(position);
+    }
+
+    /**
+     * Hämtar utgiften på en position och läser in dess sida om den inte redan finns.
+     *
+     * @param position Positionen i listan.
+     * @return Utgiften.
+     */
+    public Expense get(int position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("Position " + position + " av " + size());
+        }
+        int page = position / PAGE_SIZE;
+        int slot = slotOf(page);
+        if (slot < 0) {
+            slot = load(page);
+        }
+        lastUse[slot] = ++clock;
+        return pageRows[slot][position - page * PAGE_SIZE];
+    }
+
+    /**
+     * Hämtar antalet sidor som är inlästa just nu.
+     *
+     * @return Antalet sidor, högst {@link #MAX_PAGES}.
+     */
+    public int loadedPages() {
+        int loaded = 0;
+        for (int number : pageNumbers) {
+            if (number >= 0) {
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Jämför två ögonblicksbilder av samma kategori och skickar skillnaderna.
+     * Inom en kategori ligger raderna i stigande id-ordning och nya rader får högre
+     * id än alla befintliga, så den gemensamma början hittas med binärsökning och
+     * resten jämförs i en genomgång av id:n. Inga Expense-objekt skapas.
+     * Ögonblicksbilderna måste komma från samma budget och samma månad, efter en
+     * RESET eller ett månadsskifte ska listan läsas om i stället.
+     *
+     * @param previous Den tidigare ögonblicksbilden, eller null för en tom lista.
+     * @param next     Den nya ögonblicksbilden, eller null för en tom lista.
+     * @param listener Mottagaren av skillnaderna.
+     */
+    public static void diff(Ledger.Snapshot previous, Ledger.Snapshot next, OnRangeChangedListener listener) {
+        int oldSize = previous != null ? previous.size() : 0;
+        int newSize = next != null ? next.size() : 0;
+        if (previous == next || (oldSize == newSize && oldSize > 0
+                && previous.getVersion() == next.getVersion() && previous.getMonth() == next.getMonth())) {
+            return;
+        }
+
+        //En borttagen rad flyttar alla senare rader, så lika id på samma position gäller för hela början
+        int low = 0, high = Math.min(oldSize, newSize);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (previous.getId(mid) == next.getId(mid)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        int i = low, j = low, position = low;
+        while (i < oldSize || j < newSize) {
+            if (j >= newSize || (i < oldSize && previous.getId(i) < next.getId(j))) {
+                int start = i;
+                while (i < oldSize && (j >= newSize || previous.getId(i) < next.getId(j))) {
+                    i++;
+                }
+                listener.onRemoved(position, i - start);
+            } else if (i >= oldSize || previous.getId(i) > next.getId(j)) {
+                int start = j;
+                while (j < newSize && (i >= oldSize || next.getId(j) < previous.getId(i))) {
+                    j++;
+                }
+                listener.onInserted(position, j - start);
+                position += j - start;
+            } else {
+                i++;
+                j++;
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Läser in en sida till den plats som använts längst tillbaka.
+     */
+    private int load(int page) {
+        int slot = 0;
+        for (int s = 1; s < MAX_PAGES; s++) {
+            if (lastUse[s] < lastUse[slot]) {
+                slot = s;
+            }
+        }
+        Expense[] rows = pageRows[slot];
+        int start = page * PAGE_SIZE;
+        int end = Math.min(start + PAGE_SIZE, snapshot.size());
+        for (int position = start; position < end; position++) {
+            rows[position - start] = snapshot.get(position);
+        }
+        //Resten av en sista, kortare sida får inte hålla kvar rader från en tidigare sida
+        for (int k = end - start; k < PAGE_SIZE && rows[k] != null; k++) {
+            rows[k] = null;
+        }
+        pageNumbers[slot] = page;
+        return slot;
+    }
+
+    private int slotOf(int page) {
+        for (int slot = 0; slot < MAX_PAGES; slot++) {
+            if (pageNumbers[slot] == page) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void evictAll() {
+        for (int slot = 0; slot < MAX_PAGES; slot++) {
+            pageNumbers[slot] = -1;
+            lastUse[slot] = 0;
+        }
+    }
+}
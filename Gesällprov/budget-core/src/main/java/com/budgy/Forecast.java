@@ -0,0 +1,343 @@
+package com.budgy;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Forecast räknar fram budgetens balans månad för månad, 1 till 40 år framåt.
+ * <p>
+ * Varje månad får inkomsten minus de fasta kostnaderna, lånens betalningar och en
+ * uppskattning av de rörliga kostnaderna. De fasta kostnaderna är förekomsterna av
+ * återkommande utgifter, se {@link Recurrences}, och de rörliga är genomsnittet av
+ * övriga utgifter de senaste tolv månaderna. Allt som inte beror på ett scenario
+ * räknas en gång när prognosen skapas och lagras i primitiva arrayer.
+ * <p>
+ * Ett {@link Scenario} prövar en extra amortering eller en ny ränta. Lånen räknas
+ * fram i en enda genomgång av månaderna, där varje månads skuld följer av den
+ * förra. Flera scenarier räknas parallellt med {@link #runAll(Scenario...)}, och
+ * eftersom prognosen aldrig ändras efter att den har skapats delas den mellan
+ * trådarna utan lås.
+ */
+public final class Forecast {
+    public static final int MAX_YEARS = 40;
+
+    private static final int VARIABLE_HISTORY_MONTHS = 12;
+
+    private final int fromMonth;
+    private final int monthCount;
+    private final long income;
+    //Fasta kostnader per månad utom lånen, samt uppskattade rörliga kostnader per månad
+    private final long[] fixedCosts;
+    private final long variableCost;
+
+    //Lånen vid prognosens start, ordnade med högst ränta först
+    private final long[] loanBalances;
+    private final long[] loanPayments;
+    private final int[] loanRates;
+    private final int[] loanRemaining;
+
+    /**
+     * Scenario är ett antagande att pröva i prognosen.
+     */
+    public static final class Scenario {
+        /**
+         * Scenariot utan ändringar, lånen betalas enligt sina villkor.
+         */
+        public static final Scenario BASELINE = new Scenario(0, -1, 0);
+
+        private final long extraPayment;
+        private final int rateChangeMonth;
+        private final int newRate;
+
+        /**
+         * Konstruktor för Scenario.
+         *
+         * @param extraPayment    Extra amortering varje månad i öre, läggs på lånet med högst ränta först.
+         * @param rateChangeMonth Antal månader efter prognosens start då räntan ändras, eller -1 för ingen ändring.
+         * @param newRate         Den nya årsräntan i baspunkter för alla lån.
+         */
+        public Scenario(long extraPayment, int rateChangeMonth, int newRate) {
+            if (extraPayment < 0 || newRate < 0) {
+                throw new IllegalArgumentException("Ogiltigt scenario: " + extraPayment + ", " + newRate);
+            }
+            this.extraPayment = extraPayment;
+            this.rateChangeMonth = rateChangeMonth;
+            this.newRate = newRate;
+        }
+    }
+
+    /**
+     * Result är en prognos för ett scenario.
+     */
+    public static final class Result {
+        private final int fromMonth;
+        private final long[] net;
+        private final long[] balance;
+        private final long[] debt;
+        private final long totalInterest;
+        private final int debtFreeMonth;
+
+        private Result(int fromMonth, long[] net, long[] balance, long[] debt, long totalInterest,
+                       int debtFreeMonth) {
+            this.fromMonth = fromMonth;
+            this.net = net;
+            this.balance = balance;
+            this.debt = debt;
+            this.totalInterest = totalInterest;
+            this.debtFreeMonth = debtFreeMonth;
+        }
+
+        /**
+         * Hämtar prognosens första månad.
+         *
+         * @return Månaden, se {@link Dates}.
+         */
+        public int getFromMonth() {
+            return fromMonth;
+        }
+
+        /**
+         * Hämtar antalet månader i prognosen.
+         *
+         * @return Antalet månader.
+         */
+        public int getMonthCount() {
+            return net.length;
+        }
+
+        /**
+         * Hämtar en månads balans, det vill säga inkomsten minus månadens alla kostnader.
+         *
+         * @param offset Antal månader efter prognosens start.
+         * @return Månadens balans i öre.
+         */
+        public long net(int offset) {
+            return net[offset];
+        }
+
+        /**
+         * Hämtar den samlade balansen från prognosens start till och med en månad.
+         *
+         * @param offset Antal månader efter prognosens start.
+         * @return Den samlade balansen i öre.
+         */
+        public long balance(int offset) {
+            return balance[offset];
+        }
+
+        /**
+         * Hämtar den återstående skulden på alla lån efter en månad.
+         *
+         * @param offset Antal månader efter prognosens start.
+         * @return Skulden i öre.
+         */
+        public long debt(int offset) {
+            return debt[offset];
+        }
+
+        /**
+         * Hämtar räntan som betalas under hela prognosen.
+         *
+         * @return Räntan i öre.
+         */
+        public long getTotalInterest() {
+            return totalInterest;
+        }
+
+        /**
+         * Hämtar månaden då alla lån är betalda.
+         *
+         * @return Månaden, se {@link Dates}, eller -1 om skulden finns kvar när prognosen slutar.
+         */
+        public int getDebtFreeMonth() {
+            return debtFreeMonth;
+        }
+    }
+
+    private Forecast(int fromMonth, int monthCount, long income, long[] fixedCosts, long variableCost,
+                     long[] loanBalances, long[] loanPayments, int[] loanRates, int[] loanRemaining) {
+        this.fromMonth = fromMonth;
+        this.monthCount = monthCount;
+        this.income = income;
+        this.fixedCosts = fixedCosts;
+        this.variableCost = variableCost;
+        this.loanBalances = loanBalances;
+        this.loanPayments = loanPayments;
+        this.loanRates = loanRates;
+        this.loanRemaining = loanRemaining;
+    }
+
+    /**
+     * Förbereder en prognos från ett tillstånd av budgeten.
+     *
+     * @param state     Tillståndet som prognosen utgår från.
+     * @param fromMonth Prognosens första månad, normalt månaden efter den aktuella.
+     * @param years     Antalet år, 1 till {@link #MAX_YEARS}.
+     * @return Prognosen, redo att köras för olika scenarier.
+     * @throws IllegalArgumentException Om antalet år är utanför gränserna.
+     */
+    public static Forecast of(Ledger.State state, int fromMonth, int years) {
+        if (years < 1 || years > MAX_YEARS) {
+            throw new IllegalArgumentException("Ogiltigt antal år: " + years);
+        }
+        int monthCount = years * 12;
+        int toMonth = fromMonth + monthCount - 1;
+        MonthIndex months = state.months();
+        Recurrences recurrences = state.recurrences();
+        Loans loans = state.loans();
+
+        //Rader som redan är daterade under prognosen, och förekomster av återkommande utgifter utom lån
+        long[] fixedCosts = new long[monthCount];
+        for (int c = 0; c < state.categoryCount(); c++) {
+            for (int i = 0; i < monthCount; i++) {
+                fixedCosts[i] = Money.add(fixedCosts[i], months.monthTotal(c, fromMonth + i));
+            }
+        }
+        for (int r = 0; r < recurrences.size(); r++) {
+            if (loans.positionOf(recurrences.idAt(r)) >= 0) {
+                continue;
+            }
+            long amount = recurrences.amountAt(r);
+            for (int month = recurrences.nextOccurrence(r, fromMonth); month >= 0 && month <= toMonth;
+                 month = recurrences.nextOccurrence(r, month + 1)) {
+                fixedCosts[month - fromMonth] = Money.add(fixedCosts[month - fromMonth], amount);
+            }
+        }
+
+        //Rörliga kostnader: genomsnittet av de senaste månadernas rader som inte återkommer
+        long variableCost = 0;
+        if (!months.isEmpty()) {
+            int historyFrom = Math.max(fromMonth - VARIABLE_HISTORY_MONTHS, months.getFirstMonth());
+            int historyTo = fromMonth - 1;
+            if (historyFrom <= historyTo) {
+                long history = 0;
+                for (int c = 0; c < state.categoryCount(); c++) {
+                    history = Money.add(history, months.monthsTotal(c, historyFrom, historyTo));
+                }
+                for (int r = 0; r < recurrences.size(); r++) {
+                    int start = recurrences.startMonthAt(r);
+                    if (start >= historyFrom && start <= historyTo) {
+                        history -= recurrences.amountAt(r);
+                    }
+                }
+                variableCost = Math.max(history / (historyTo - historyFrom + 1), 0);
+            }
+        }
+
+        //Lånens skuld och återstående löptid vid prognosens start
+        int loanCount = loans.size();
+        Integer[] order = new Integer[loanCount];
+        for (int i = 0; i < loanCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(loans.rateAt(b), loans.rateAt(a)));
+        long[] loanBalances = new long[loanCount];
+        long[] loanPayments = new long[loanCount];
+        int[] loanRates = new int[loanCount];
+        int[] loanRemaining = new int[loanCount];
+        for (int i = 0; i < loanCount; i++) {
+            int loan = order[i];
+            int term = loans.termAt(loan);
+            int made = Math.min(Math.max(fromMonth - loans.startMonthAt(loan), 0), term);
+            loanPayments[i] = loans.paymentAt(loan);
+            loanRates[i] = loans.rateAt(loan);
+            loanRemaining[i] = term - made;
+            loanBalances[i] = loanRemaining[i] == 0 ? 0
+                    : Loans.balanceAfter(loans.principalAt(loan), loanRates[i], loanPayments[i], made);
+        }
+        return new Forecast(fromMonth, monthCount, state.getIncome(), fixedCosts, variableCost, loanBalances,
+                loanPayments, loanRates, loanRemaining);
+    }
+
+    /**
+     * Räknar fram prognosen för ett scenario i en genomgång av månaderna.
+     *
+     * @param scenario Scenariot.
+     * @return Prognosen för scenariot.
+     */
+    public Result run(Scenario scenario) {
+        int loanCount = loanBalances.length;
+        long[] balances = loanBalances.clone();
+        long[] payments = loanPayments.clone();
+        int[] rates = loanRates.clone();
+        int[] remaining = loanRemaining.clone();
+
+        long[] net = new long[monthCount];
+        long[] balance = new long[monthCount];
+        long[] debt = new long[monthCount];
+        long totalInterest = 0;
+        long saved = 0;
+        int debtFreeMonth = -1;
+
+        for (int m = 0; m < monthCount; m++) {
+            if (m == scenario.rateChangeMonth) {
+                //Ny ränta: månadsbeloppet räknas om för skulden och den löptid som är kvar
+                for (int i = 0; i < loanCount; i++) {
+                    rates[i] = scenario.newRate;
+                    if (remaining[i] > 0) {
+                        payments[i] = Loans.payment(balances[i], rates[i], remaining[i]);
+                    }
+                }
+            }
+
+            long loanCost = 0;
+            long owed = 0;
+            long extra = scenario.extraPayment;
+            for (int i = 0; i < loanCount; i++) {
+                if (balances[i] <= 0) {
+                    continue;
+                }
+                long interest = Math.round(balances[i] * Loans.monthlyRate(rates[i]));
+                long due = balances[i] + interest;
+                //Sista betalningen tar hela den återstående skulden
+                long paid = remaining[i] <= 1 ? due : Math.min(payments[i], due);
+                long extraPaid = Math.min(extra, due - paid);
+                extra -= extraPaid;
+                balances[i] = due - paid - extraPaid;
+                remaining[i] = Math.max(remaining[i] - 1, 0);
+                totalInterest += interest;
+                loanCost += paid + extraPaid;
+                owed += balances[i];
+            }
+
+            net[m] = Money.subtract(income, Money.add(Money.add(fixedCosts[m], variableCost), loanCost));
+            saved = Money.add(saved, net[m]);
+            balance[m] = saved;
+            debt[m] = owed;
+            if (owed == 0 && debtFreeMonth < 0) {
+                debtFreeMonth = fromMonth + m;
+            }
+        }
+        return new Result(fromMonth, net, balance, debt, totalInterest, debtFreeMonth);
+    }
+
+    /**
+     * Räknar fram prognosen för flera scenarier parallellt.
+     *
+     * @param scenarios Scenarierna.
+     * @return En prognos per scenario, i samma ordning.
+     */
+    public Result[] runAll(Scenario... scenarios) {
+        Result[] results = new Result[scenarios.length];
+        IntStream.range(0, scenarios.length).parallel().forEach(i -> results[i] = run(scenarios[i]));
+        return results;
+    }
+
+    /**
+     * Hämtar prognosens första månad.
+     *
+     * @return Månaden, se {@link Dates}.
+     */
+    public int getFromMonth() {
+        return fromMonth;
+    }
+
+    /**
+     * Hämtar antalet månader i prognosen.
+     *
+     * @return Antalet månader.
+     */
+    public int getMonthCount() {
+        return monthCount;
+    }
+}
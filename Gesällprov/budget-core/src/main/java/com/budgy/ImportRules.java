@@ -0,0 +1,72 @@
+package com.budgy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * ImportRules avgör vilken kategori en importerad rad hör till baserat på dess text.
+ * Varje regel är ett nyckelord som jämförs mot radens namn utan hänsyn till
+ * versaler. Den första regeln som matchar vinner, annars används standardkategorin.
+ */
+public class ImportRules {
+    private final List<String> keywords = new ArrayList<>();
+    private final List<Integer> categories = new ArrayList<>();
+    private final int defaultCategory;
+
+    /**
+     * Konstruktor för ImportRules.
+     *
+     * @param defaultCategory Kategorin som används när ingen regel matchar.
+     */
+    public ImportRules(int defaultCategory) {
+        this.defaultCategory = defaultCategory;
+    }
+
+    /**
+     * Skapar regler med vanliga svenska fasta kostnader och lån.
+     * Allt annat räknas som rörliga utgifter.
+     *
+     * @return Standardreglerna.
+     */
+    public static ImportRules defaults() {
+        ImportRules rules = new ImportRules(Ledger.VARIABLE);
+        for (String keyword : new String[]{"hyra", "avgift", "försäkring", "el ", "elnät", "bredband",
+                "telefon", "netflix", "spotify", "hbo", "gym", "medlem"}) {
+            rules.add(keyword, Ledger.FIXED);
+        }
+        for (String keyword : new String[]{"lån", "csn", "kredit", "klarna", "amortering", "ränta"}) {
+            rules.add(keyword, Ledger.LOAN_CREDIT);
+        }
+        return rules;
+    }
+
+    /**
+     * Lägger till en regel.
+     *
+     * @param keyword  Nyckelord som ska finnas i radens namn.
+     * @param category Kategorin som raden då hör till.
+     * @return Samma ImportRules, för att kunna kedja anrop.
+     */
+    public ImportRules add(String keyword, int category) {
+        keywords.add(keyword.toLowerCase(Locale.ROOT));
+        categories.add(category);
+        return this;
+    }
+
+    /**
+     * Avgör kategorin för ett namn.
+     *
+     * @param name Radens namn.
+     * @return Kategorin för raden.
+     */
+    public int classify(String name) {
+        String lower = name.toLowerCase(Locale.ROOT) + " ";
+        for (int i = 0; i < keywords.size(); i++) {
+            if (lower.contains(keywords.get(i))) {
+                return categories.get(i);
+            }
+        }
+        return defaultCategory;
+    }
+}
@@ -0,0 +1,1353 @@
+package com.budgy;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ledger är en kolumnbaserad lagring av alla utgiftsrader i budgeten.
+ * Varje rad lagras som ett index i primitiva arrayer (id, kategori, namn-id och belopp)
+ * i stället för som ett eget objekt, vilket håller minnesåtgången per rad låg även
+ * för hushållsbudgetar med tiotusentals rader. Namn internas så att samma namn
+ * endast lagras en gång.
+ * Belopp lagras i öre som long (se {@link Money}), så totalsumman per kategori
+ * kan hållas löpande uppdaterad exakt och hämtas i konstant tid.
+ * Kategorierna har täta heltals-id från 0 och uppåt. Id:t används direkt som index i
+ * arrayerna med totaler och radindex, så en summering över alla kategorier är en
+ * enda loop över en primitiv array. De tre första kategorierna finns alltid och
+ * användaren kan lägga till fler med {@link #addCategory(String)}.
+ * Varje rad har även ett datum, och summorna per månad och dag hålls i ett
+ * {@link MonthIndex} som täcker hela historiken, även månader vars rader inte är
+ * inlästa. Ledgern behöver därför bara hålla raderna för de månader som visas.
+ * En rad kan återkomma varje månad, kvartal eller år. Regeln lagras en gång i
+ * {@link Recurrences} och förekomsterna räknas fram när en period summeras.
+ * Ett lån är en sådan rad som dessutom har lånebelopp, ränta och löptid i {@link Loans}.
+ * <p>
+ * Arrayerna skrivs bara i place när rader läggs till efter slutet. Borttagning och
+ * tömning skapar nya arrayer, så en {@link Snapshot} kan dela arrayerna med ledgern
+ * och ändå aldrig se en ändring.
+ * <p>
+ * Ledgern är trådsäker. Ändringar görs under ledgerns lås och avslutas med att ett
+ * oföränderligt {@link State} publiceras via en volatile-referens. Läsningar går
+ * helt utan lås mot det senast publicerade tillståndet, och alla värden i ett
+ * tillstånd hör till samma version.
+ */
+public class Ledger {
+    public static final int FIXED = 0;
+    public static final int LOAN_CREDIT = 1;
+    public static final int VARIABLE = 2;
+    public static final int DEFAULT_CATEGORY_COUNT = 3;
+
+    private static final String[] DEFAULT_CATEGORY_NAMES = {"Fixed", "Loan/Credit", "Variable"};
+    private static final int INITIAL_CAPACITY = 16;
+    //Ungefärlig storlek i byte för huvudet på ett objekt eller en array, och för en post i namnuppslaget
+    private static final int OBJECT_BYTES = 16;
+    private static final int LOOKUP_ENTRY_BYTES = 48;
+
+    //Versionerna delas av alla ledgers i processen, så att en version alltid pekar ut en enda ledger
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    //Fälten nedan ändras endast under ledgerns lås
+    private long income = 0;
+
+    //Kolumner, en position per rad i insättningsordning
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int[] categories = new int[INITIAL_CAPACITY];
+    private int[] nameIds = new int[INITIAL_CAPACITY];
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    private int[] days = new int[INITIAL_CAPACITY];
+    private int size = 0;
+    private long nextId = 1;
+    private long version = VERSIONS.incrementAndGet();
+
+    //Kategorier, en position per kategori-id
+    private int categoryCount = 0;
+    private String[] categoryNames = new String[DEFAULT_CATEGORY_COUNT];
+
+    //Radindex per kategori, sorterade stigande så att ordningen i listorna bevaras
+    private int[][] categoryRows = new int[DEFAULT_CATEGORY_COUNT][];
+    private int[] categorySizes = new int[DEFAULT_CATEGORY_COUNT];
+
+    //Löpande totaler per kategori i öre
+    private long[] totals = new long[DEFAULT_CATEGORY_COUNT];
+    private boolean consistencyChecks = false;
+
+    //Summor per månad, kopieras innan nästa ändring om det har publicerats
+    private MonthIndex months = new MonthIndex(DEFAULT_CATEGORY_COUNT);
+    private boolean monthsPublished = false;
+
+    //Regler för återkommande rader, ersätts vid varje ändring
+    private Recurrences recurrences = Recurrences.EMPTY;
+    private Loans loans = Loans.EMPTY;
+
+    //Internerade namn
+    private final Map<String, Integer> nameLookup = new HashMap<>();
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int nameCount = 0;
+
+    private MutationLog mutationLog;
+
+    //Namnförslag från hela den sparade historiken, sätts vid inläsning
+    private volatile NameIndex nameIndex;
+
+    //Senast publicerade tillstånd, läses utan lås
+    private volatile State state;
+
+    /**
+     * MutationLog tar emot varje ändring av ledgern, till exempel för att spara den.
+     * Anropen sker under ledgerns lås, i samma ordning som ändringarna gjordes,
+     * och ska därför bara lägga ändringen i kö.
+     */
+    public interface MutationLog {
+        /**
+         * Anropas när inkomsten ändras.
+         *
+         * @param income Den nya inkomsten i öre.
+         */
+        void onIncome(long income);
+
+        /**
+         * Anropas när en rad läggs till.
+         *
+         * @param id       Radens id.
+         * @param category Kategorin som raden tillhör.
+         * @param name     Namnet på utgiften.
+         * @param amount   Beloppet för utgiften i öre.
+         * @param day      Utgiftens datum som epokdag.
+         */
+        void onAdd(long id, int category, String name, long amount, int day);
+
+        /**
+         * Anropas när en rad tas bort.
+         *
+         * @param id       Den borttagna radens id.
+         * @param category Kategorin som raden tillhörde.
+         */
+        void onRemove(long id, int category);
+
+        /**
+         * Anropas när all data återställs.
+         */
+        void onReset();
+
+        /**
+         * Anropas när användaren lägger till en kategori.
+         *
+         * @param category Den nya kategorins id.
+         * @param name     Kategorins namn.
+         */
+        void onCategory(int category, String name);
+
+        /**
+         * Anropas när en rad som just lagts till ska återkomma.
+         *
+         * @param id       Radens id.
+         * @param period   Antalet månader mellan förekomsterna.
+         * @param endMonth Sista månaden som raden återkommer, eller {@link Recurrences#NO_END}.
+         */
+        void onRecurrence(long id, int period, int endMonth);
+
+        /**
+         * Anropas när en återkommande rad avslutas. Ett lån som avslutas har inte
+         * längre några lånevillkor.
+         *
+         * @param id       Radens id.
+         * @param endMonth Sista månaden som raden återkommer.
+         */
+        void onRecurrenceEnd(long id, int endMonth);
+
+        /**
+         * Anropas när en rad som just lagts till är ett lån. Föregås av
+         * {@link #onRecurrence(long, int, int)} för lånets månadsbetalningar.
+         *
+         * @param id        Radens id.
+         * @param principal Lånebeloppet i öre.
+         * @param rate      Årsräntan i baspunkter.
+         * @param term      Löptiden i månader.
+         */
+        void onLoan(long id, long principal, int rate, int term);
+    }
+
+    /**
+     * Skapar en tom ledger med standardkategorierna.
+     */
+    public Ledger() {
+        for (int c = 0; c < DEFAULT_CATEGORY_COUNT; c++) {
+            categoryNames[c] = DEFAULT_CATEGORY_NAMES[c];
+            categoryRows[c] = new int[INITIAL_CAPACITY];
+        }
+        categoryCount = DEFAULT_CATEGORY_COUNT;
+        publish();
+    }
+
+    /**
+     * Lägger till en ny kategori sist. Kategorins id är nästa lediga index,
+     * så arrayerna med totaler växer med en position.
+     *
+     * @param name Kategorins namn.
+     * @return Den nya kategorins id.
+     */
+    public synchronized int addCategory(String name) {
+        int category = appendCategory(name);
+        version = VERSIONS.incrementAndGet();
+        publish();
+        if (mutationLog != null) {
+            mutationLog.onCategory(category, name);
+        }
+        return category;
+    }
+
+    /**
+     * Återställer en sparad kategori, till exempel vid inläsning från lagring.
+     * Kategorier som saknas före id:t får ett standardnamn. Skickas inte till loggen.
+     * Ändringen syns för läsare först efter {@link #finishRestore()}.
+     *
+     * @param category Kategorins id.
+     * @param name     Kategorins namn.
+     */
+    public synchronized void restoreCategory(int category, String name) {
+        if (category < 0) {
+            throw new IllegalArgumentException("Okänd kategori: " + category);
+        }
+        while (categoryCount < category) {
+            appendCategory("Category " + (categoryCount + 1));
+        }
+        if (category == categoryCount) {
+            appendCategory(name);
+        } else {
+            //Publicerade tillstånd delar namnarrayen, så den kopieras innan namnet byts
+            categoryNames = categoryNames.clone();
+            categoryNames[category] = name;
+        }
+        version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * Hämtar antalet kategorier.
+     *
+     * @return Antalet kategorier, id:n går från 0 till antalet minus ett.
+     */
+    public int getCategoryCount() {
+        return state.categoryCount;
+    }
+
+    /**
+     * Sätter loggen som ska ta emot alla framtida ändringar.
+     *
+     * @param log Loggen, eller null för att sluta logga.
+     */
+    public synchronized void setMutationLog(MutationLog log) {
+        mutationLog = log;
+    }
+
+    /**
+     * Sätter inkomsten till ett nytt belopp.
+     *
+     * @param newIncome Det nya inkomstbeloppet i öre.
+     */
+    public synchronized void setIncome(long newIncome) {
+        //Oförändrad inkomst ger ingen ny version, så att sparade sammanfattningar fortsätter gälla
+        if (newIncome == income) {
+            return;
+        }
+        income = newIncome;
+        version = VERSIONS.incrementAndGet();
+        publish();
+        if (mutationLog != null) {
+            mutationLog.onIncome(newIncome);
+        }
+    }
+
+    /**
+     * Hämtar den aktuella inkomsten.
+     *
+     * @return Det aktuella inkomstbeloppet i öre.
+     */
+    public long getIncome() {
+        return state.income;
+    }
+
+    /**
+     * Lägger till en rad med dagens datum i en kategori.
+     *
+     * @param category Kategorin som raden tillhör.
+     * @param name     Namnet på utgiften.
+     * @param amount   Beloppet för utgiften i öre.
+     * @return Id för den nya raden.
+     * @throws ArithmeticException Om kategorins total inte längre ryms i en long.
+     */
+    public long add(int category, String name, long amount) {
+        return add(category, name, amount, Dates.today());
+    }
+
+    /**
+     * Lägger till en rad i en kategori. Varje anrop publicerar ett nytt tillstånd,
+     * vilket kopierar arrayerna per kategori och den ändrade delen av månadsindexet.
+     * Många rader läggs därför till med {@link #addAll} i stället.
+     *
+     * @param category Kategorin som raden tillhör.
+     * @param name     Namnet på utgiften.
+     * @param amount   Beloppet för utgiften i öre.
+     * @param day      Utgiftens datum som epokdag.
+     * @return Id för den nya raden.
+     * @throws ArithmeticException Om kategorins total inte längre ryms i en long.
+     */
+    public synchronized long add(int category, String name, long amount, int day) {
+        long id = nextId;
+        append(id, category, name, amount, day);
+        publish();
+        if (mutationLog != null) {
+            mutationLog.onAdd(id, category, name, amount, day);
+        }
+        return id;
+    }
+
+    /**
+     * Lägger till en rad som återkommer med en viss period. Raden själv är den första
+     * förekomsten och följande förekomster räknas fram ur regeln, inga fler rader skapas.
+     *
+     * @param category Kategorin som raden tillhör.
+     * @param name     Namnet på utgiften.
+     * @param amount   Beloppet för varje förekomst i öre.
+     * @param day      Datumet för den första förekomsten som epokdag.
+     * @param period   Antalet månader mellan förekomsterna, till exempel {@link Recurrences#MONTHLY}.
+     * @param endMonth Sista månaden som raden återkommer, eller {@link Recurrences#NO_END}.
+     * @return Id för den nya raden.
+     * @throws IllegalArgumentException Om perioden inte är positiv.
+     */
+    public synchronized long addRecurring(int category, String name, long amount, int day, int period, int endMonth) {
+        long id = nextId;
+        Recurrences updated = recurrences.with(id, category, amount, Dates.monthOf(day), period, endMonth);
+        append(id, category, name, amount, day);
+        recurrences = updated;
+        publish();
+        if (mutationLog != null) {
+            mutationLog.onAdd(id, category, name, amount, day);
+            mutationLog.onRecurrence(id, period, endMonth);
+        }
+        return id;
+    }
+
+    /**
+     * Lägger till ett annuitetslån. Raden får lånets månadsbelopp och återkommer
+     * varje månad under löptiden, med den angivna dagen som första betalning.
+     *
+     * @param category  Kategorin som raden tillhör.
+     * @param name      Namnet på lånet.
+     * @param principal Lånebeloppet i öre.
+     * @param rate      Årsräntan i baspunkter.
+     * @param term      Löptiden i månader.
+     * @param day       Datumet för den första betalningen som epokdag.
+     * @return Id för den nya raden.
+     * @throws IllegalArgumentException Om löptiden inte är positiv eller räntan är negativ.
+     */
+    public synchronized long addLoan(int category, String name, long principal, int rate, int term, int day) {
+        long id = nextId;
+        long payment = Loans.payment(principal, rate, term);
+        int startMonth = Dates.monthOf(day);
+        int endMonth = startMonth + term - 1;
+        Recurrences updatedRecurrences = recurrences.with(id, category, payment, startMonth, Recurrences.MONTHLY,
+                endMonth);
+        Loans updatedLoans = loans.with(id, principal, rate, term, startMonth);
+        append(id, category, name, payment, day);
+        recurrences = updatedRecurrences;
+        loans = updatedLoans;
+        publish();
+        if (mutationLog != null) {
+            mutationLog.onAdd(id, category, name, payment, day);
+            mutationLog.onRecurrence(id, Recurrences.MONTHLY, endMonth);
+            mutationLog.onLoan(id, principal, rate, term);
+        }
+        return id;
+    }
+
+    /**
+     * Lägger till flera rader under en och samma låsning. Tillståndet publiceras
+     * en gång för hela satsen, så läsare ser antingen ingen eller alla rader. En sats
+     * med en ogiltig kategori eller en total som inte ryms avvisas i sin helhet.
+     *
+     * @param categories Kategorin för varje rad.
+     * @param names      Namnet för varje rad.
+     * @param amounts    Beloppet för varje rad i öre.
+     * @param days       Datumet för varje rad som epokdag.
+     * @param count      Antalet rader att lägga till från början av arrayerna.
+     */
+    public synchronized void addAll(int[] categories, String[] names, long[] amounts, int[] days, int count) {
+        //Hela satsen kontrolleras först, så att ett fel inte lämnar en halv sats i kolumnerna eller loggen
+        long[] batchTotals = Arrays.copyOf(totals, categoryCount);
+        for (int i = 0; i < count; i++) {
+            checkCategory(categories[i], categoryCount);
+            batchTotals[categories[i]] = Math.addExact(batchTotals[categories[i]], amounts[i]);
+        }
+        ensureCapacity(size + count);
+        long firstId = nextId;
+        for (int i = 0; i < count; i++) {
+            append(firstId + i, categories[i], names[i], amounts[i], days[i]);
+        }
+        publish();
+        if (mutationLog != null) {
+            for (int i = 0; i < count; i++) {
+                mutationLog.onAdd(firstId + i, categories[i], names[i], amounts[i], days[i]);
+            }
+        }
+    }
+
+    /**
+     * Lägger till en rad med ett redan känt id, till exempel vid inläsning från lagring.
+     * Id:n måste vara stigande inom varje kategori. Raden skickas inte till loggen
+     * och syns för läsare först efter {@link #finishRestore()}.
+     *
+     * @param id       Radens id.
+     * @param category Kategorin som raden tillhör.
+     * @param name     Namnet på utgiften.
+     * @param amount   Beloppet för utgiften i öre.
+     * @param day      Utgiftens datum som epokdag.
+     */
+    public synchronized void restore(long id, int category, String name, long amount, int day) {
+        append(id, category, name, amount, day);
+    }
+
+    /**
+     * Återställer regeln för en återkommande rad, till exempel vid inläsning från lagring.
+     * Raden själv behöver inte vara inläst. Reglerna måste återställas i stigande id-ordning.
+     * Skickas inte till loggen och syns för läsare först efter {@link #finishRestore()}.
+     *
+     * @param id       Radens id.
+     * @param category Kategorin som raden tillhör.
+     * @param amount   Beloppet för varje förekomst i öre.
+     * @param day      Datumet för den första förekomsten som epokdag.
+     * @param period   Antalet månader mellan förekomsterna.
+     * @param endMonth Sista månaden som raden återkommer, eller {@link Recurrences#NO_END}.
+     */
+    public synchronized void restoreRecurrence(long id, int category, long amount, int day, int period, int endMonth) {
+        checkCategory(category, categoryCount);
+        recurrences = recurrences.with(id, category, amount, Dates.monthOf(day), period, endMonth);
+        version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * Återställer villkoren för ett lån, till exempel vid inläsning från lagring.
+     * Lånets regel för månadsbetalningarna återställs separat med
+     * {@link #restoreRecurrence}. Lånen måste återställas i stigande id-ordning.
+     * Skickas inte till loggen och syns för läsare först efter {@link #finishRestore()}.
+     *
+     * @param id        Radens id.
+     * @param principal Lånebeloppet i öre.
+     * @param rate      Årsräntan i baspunkter.
+     * @param term      Löptiden i månader.
+     * @param day       Datumet för den första betalningen som epokdag.
+     */
+    public synchronized void restoreLoan(long id, long principal, int rate, int term, int day) {
+        loans = loans.with(id, principal, rate, term, Dates.monthOf(day));
+        version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * Lägger till summan för en dag i månadsindexet utan att lägga till några rader,
+     * för månader vars rader inte läses in. Skickas inte till loggen och syns för
+     * läsare först efter {@link #finishRestore()}.
+     *
+     * @param day      Dagen som epokdag.
+     * @param category Kategorin.
+     * @param amount   Summan för dagen i öre.
+     * @param rows     Antalet rader som summan består av.
+     */
+    public synchronized void restoreDayTotal(int day, int category, long amount, int rows) {
+        checkCategory(category, categoryCount);
+        writableMonths().record(day, category, amount, rows);
+        version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * Publicerar allt som återställts med restore-metoderna i ett enda tillstånd.
+     * Anropas en gång när inläsningen är klar, i stället för en publicering per rad.
+     */
+    public synchronized void finishRestore() {
+        publish();
+    }
+
+    /**
+     * Tar bort en rad ur en kategori baserat på dess position i kategorin.
+     *
+     * @param category Kategorin som raden tillhör.
+     * @param position Positionen i kategorin.
+     * @return true om en rad togs bort, annars false.
+     */
+    public synchronized boolean remove(int category, int position) {
+        checkCategory(category, categoryCount);
+        if (position < 0 || position >= categorySizes[category]) {
+            return false;
+        }
+        int row = categoryRows[category][position];
+        long id = ids[row];
+        long amount = amounts[row];
+        writableMonths().record(days[row], category, -amount, -1);
+
+        //Kopiera kolumnerna utan den borttagna raden, befintliga snapshots behåller de gamla
+        ids = without(ids, row, size);
+        categories = without(categories, row, size);
+        nameIds = without(nameIds, row, size);
+        amounts = without(amounts, row, size);
+        days = without(days, row, size);
+        size--;
+
+        categoryRows[category] = without(categoryRows[category], position, categorySizes[category]);
+        categorySizes[category]--;
+
+        //Radindex efter den borttagna raden har flyttats ett steg
+        for (int c = 0; c < categoryCount; c++) {
+            int[] index = categoryRows[c];
+            int count = categorySizes[c];
+            int first = firstAfter(index, count, row);
+            if (first == count) {
+                continue;
+            }
+            if (c != category) {
+                index = Arrays.copyOf(index, index.length);
+                categoryRows[c] = index;
+            }
+            for (int i = first; i < count; i++) {
+                index[i]--;
+            }
+        }
+
+        totals[category] -= amount;
+        //En återkommande rad tar med sig sina framtida förekomster
+        int rule = recurrences.positionOf(id);
+        if (rule >= 0) {
+            recurrences = recurrences.without(rule);
+        }
+        int loan = loans.positionOf(id);
+        if (loan >= 0) {
+            loans = loans.without(loan);
+        }
+        version = VERSIONS.incrementAndGet();
+        publish();
+        verifyIfEnabled();
+        if (mutationLog != null) {
+            mutationLog.onRemove(id, category);
+        }
+        return true;
+    }
+
+    /**
+     * Avslutar en återkommande rad efter en viss månad. Raden och dess förekomster till
+     * och med månaden finns kvar i historiken, men den återkommer inte senare. Ett lån
+     * avslutas på samma sätt och förlorar sina lånevillkor, så att prognosen inte räknar
+     * med fler betalningar.
+     *
+     * @param id       Radens id.
+     * @param endMonth Sista månaden som raden ska återkomma.
+     * @return true om regeln avslutades, false om raden inte återkommer eller om den
+     *         började efter endMonth och därför bör tas bort i stället.
+     */
+    public synchronized boolean endRecurrence(long id, int endMonth) {
+        int rule = recurrences.positionOf(id);
+        if (rule < 0 || recurrences.startMonthAt(rule) > endMonth) {
+            return false;
+        }
+        int end = Math.min(endMonth, recurrences.endMonthAt(rule));
+        recurrences = recurrences.withEndMonth(rule, end);
+        int loan = loans.positionOf(id);
+        if (loan >= 0) {
+            loans = loans.without(loan);
+        }
+        version = VERSIONS.incrementAndGet();
+        publish();
+        if (mutationLog != null) {
+            mutationLog.onRecurrenceEnd(id, end);
+        }
+        return true;
+    }
+
+    /**
+     * Reserverar plats för ett antal nya rader i en kategori, så att kolumnerna
+     * inte behöver växa stegvis när många rader läses in.
+     *
+     * @param category Kategorin.
+     * @param count    Antalet rader som ska få plats.
+     */
+    public synchronized void reserve(int category, int count) {
+        checkCategory(category, categoryCount);
+        ensureCapacity(size + count);
+        int needed = categorySizes[category] + count;
+        if (needed > categoryRows[category].length) {
+            categoryRows[category] = Arrays.copyOf(categoryRows[category], needed);
+        }
+    }
+
+    /**
+     * Tar bort raden med ett visst id ur en kategori.
+     *
+     * @param category Kategorin som raden tillhör.
+     * @param id       Radens id.
+     * @return true om en rad togs bort, annars false.
+     */
+    public synchronized boolean removeById(int category, long id) {
+        int position = state.positionOf(category, id);
+        return position >= 0 && remove(category, position);
+    }
+
+    /**
+     * Hittar positionen för en rad i en kategori med binärsökning på id.
+     *
+     * @param category Kategorin.
+     * @param id       Radens id.
+     * @return Positionen i kategorin, eller -1 om raden saknas.
+     */
+    public int positionOf(int category, long id) {
+        return state.positionOf(category, id);
+    }
+
+    /**
+     * Tömmer ledgern på inkomst och alla rader. Internerade namn behålls
+     * eftersom de sannolikt matas in igen.
+     */
+    public synchronized void clear() {
+        income = 0;
+        ids = new long[INITIAL_CAPACITY];
+        categories = new int[INITIAL_CAPACITY];
+        nameIds = new int[INITIAL_CAPACITY];
+        amounts = new long[INITIAL_CAPACITY];
+        days = new int[INITIAL_CAPACITY];
+        size = 0;
+        //Kategorierna behålls, bara deras rader och totaler töms
+        categoryRows = new int[categoryRows.length][];
+        for (int c = 0; c < categoryCount; c++) {
+            categoryRows[c] = new int[INITIAL_CAPACITY];
+        }
+        categorySizes = new int[categorySizes.length];
+        totals = new long[totals.length];
+        months = new MonthIndex(categoryCount);
+        monthsPublished = false;
+        recurrences = Recurrences.EMPTY;
+        loans = Loans.EMPTY;
+        version = VERSIONS.incrementAndGet();
+        publish();
+        if (mutationLog != null) {
+            mutationLog.onReset();
+        }
+    }
+
+    /**
+     * Hämtar antalet rader i en kategori.
+     *
+     * @param category Kategorin.
+     * @return Antalet rader.
+     */
+    public int size(int category) {
+        return state.size(category);
+    }
+
+    /**
+     * Hämtar id för raden på en viss position i en kategori.
+     *
+     * @param category Kategorin.
+     * @param position Positionen i kategorin.
+     * @return Radens id.
+     */
+    public long idAt(int category, int position) {
+        return state.idAt(category, position);
+    }
+
+    /**
+     * Hämtar id som nästa tillagda rad kommer att få.
+     *
+     * @return Nästa id.
+     */
+    public synchronized long getNextId() {
+        return nextId;
+    }
+
+    /**
+     * Sätter id som nästa tillagda rad ska få, om det är större än det nuvarande.
+     *
+     * @param id Lägsta id för nästa rad.
+     */
+    public synchronized void setNextId(long id) {
+        nextId = Math.max(nextId, id);
+    }
+
+    /**
+     * Hämtar namnet för raden på en viss position i en kategori.
+     *
+     * @param category Kategorin.
+     * @param position Positionen i kategorin.
+     * @return Namnet på utgiften.
+     */
+    public String nameAt(int category, int position) {
+        return state.nameAt(category, position);
+    }
+
+    /**
+     * Hämtar beloppet för raden på en viss position i en kategori.
+     *
+     * @param category Kategorin.
+     * @param position Positionen i kategorin.
+     * @return Beloppet för utgiften i öre.
+     */
+    public long amountAt(int category, int position) {
+        return state.amountAt(category, position);
+    }
+
+    /**
+     * Hämtar datumet för raden på en viss position i en kategori.
+     *
+     * @param category Kategorin.
+     * @param position Positionen i kategorin.
+     * @return Utgiftens datum som epokdag.
+     */
+    public int dayAt(int category, int position) {
+        return state.dayAt(category, position);
+    }
+
+    /**
+     * Hämtar den löpande summan av alla belopp i en kategori.
+     *
+     * @param category Kategorin.
+     * @return Summan av kategorins belopp i öre.
+     */
+    public long total(int category) {
+        return state.total(category);
+    }
+
+    /**
+     * Beräknar summan av en kategori från grunden genom att gå igenom alla rader.
+     * Används för att kontrollera de löpande totalerna.
+     *
+     * @param category Kategorin.
+     * @return Den omräknade summan av kategorins belopp i öre.
+     */
+    public long recomputeTotal(int category) {
+        return state.recomputeTotal(category);
+    }
+
+    /**
+     * Slår på eller av kontrolläget. När det är på jämförs de löpande totalerna
+     * med en full omräkning efter varje ändring, vilket är tänkt för tester.
+     *
+     * @param enabled true för att kontrollera totalerna efter varje ändring.
+     */
+    public synchronized void setConsistencyChecks(boolean enabled) {
+        consistencyChecks = enabled;
+        verifyIfEnabled();
+    }
+
+    /**
+     * Kontrollerar att de löpande totalerna stämmer med en full omräkning.
+     *
+     * @throws IllegalStateException Om någon kategoris total avviker.
+     */
+    public void verifyTotals() {
+        State current = state;
+        for (int c = 0; c < current.categoryCount; c++) {
+            long expected = current.recomputeTotal(c);
+            long actual = current.total(c);
+            if (expected != actual) {
+                throw new IllegalStateException("Löpande total för kategori " + c + " är " + actual
+                        + " men omräkningen ger " + expected);
+            }
+        }
+        current.months.verify();
+    }
+
+    /**
+     * Hämtar ett versionsnummer som ökar vid varje ändring av ledgern. Numren delas
+     * av alla ledgers i processen, så två ledgers har aldrig samma version.
+     *
+     * @return Aktuell version.
+     */
+    public long getVersion() {
+        return state.version;
+    }
+
+    /**
+     * Tar en oföränderlig ögonblicksbild av en kategori. Bilden delar arrayer med
+     * ledgern, så det kostar konstant tid och inga objekt skapas per rad.
+     *
+     * @param category Kategorin.
+     * @return En oföränderlig lista med kategorins utgifter.
+     */
+    public Snapshot snapshot(int category) {
+        return state.snapshot(category);
+    }
+
+    /**
+     * Sätter namnförslagen för budgeten, till exempel byggda från alla sparade rader
+     * när bara en månads rader läses in.
+     *
+     * @param index Namnförslagen, eller null om de ska byggas från de inlästa raderna.
+     */
+    public void setNameIndex(NameIndex index) {
+        nameIndex = index;
+    }
+
+    /**
+     * Hämtar namnförslagen för budgeten.
+     *
+     * @return Namnförslagen, eller null om de inte har satts.
+     */
+    public NameIndex getNameIndex() {
+        return nameIndex;
+    }
+
+    /**
+     * Hämtar det senast publicerade tillståndet. Inkomst, totaler och rader i
+     * tillståndet hör alltid till samma version, även om andra trådar ändrar ledgern.
+     *
+     * @return Det aktuella tillståndet.
+     */
+    public State state() {
+        return state;
+    }
+
+    /**
+     * Lägger till en rad i kolumnerna. Anropas under ledgerns lås.
+     */
+    private void append(long id, int category, String name, long amount, int day) {
+        checkCategory(category, categoryCount);
+        long total = Math.addExact(totals[category], amount);
+        writableMonths().record(day, category, amount, 1);
+        ensureCapacity(size + 1);
+        nextId = Math.max(nextId, id + 1);
+        int row = size++;
+        ids[row] = id;
+        categories[row] = category;
+        nameIds[row] = intern(name);
+        amounts[row] = amount;
+        days[row] = day;
+
+        int count = categorySizes[category];
+        if (count == categoryRows[category].length) {
+            categoryRows[category] = Arrays.copyOf(categoryRows[category], count * 2);
+        }
+        categoryRows[category][count] = row;
+        categorySizes[category] = count + 1;
+        totals[category] = total;
+        version = VERSIONS.incrementAndGet();
+        verifyIfEnabled();
+    }
+
+    /**
+     * Publicerar ett nytt oföränderligt tillstånd. Anropas under ledgerns lås.
+     */
+    private void publish() {
+        state = new State(income, version, ids, nameIds, amounts, days, names, categoryCount, categoryNames,
+                categoryRows.clone(), categorySizes.clone(), totals.clone(), months, recurrences, loans);
+        monthsPublished = true;
+    }
+
+    /**
+     * Lägger till en kategori i arrayerna och månadsindexet. Anropas under ledgerns lås.
+     */
+    private int appendCategory(String name) {
+        int category = categoryCount;
+        if (category == totals.length) {
+            int capacity = category * 2;
+            categoryNames = Arrays.copyOf(categoryNames, capacity);
+            categoryRows = Arrays.copyOf(categoryRows, capacity);
+            categorySizes = Arrays.copyOf(categorySizes, capacity);
+            totals = Arrays.copyOf(totals, capacity);
+        }
+        categoryNames[category] = name;
+        categoryRows[category] = new int[INITIAL_CAPACITY];
+        writableMonths().addCategory();
+        categoryCount++;
+        return category;
+    }
+
+    /**
+     * Hämtar månadsindexet för ändring. Ett index som redan har publicerats kopieras först.
+     */
+    private MonthIndex writableMonths() {
+        if (monthsPublished) {
+            months = months.copy();
+            monthsPublished = false;
+        }
+        return months;
+    }
+
+    private void verifyIfEnabled() {
+        if (consistencyChecks) {
+            publish();
+            verifyTotals();
+        }
+    }
+
+    private static long[] without(long[] array, int index, int length) {
+        long[] copy = new long[array.length];
+        System.arraycopy(array, 0, copy, 0, index);
+        System.arraycopy(array, index + 1, copy, index, length - index - 1);
+        return copy;
+    }
+
+    private static int[] without(int[] array, int index, int length) {
+        int[] copy = new int[array.length];
+        System.arraycopy(array, 0, copy, 0, index);
+        System.arraycopy(array, index + 1, copy, index, length - index - 1);
+        return copy;
+    }
+
+    private int intern(String name) {
+        Integer existing = nameLookup.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        if (nameCount == names.length) {
+            names = Arrays.copyOf(names, nameCount * 2);
+        }
+        names[nameCount] = name;
+        nameLookup.put(name, nameCount);
+        return nameCount++;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(needed, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        nameIds = Arrays.copyOf(nameIds, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        days = Arrays.copyOf(days, capacity);
+    }
+
+    /**
+     * Hittar första positionen i ett sorterat radindex vars rad är större än row.
+     */
+    private static int firstAfter(int[] index, int count, int row) {
+        int low = 0, high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (index[mid] <= row) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static void checkCategory(int category, int categoryCount) {
+        if (category < 0 || category >= categoryCount) {
+            throw new IllegalArgumentException("Okänd kategori: " + category);
+        }
+    }
+
+    /**
+     * State är ett oföränderligt tillstånd av ledgern vid en viss version.
+     * Alla läsningar mot samma State är konsekventa med varandra, så till exempel
+     * balansen aldrig blandar totaler från två olika versioner.
+     */
+    public static final class State {
+        private final long income;
+        private final long version;
+        private final long[] ids;
+        private final int[] nameIds;
+        private final long[] amounts;
+        private final int[] days;
+        private final String[] names;
+        private final int categoryCount;
+        private final String[] categoryNames;
+        private final int[][] categoryRows;
+        private final int[] categorySizes;
+        private final long[] totals;
+        private final MonthIndex months;
+        private final Recurrences recurrences;
+        private final Loans loans;
+
+        State(long income, long version, long[] ids, int[] nameIds, long[] amounts, int[] days, String[] names,
+              int categoryCount, String[] categoryNames, int[][] categoryRows, int[] categorySizes, long[] totals,
+              MonthIndex months, Recurrences recurrences, Loans loans) {
+            this.income = income;
+            this.version = version;
+            this.ids = ids;
+            this.nameIds = nameIds;
+            this.amounts = amounts;
+            this.days = days;
+            this.names = names;
+            this.categoryCount = categoryCount;
+            this.categoryNames = categoryNames;
+            this.categoryRows = categoryRows;
+            this.categorySizes = categorySizes;
+            this.totals = totals;
+            this.months = months;
+            this.recurrences = recurrences;
+            this.loans = loans;
+        }
+
+        /**
+         * Hämtar inkomsten i detta tillstånd.
+         *
+         * @return Inkomsten i öre.
+         */
+        public long getIncome() {
+            return income;
+        }
+
+        /**
+         * Hämtar versionen för detta tillstånd.
+         *
+         * @return Versionen.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Hämtar antalet kategorier i detta tillstånd.
+         *
+         * @return Antalet kategorier.
+         */
+        public int categoryCount() {
+            return categoryCount;
+        }
+
+        /**
+         * Hämtar namnet på en kategori.
+         *
+         * @param category Kategorin.
+         * @return Kategorins namn.
+         */
+        public String categoryName(int category) {
+            checkCategory(category, categoryCount);
+            return categoryNames[category];
+        }
+
+        /**
+         * Hämtar antalet rader i en kategori.
+         *
+         * @param category Kategorin.
+         * @return Antalet rader.
+         */
+        public int size(int category) {
+            checkCategory(category, categoryCount);
+            return categorySizes[category];
+        }
+
+        /**
+         * Hämtar summan av en kategori.
+         *
+         * @param category Kategorin.
+         * @return Kategorins total i öre.
+         */
+        public long total(int category) {
+            checkCategory(category, categoryCount);
+            return totals[category];
+        }
+
+        /**
+         * Hämtar arrayen med totalen per kategori, indexerad med kategorins id.
+         * Arrayen delas med tillståndet och får inte ändras.
+         */
+        long[] totals() {
+            return totals;
+        }
+
+        /**
+         * Hämtar summan av alla utgifter i alla kategorier.
+         *
+         * @return Totala utgifter i öre.
+         * @throws ArithmeticException Om summan inte ryms i en long.
+         */
+        public long totalExpenses() {
+            long sum = 0;
+            for (int c = 0; c < categoryCount; c++) {
+                sum = Money.add(sum, totals[c]);
+            }
+            return sum;
+        }
+
+        /**
+         * Beräknar balansen, det vill säga inkomsten minus alla utgifter.
+         *
+         * @return Balansen i öre.
+         * @throws ArithmeticException Om balansen inte ryms i en long.
+         */
+        public long balance() {
+            return Money.subtract(income, totalExpenses());
+        }
+
+        /**
+         * Uppskattar hur många byte tillståndet håller i minnet, räknat på kolumnernas
+         * kapacitet, namnens längd och månadsindexet. Används för att hålla inlästa
+         * budgetar under en minnesgräns, se {@link LedgerCache}.
+         *
+         * @return Den uppskattade storleken i byte.
+         */
+        public long estimatedBytes() {
+            //Kolumnerna för id, kategori, namn-id, belopp och datum har samma kapacitet
+            long bytes = 5L * OBJECT_BYTES + ids.length * 28L;
+            for (String name : names) {
+                if (name != null) {
+                    bytes += OBJECT_BYTES + 2L * name.length() + LOOKUP_ENTRY_BYTES;
+                }
+            }
+            for (int c = 0; c < categoryCount; c++) {
+                bytes += OBJECT_BYTES + 4L * categoryRows[c].length;
+            }
+            return bytes + months.estimatedBytes() + recurrences.estimatedBytes() + loans.estimatedBytes();
+        }
+
+        /**
+         * Hämtar summorna per månad för hela historiken i detta tillstånd.
+         *
+         * @return Månadsindexet.
+         */
+        public MonthIndex months() {
+            return months;
+        }
+
+        /**
+         * Hämtar reglerna för återkommande rader i detta tillstånd.
+         *
+         * @return Reglerna.
+         */
+        public Recurrences recurrences() {
+            return recurrences;
+        }
+
+        /**
+         * Hämtar villkoren för alla lån i detta tillstånd.
+         *
+         * @return Lånen.
+         */
+        public Loans loans() {
+            return loans;
+        }
+
+        /**
+         * Summerar en kategori under ett intervall av månader, inklusive förekomster av
+         * återkommande rader. Kostar logaritmisk tid plus en beräkning per regel,
+         * oavsett intervallets längd.
+         *
+         * @param category  Kategorin.
+         * @param fromMonth Första månaden, inklusive.
+         * @param toMonth   Sista månaden, inklusive.
+         * @return Summan i öre.
+         * @throws ArithmeticException Om summan inte ryms i en long.
+         */
+        public long monthsTotal(int category, int fromMonth, int toMonth) {
+            return Money.add(months.monthsTotal(category, fromMonth, toMonth),
+                    recurrences.monthsTotal(category, fromMonth, toMonth));
+        }
+
+        /**
+         * Beräknar balansen för ett intervall av månader, det vill säga inkomsten
+         * för varje månad minus alla utgifter under månaderna, i logaritmisk tid.
+         * Återkommande rader räknas med för varje förekomst i intervallet.
+         *
+         * @param fromMonth Första månaden, inklusive.
+         * @param toMonth   Sista månaden, inklusive.
+         * @return Balansen i öre.
+         * @throws ArithmeticException Om balansen inte ryms i en long.
+         */
+        public long balance(int fromMonth, int toMonth) {
+            long balance = Money.multiply(income, Math.max(toMonth - fromMonth + 1, 0));
+            for (int c = 0; c < categoryCount; c++) {
+                balance = Money.subtract(balance, monthsTotal(c, fromMonth, toMonth));
+            }
+            return balance;
+        }
+
+        /**
+         * Tar en oföränderlig ögonblicksbild av en kategori i detta tillstånd.
+         *
+         * @param category Kategorin.
+         * @return En oföränderlig lista med kategorins utgifter.
+         */
+        public Snapshot snapshot(int category) {
+            checkCategory(category, categoryCount);
+            return new Snapshot(ids, nameIds, amounts, days, names, categoryRows[category], categorySizes[category],
+                    version, Snapshot.ALL_MONTHS);
+        }
+
+        /**
+         * Tar en ögonblicksbild av de rader i en kategori som är daterade i en månad,
+         * i stigande id-ordning. Återkommande rader som fortfarande gäller i månaden tas
+         * med, även om de är daterade tidigare, så att de kan avslutas från listan. Kostar
+         * en genomgång av kategorins inlästa rader, och raderna kopieras bara om någon av
+         * dem hör till en annan månad.
+         *
+         * @param category Kategorin.
+         * @param month    Månaden, se {@link Dates}.
+         * @return En oföränderlig lista med kategorins utgifter i månaden.
+         */
+        public Snapshot snapshot(int category, int month) {
+            checkCategory(category, categoryCount);
+            int firstDay = Dates.firstDayOf(month);
+            int lastDay = Dates.lastDayOf(month);
+            int[] rows = categoryRows[category];
+            int count = categorySizes[category];
+            int[] kept = null;
+            int size = 0;
+            for (int i = 0; i < count; i++) {
+                int row = rows[i];
+                if (days[row] >= firstDay && days[row] <= lastDay || recursIn(ids[row], month)) {
+                    if (kept != null) {
+                        kept[size] = row;
+                    }
+                    size++;
+                } else if (kept == null) {
+                    //Alla rader före denna hör till månaden
+                    kept = Arrays.copyOf(rows, count);
+                }
+            }
+            return new Snapshot(ids, nameIds, amounts, days, names, kept != null ? kept : rows, size, version, month);
+        }
+
+        private boolean recursIn(long id, int month) {
+            if (recurrences.size() == 0) {
+                return false;
+            }
+            int rule = recurrences.positionOf(id);
+            return rule >= 0 && recurrences.startMonthAt(rule) <= month && month <= recurrences.endMonthAt(rule);
+        }
+
+        long idAt(int category, int position) {
+            return ids[row(category, position)];
+        }
+
+        String nameAt(int category, int position) {
+            return names[nameIds[row(category, position)]];
+        }
+
+        long amountAt(int category, int position) {
+            return amounts[row(category, position)];
+        }
+
+        int dayAt(int category, int position) {
+            return days[row(category, position)];
+        }
+
+        int positionOf(int category, long id) {
+            checkCategory(category, categoryCount);
+            int[] rows = categoryRows[category];
+            int low = 0, high = categorySizes[category] - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long midId = ids[rows[mid]];
+                if (midId < id) {
+                    low = mid + 1;
+                } else if (midId > id) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        long recomputeTotal(int category) {
+            checkCategory(category, categoryCount);
+            int[] rows = categoryRows[category];
+            long sum = 0;
+            for (int i = 0, n = categorySizes[category]; i < n; i++) {
+                sum = Money.add(sum, amounts[rows[i]]);
+            }
+            return sum;
+        }
+
+        private int row(int category, int position) {
+            checkCategory(category, categoryCount);
+            if (position < 0 || position >= categorySizes[category]) {
+                throw new IndexOutOfBoundsException("Position " + position + " saknas i kategori " + category);
+            }
+            return categoryRows[category][position];
+        }
+    }
+
+    /**
+     * Snapshot är en oföränderlig vy över en kategori vid en viss version av ledgern.
+     * Den är säker att iterera även medan nya rader läggs till, eftersom ledgern
+     * aldrig skriver över de positioner som vyn läser. Expense-objekt skapas först
+     * när en rad hämtas.
+     */
+    public static final class Snapshot extends AbstractList<Expense> implements RandomAccess {
+        //Månaden för en ögonblicksbild av alla inlästa rader, oavsett datum
+        public static final int ALL_MONTHS = -1;
+
+        private final long[] ids;
+        private final int[] nameIds;
+        private final long[] amounts;
+        private final int[] days;
+        private final String[] names;
+        private final int[] rows;
+        private final int size;
+        private final long version;
+        private final int month;
+
+        Snapshot(long[] ids, int[] nameIds, long[] amounts, int[] days, String[] names, int[] rows, int size,
+                 long version, int month) {
+            this.ids = ids;
+            this.nameIds = nameIds;
+            this.amounts = amounts;
+            this.days = days;
+            this.names = names;
+            this.rows = rows;
+            this.size = size;
+            this.version = version;
+            this.month = month;
+        }
+
+        /**
+         * Hämtar utgiften på en position.
+         *
+         * @param position Positionen i kategorin.
+         * @return En Expense för raden.
+         */
+        @Override
+        public Expense get(int position) {
+            if (position < 0 || position >= size) {
+                throw new IndexOutOfBoundsException("Position " + position + " av " + size);
+            }
+            int row = rows[position];
+            return new Expense(ids[row], names[nameIds[row]], amounts[row], days[row]);
+        }
+
+        /**
+         * Hämtar id:t för utgiften på en position utan att skapa någon Expense.
+         *
+         * @param position Positionen i kategorin.
+         * @return Utgiftens id.
+         */
+        public long getId(int position) {
+            if (position < 0 || position >= size) {
+                throw new IndexOutOfBoundsException("Position " + position + " av " + size);
+            }
+            return ids[rows[position]];
+        }
+
+        /**
+         * Hämtar antalet rader i ögonblicksbilden.
+         *
+         * @return Antalet rader.
+         */
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Hämtar ledgerns version när ögonblicksbilden togs.
+         *
+         * @return Versionen.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Hämtar månaden som ögonblicksbilden är begränsad till.
+         *
+         * @return Månaden, eller {@link #ALL_MONTHS} om alla inlästa rader ingår.
+         */
+        public int getMonth() {
+            return month;
+        }
+    }
+}
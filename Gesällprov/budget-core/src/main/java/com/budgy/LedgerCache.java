@@ -0,0 +1,144 @@
+package com.budgy;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LedgerCache håller de senast använda budgetprofilernas ledgers i minnet.
+ * <p>
+ * Profilerna ligger i åtkomstordning, så den som användes för längst sedan står
+ * först. När de inlästa ledgers tillsammans är större än minnesgränsen släpps de
+ * äldsta tills summan ryms, men den senast använda behålls alltid, även om den
+ * ensam är större än gränsen. Storleken uppskattas med
+ * {@link Ledger.State#estimatedBytes()} och mäts om vid varje ändring av cachen,
+ * eftersom den aktiva budgeten växer medan den används.
+ * <p>
+ * En profil som finns i cachen kan bytas till direkt, utan att läsas in igen.
+ * Cachen är trådsäker.
+ */
+public final class LedgerCache {
+    private final long maxBytes;
+    private final OnEvictedListener listener;
+    //Åtkomstordning, den senast använda profilen sist
+    private final LinkedHashMap<Integer, Ledger> ledgers = new LinkedHashMap<>(8, 0.75f, true);
+    private long bytes = 0;
+
+    /**
+     * OnEvictedListener anropas när en ledger släpps ur cachen.
+     */
+    public interface OnEvictedListener {
+        /**
+         * Anropas under cachens lås, och ska därför bara lämna över ledgern,
+         * till exempel för att stänga dess lagring.
+         *
+         * @param profile Profilens id.
+         * @param ledger  Ledgern som släpptes.
+         */
+        void onEvicted(int profile, Ledger ledger);
+    }
+
+    /**
+     * Konstruktor för LedgerCache.
+     *
+     * @param maxBytes Minnesgränsen i byte för alla inlästa ledgers tillsammans.
+     * @param listener Mottagaren av ledgers som släpps, eller null.
+     */
+    public LedgerCache(long maxBytes, OnEvictedListener listener) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Ogiltig minnesgräns: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.listener = listener;
+    }
+
+    /**
+     * Hämtar ledgern för en profil och markerar den som senast använd.
+     *
+     * @param profile Profilens id.
+     * @return Ledgern, eller null om profilen inte är inläst.
+     */
+    public synchronized Ledger get(int profile) {
+        return ledgers.get(profile);
+    }
+
+    /**
+     * Lägger till eller ersätter ledgern för en profil och markerar den som senast använd.
+     * De äldsta profilerna släpps sedan tills cachen ryms inom minnesgränsen.
+     *
+     * @param profile Profilens id.
+     * @param ledger  Profilens ledger.
+     */
+    public synchronized void put(int profile, Ledger ledger) {
+        Ledger previous = ledgers.put(profile, ledger);
+        if (previous != null && previous != ledger && listener != null) {
+            listener.onEvicted(profile, previous);
+        }
+        trim();
+    }
+
+    /**
+     * Tar bort en profil ur cachen utan att anropa mottagaren.
+     *
+     * @param profile Profilens id.
+     * @return Ledgern som togs bort, eller null om profilen inte var inläst.
+     */
+    public synchronized Ledger remove(int profile) {
+        Ledger removed = ledgers.remove(profile);
+        if (removed != null) {
+            measure();
+        }
+        return removed;
+    }
+
+    /**
+     * Hämtar antalet inlästa profiler.
+     *
+     * @return Antalet profiler i cachen.
+     */
+    public synchronized int size() {
+        return ledgers.size();
+    }
+
+    /**
+     * Hämtar den uppskattade storleken av alla inlästa ledgers, mätt vid senaste ändringen.
+     *
+     * @return Storleken i byte.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Hämtar minnesgränsen.
+     *
+     * @return Gränsen i byte.
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Mäter om alla ledgers och släpper de äldsta tills summan ryms. Anropas under cachens lås.
+     */
+    private void trim() {
+        measure();
+        Iterator<Map.Entry<Integer, Ledger>> eldest = ledgers.entrySet().iterator();
+        while (bytes > maxBytes && ledgers.size() > 1) {
+            Map.Entry<Integer, Ledger> entry = eldest.next();
+            bytes -= entry.getValue().state().estimatedBytes();
+            eldest.remove();
+            if (listener != null) {
+                listener.onEvicted(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void measure() {
+        long sum = 0;
+        for (Ledger ledger : ledgers.values()) {
+            sum += ledger.state().estimatedBytes();
+        }
+        bytes = sum;
+    }
+}
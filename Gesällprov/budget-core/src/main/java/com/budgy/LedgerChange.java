@@ -0,0 +1,93 @@
+package com.budgy;
+
+/**
+ * LedgerChange beskriver en eller flera ändringar av budgeten som har samlats ihop
+ * till ett enda meddelande, till exempel alla satser i en import som hann läggas
+ * till under samma bildruta.
+ * <p>
+ * Meddelandet säger vilka sorters ändringar som skett och i vilka kategorier, och
+ * vilket versionsintervall det täcker. Själva datan hämtas från {@link Expense#getState()}.
+ */
+public final class LedgerChange {
+    public static final int ADDED = 1;
+    public static final int REMOVED = 1 << 1;
+    public static final int INCOME_CHANGED = 1 << 2;
+    public static final int RESET = 1 << 3;
+    public static final int CATEGORY_ADDED = 1 << 4;
+
+    //Kategorier med id över 63 ryms inte i masken och markerar därför alla kategorier
+    static final int MASKED_CATEGORIES = 64;
+    static final long ALL_CATEGORIES = -1L;
+
+    private final long fromVersion;
+    private final long toVersion;
+    private final int kinds;
+    private final long categories;
+
+    /**
+     * Konstruktor för ett sammanslaget ändringsmeddelande.
+     *
+     * @param fromVersion Versionen som mottagarna senast fick meddelande om.
+     * @param toVersion   Versionen efter ändringarna.
+     * @param kinds       Sorterna av ändringar, se konstanterna i klassen.
+     * @param categories  Mask med en bit per berörd kategori.
+     */
+    LedgerChange(long fromVersion, long toVersion, int kinds, long categories) {
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.kinds = kinds;
+        this.categories = categories;
+    }
+
+    /**
+     * Hämtar versionen som mottagarna senast fick meddelande om.
+     *
+     * @return Versionen före ändringarna.
+     */
+    public long getFromVersion() {
+        return fromVersion;
+    }
+
+    /**
+     * Hämtar budgetens version efter ändringarna.
+     *
+     * @return Versionen efter ändringarna.
+     */
+    public long getToVersion() {
+        return toVersion;
+    }
+
+    /**
+     * Kontrollerar om en viss sorts ändring ingår i meddelandet.
+     *
+     * @param kind En av {@link #ADDED}, {@link #REMOVED}, {@link #INCOME_CHANGED}, {@link #RESET}
+     *             och {@link #CATEGORY_ADDED}.
+     * @return true om ändringen ingår.
+     */
+    public boolean has(int kind) {
+        return (kinds & kind) != 0;
+    }
+
+    /**
+     * Kontrollerar om en kategori kan ha ändrats. En återställning berör alla kategorier.
+     *
+     * @param category Kategorin.
+     * @return true om kategorins rader eller totaler kan ha ändrats.
+     */
+    public boolean affects(int category) {
+        if (category < 0 || category >= MASKED_CATEGORIES) {
+            return categories != 0;
+        }
+        return (categories & (1L << category)) != 0;
+    }
+
+    /**
+     * Hämtar masken för en kategori. Ett negativt id betyder alla kategorier.
+     */
+    static long maskOf(int category) {
+        if (category < 0 || category >= MASKED_CATEGORIES) {
+            return ALL_CATEGORIES;
+        }
+        return 1L << category;
+    }
+}
@@ -0,0 +1,218 @@
+package com.budgy;
+
+import java.util.Arrays;
+
+/**
+ * Loans håller villkoren för lån: lånebelopp, årsränta och löptid.
+ * <p>
+ * Ett lån är en utgift som återkommer varje månad under löptiden med annuitetens
+ * belopp, se {@link Recurrences}. Villkoren lagras en gång per lån bredvid regeln,
+ * så att {@link Forecast} kan räkna fram skulden månad för månad och pröva andra
+ * räntor eller extra amorteringar. Räntan anges i baspunkter, hundradels procent,
+ * så att 4,5 % är 450.
+ * <p>
+ * En Loans ändras aldrig. {@link Ledger} skapar en ny vid varje ändring och
+ * publicerar den i sitt {@link Ledger.State}.
+ */
+public final class Loans {
+    /**
+     * Baspunkter per hel ränta, alltså 100 % som baspunkter.
+     */
+    public static final int BASIS_POINTS = 10_000;
+
+    static final Loans EMPTY = new Loans(new long[0], new long[0], new int[0], new int[0], new int[0]);
+
+    private final long[] ids;
+    private final long[] principals;
+    private final int[] rates;
+    private final int[] terms;
+    private final int[] startMonths;
+
+    private Loans(long[] ids, long[] principals, int[] rates, int[] terms, int[] startMonths) {
+        this.ids = ids;
+        this.principals = principals;
+        this.rates = rates;
+        this.terms = terms;
+        this.startMonths = startMonths;
+    }
+
+    /**
+     * Beräknar månadsbeloppet för ett annuitetslån, avrundat uppåt till helt öre
+     * så att lånet alltid hinner betalas av under löptiden.
+     *
+     * @param principal Lånebeloppet i öre.
+     * @param rate      Årsräntan i baspunkter.
+     * @param term      Löptiden i månader.
+     * @return Månadsbeloppet i öre.
+     * @throws IllegalArgumentException Om löptiden inte är positiv eller räntan är negativ.
+     */
+    public static long payment(long principal, int rate, int term) {
+        if (term <= 0 || rate < 0) {
+            throw new IllegalArgumentException("Ogiltigt lån: ränta " + rate + ", löptid " + term);
+        }
+        if (principal <= 0) {
+            return 0;
+        }
+        if (rate == 0) {
+            return (principal + term - 1) / term;
+        }
+        double monthly = monthlyRate(rate);
+        return (long) Math.ceil(principal * monthly / (1 - Math.pow(1 + monthly, -term)));
+    }
+
+    /**
+     * Beräknar den återstående skulden efter ett antal betalningar, i konstant tid.
+     *
+     * @param principal Lånebeloppet i öre.
+     * @param rate      Årsräntan i baspunkter.
+     * @param payment   Månadsbeloppet i öre.
+     * @param payments  Antalet gjorda betalningar.
+     * @return Den återstående skulden i öre, aldrig negativ.
+     */
+    public static long balanceAfter(long principal, int rate, long payment, int payments) {
+        if (payments <= 0) {
+            return principal;
+        }
+        double balance;
+        if (rate == 0) {
+            balance = principal - (double) payment * payments;
+        } else {
+            double monthly = monthlyRate(rate);
+            double growth = Math.pow(1 + monthly, payments);
+            balance = principal * growth - payment * (growth - 1) / monthly;
+        }
+        return Math.max(Math.round(balance), 0);
+    }
+
+    /**
+     * Räknar om en årsränta i baspunkter till en månadsränta som andel.
+     *
+     * @param rate Årsräntan i baspunkter.
+     * @return Månadsräntan, till exempel 0,00375 för 4,5 %.
+     */
+    public static double monthlyRate(int rate) {
+        return rate / (double) BASIS_POINTS / 12;
+    }
+
+    /**
+     * Hämtar antalet lån.
+     *
+     * @return Antalet lån.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Hämtar id för utgiften som ett lån hör till.
+     *
+     * @param position Lånets position.
+     * @return Utgiftens id.
+     */
+    public long idAt(int position) {
+        return ids[position];
+    }
+
+    /**
+     * Hämtar lånebeloppet.
+     *
+     * @param position Lånets position.
+     * @return Lånebeloppet i öre.
+     */
+    public long principalAt(int position) {
+        return principals[position];
+    }
+
+    /**
+     * Hämtar årsräntan.
+     *
+     * @param position Lånets position.
+     * @return Årsräntan i baspunkter.
+     */
+    public int rateAt(int position) {
+        return rates[position];
+    }
+
+    /**
+     * Hämtar löptiden.
+     *
+     * @param position Lånets position.
+     * @return Löptiden i månader.
+     */
+    public int termAt(int position) {
+        return terms[position];
+    }
+
+    /**
+     * Hämtar månaden för den första betalningen.
+     *
+     * @param position Lånets position.
+     * @return Månaden, se {@link Dates}.
+     */
+    public int startMonthAt(int position) {
+        return startMonths[position];
+    }
+
+    /**
+     * Hämtar månadsbeloppet för ett lån.
+     *
+     * @param position Lånets position.
+     * @return Månadsbeloppet i öre.
+     */
+    public long paymentAt(int position) {
+        return payment(principals[position], rates[position], terms[position]);
+    }
+
+    /**
+     * Hämtar positionen för lånet som hör till en utgift.
+     *
+     * @param id Utgiftens id.
+     * @return Lånets position, eller -1 om utgiften inte är ett lån.
+     */
+    public int positionOf(long id) {
+        int position = Arrays.binarySearch(ids, id);
+        return position >= 0 ? position : -1;
+    }
+
+    /**
+     * Uppskattar hur många byte lånen håller i minnet.
+     */
+    long estimatedBytes() {
+        return 5L * 16 + 28L * ids.length;
+    }
+
+    /**
+     * Skapar en kopia med ytterligare ett lån. Id:n måste vara stigande.
+     */
+    Loans with(long id, long principal, int rate, int term, int startMonth) {
+        int size = ids.length;
+        Loans copy = new Loans(Arrays.copyOf(ids, size + 1), Arrays.copyOf(principals, size + 1),
+                Arrays.copyOf(rates, size + 1), Arrays.copyOf(terms, size + 1), Arrays.copyOf(startMonths, size + 1));
+        copy.ids[size] = id;
+        copy.principals[size] = principal;
+        copy.rates[size] = rate;
+        copy.terms[size] = term;
+        copy.startMonths[size] = startMonth;
+        return copy;
+    }
+
+    /**
+     * Skapar en kopia utan lånet på en position.
+     */
+    Loans without(int position) {
+        return new Loans(remove(ids, position), remove(principals, position), remove(rates, position),
+                remove(terms, position), remove(startMonths, position));
+    }
+
+    private static long[] remove(long[] array, int index) {
+        long[] result = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+    private static int[] remove(int[] array, int index) {
+        int[] result = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+}
@@ -0,0 +1,256 @@
+package com.budgy;
+
+/**
+ * Money hanterar belopp som heltal i öre, lagrade i en vanlig long.
+ * Till skillnad från double är summor av öre alltid exakta, och eftersom
+ * beloppen är primitiva värden skapas inga objekt när de räknas eller lagras.
+ * Alla räkneoperationer kontrollerar överflöd och kastar ArithmeticException
+ * i stället för att tyst slå runt.
+ * <p>
+ * Tolkning och formatering arbetar direkt mot tecken, så att till exempel en
+ * lista kan formatera sina belopp i en återanvänd buffert utan att skapa strängar.
+ * Belopp formateras på svenskt vis med mellanslag som tusentalsavgränsare och
+ * komma som decimaltecken, till exempel "12 345,50".
+ */
+public final class Money {
+    public static final int ORE_PER_KRONA = 100;
+
+    /**
+     * Största antalet tecken som {@link #format(long, char[])} kan skriva,
+     * inklusive tecken, tusentalsavgränsare och decimaler.
+     */
+    public static final int MAX_LENGTH = 27;
+
+    /**
+     * Största antalet tecken som {@link #formatWithCurrency(long, char[])} kan skriva.
+     */
+    public static final int MAX_LENGTH_WITH_CURRENCY = MAX_LENGTH + 3;
+
+    private static final char GROUP_SEPARATOR = ' ';
+    private static final char DECIMAL_SEPARATOR = ',';
+    private static final String CURRENCY = " KR";
+
+    //En återanvänd buffert per tråd för appendTo och toString
+    private static final ThreadLocal<char[]> SCRATCH = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[MAX_LENGTH_WITH_CURRENCY];
+        }
+    };
+
+    private Money() {
+    }
+
+    /**
+     * Skapar ett belopp från hela kronor.
+     *
+     * @param kronor Antal kronor.
+     * @return Beloppet i öre.
+     * @throws ArithmeticException Om beloppet inte ryms i en long.
+     */
+    public static long ofKronor(long kronor) {
+        return Math.multiplyExact(kronor, ORE_PER_KRONA);
+    }
+
+    /**
+     * Adderar två belopp.
+     *
+     * @param a Första beloppet i öre.
+     * @param b Andra beloppet i öre.
+     * @return Summan i öre.
+     * @throws ArithmeticException Om summan inte ryms i en long.
+     */
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    /**
+     * Subtraherar ett belopp från ett annat.
+     *
+     * @param a Beloppet att subtrahera från, i öre.
+     * @param b Beloppet som subtraheras, i öre.
+     * @return Skillnaden i öre.
+     * @throws ArithmeticException Om skillnaden inte ryms i en long.
+     */
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * Multiplicerar ett belopp med ett heltal, till exempel ett antal månader.
+     *
+     * @param amount Beloppet i öre.
+     * @param factor Faktorn.
+     * @return Produkten i öre.
+     * @throws ArithmeticException Om produkten inte ryms i en long.
+     */
+    public static long multiply(long amount, long factor) {
+        return Math.multiplyExact(amount, factor);
+    }
+
+    /**
+     * Räknar om ett belopp till kronor som double. Endast tänkt för visning,
+     * till exempel andelar i ett diagram, aldrig för vidare räkning.
+     *
+     * @param amount Beloppet i öre.
+     * @return Beloppet i kronor.
+     */
+    public static double toKronor(long amount) {
+        return amount / (double) ORE_PER_KRONA;
+    }
+
+    /**
+     * Tolkar ett belopp i kronor, till exempel "1 234,50", "1234.5" eller "-99 KR".
+     * Både komma och punkt godtas. Ett avgränsningstecken följt av högst två siffror
+     * på slutet tolkas som decimaltecken, övriga som tusentalsavgränsare.
+     * Mellanslag, även hårda, ignoreras och en avslutande valuta som "KR" eller "SEK" godtas.
+     * Inga objekt skapas om texten är giltig.
+     *
+     * @param text Texten som ska tolkas.
+     * @return Beloppet i öre.
+     * @throws NumberFormatException Om texten inte är ett giltigt belopp eller inte ryms i en long.
+     */
+    public static long parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    /**
+     * Tolkar ett belopp i kronor ur en del av en text. Se {@link #parse(CharSequence)}.
+     *
+     * @param text  Texten som ska tolkas.
+     * @param start Index för första tecknet.
+     * @param end   Index efter sista tecknet.
+     * @return Beloppet i öre.
+     * @throws NumberFormatException Om texten inte är ett giltigt belopp eller inte ryms i en long.
+     */
+    public static long parse(CharSequence text, int start, int end) {
+        long units = 0; //Alla siffror som ett heltal, med negativt tecken för att rymma Long.MIN_VALUE
+        boolean negative = false;
+        boolean seenDigit = false;
+        boolean seenSeparator = false;
+        boolean seenCurrency = false;
+        int digitsAfterSeparator = 0;
+
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (seenCurrency) {
+                    throw invalid(text, start, end);
+                }
+                if (units < Long.MIN_VALUE / 10) {
+                    throw invalid(text, start, end);
+                }
+                units *= 10;
+                if (units < Long.MIN_VALUE + (c - '0')) {
+                    throw invalid(text, start, end);
+                }
+                units -= c - '0';
+                seenDigit = true;
+                digitsAfterSeparator++;
+            } else if (c == ',' || c == '.') {
+                if (!seenDigit || seenCurrency) {
+                    throw invalid(text, start, end);
+                }
+                seenSeparator = true;
+                digitsAfterSeparator = 0;
+            } else if ((c == '-' || c == '+') && !seenDigit && !negative) {
+                negative = c == '-';
+            } else if (Character.isLetter(c) && seenDigit) {
+                seenCurrency = true;
+            } else if (!Character.isWhitespace(c) && !Character.isSpaceChar(c)) {
+                throw invalid(text, start, end);
+            }
+        }
+        if (!seenDigit) {
+            throw invalid(text, start, end);
+        }
+
+        //Sista avgränsaren är ett decimaltecken om högst två siffror följer, annars är alla tusentalsavgränsare
+        int decimals = seenSeparator && digitsAfterSeparator <= 2 ? digitsAfterSeparator : 0;
+        try {
+            long ore = Math.multiplyExact(units, decimals == 0 ? ORE_PER_KRONA : decimals == 1 ? 10 : 1);
+            return negative ? ore : Math.negateExact(ore);
+        } catch (ArithmeticException e) {
+            throw invalid(text, start, end);
+        }
+    }
+
+    /**
+     * Formaterar ett belopp i en buffert, till exempel "-1 234,50".
+     * Ören skrivs bara ut om beloppet inte är jämna kronor. Inga objekt skapas.
+     *
+     * @param amount Beloppet i öre.
+     * @param buffer Bufferten som tecknen skrivs till, minst {@link #MAX_LENGTH} lång.
+     * @return Antalet skrivna tecken.
+     */
+    public static int format(long amount, char[] buffer) {
+        //Räkna med negativa värden så att även Long.MIN_VALUE kan formateras
+        long negated = amount < 0 ? amount : -amount;
+        int ore = (int) -(negated % ORE_PER_KRONA);
+        long kronor = negated / ORE_PER_KRONA;
+
+        //Skriv baklänges från slutet av bufferten och flytta sedan fram tecknen
+        int position = MAX_LENGTH;
+        if (ore != 0) {
+            buffer[--position] = (char) ('0' + ore % 10);
+            buffer[--position] = (char) ('0' + ore / 10);
+            buffer[--position] = DECIMAL_SEPARATOR;
+        }
+        int digits = 0;
+        do {
+            if (digits > 0 && digits % 3 == 0) {
+                buffer[--position] = GROUP_SEPARATOR;
+            }
+            buffer[--position] = (char) ('0' - kronor % 10);
+            kronor /= 10;
+            digits++;
+        } while (kronor != 0);
+        if (amount < 0) {
+            buffer[--position] = '-';
+        }
+
+        int length = MAX_LENGTH - position;
+        System.arraycopy(buffer, position, buffer, 0, length);
+        return length;
+    }
+
+    /**
+     * Formaterar ett belopp följt av valutan, till exempel "1 234,50 KR". Inga objekt skapas.
+     *
+     * @param amount Beloppet i öre.
+     * @param buffer Bufferten som tecknen skrivs till, minst {@link #MAX_LENGTH_WITH_CURRENCY} lång.
+     * @return Antalet skrivna tecken.
+     */
+    public static int formatWithCurrency(long amount, char[] buffer) {
+        int length = format(amount, buffer);
+        CURRENCY.getChars(0, CURRENCY.length(), buffer, length);
+        return length + CURRENCY.length();
+    }
+
+    /**
+     * Lägger till ett formaterat belopp sist i en StringBuilder.
+     *
+     * @param amount  Beloppet i öre.
+     * @param builder StringBuildern som beloppet läggs till i.
+     * @return Samma StringBuilder.
+     */
+    public static StringBuilder appendTo(long amount, StringBuilder builder) {
+        char[] scratch = SCRATCH.get();
+        return builder.append(scratch, 0, format(amount, scratch));
+    }
+
+    /**
+     * Formaterar ett belopp som en ny String, till exempel "1 234,50".
+     *
+     * @param amount Beloppet i öre.
+     * @return Det formaterade beloppet.
+     */
+    public static String toString(long amount) {
+        char[] scratch = SCRATCH.get();
+        return new String(scratch, 0, format(amount, scratch));
+    }
+
+    private static NumberFormatException invalid(CharSequence text, int start, int end) {
+        return new NumberFormatException("Ogiltigt belopp: \"" + text.subSequence(start, end) + "\"");
+    }
+}
@@ -0,0 +1,306 @@
+package com.budgy;
+
+import java.util.Arrays;
+
+/**
+ * MonthIndex håller summor per månad och kategori för hela budgetens historik,
+ * även för månader vars rader inte är inlästa i minnet.
+ * <p>
+ * Varje månad är en partition med summan och antalet rader per kategori. Ovanpå
+ * partitionerna finns ett Fenwick-träd per kategori över månaderna, så att summan
+ * för ett godtyckligt intervall av månader kan beräknas i logaritmisk tid. Intervallen
+ * är hela månader eftersom återkommande utgifter, se {@link Recurrences}, förekommer
+ * per månad och inte en viss dag.
+ * <p>
+ * Indexet ändras bara av {@link Ledger} under ledgerns lås. Ett index som har
+ * publicerats i ett {@link Ledger.State} ändras aldrig, ledgern arbetar i stället
+ * vidare på en kopia som delar alla partitioner och träd som inte ändras.
+ * <p>
+ * Antalet kategorier kan växa.
+ */
+public final class MonthIndex {
+    private static final int INITIAL_CAPACITY = 16;
+    //Ungefärlig storlek i byte för huvudet på ett objekt eller en array
+    private static final int OBJECT_BYTES = 16;
+
+    private int categoryCount;
+    private int firstMonth = 0;
+    private int monthCount = 0;
+
+    //Fenwick-träd per kategori över månadernas position, med index från 1
+    private long[][] tree;
+    //Träd som har kopierats sedan indexet senast delades
+    private boolean[] treeOwned;
+    private Partition[] partitions;
+    //Partitioner som har kopierats sedan indexet senast delades
+    private boolean[] owned;
+
+    /**
+     * Partition är summorna för en enskild månad.
+     */
+    private static final class Partition {
+        final long[] totals;
+        final int[] rows;
+
+        Partition(int categoryCount) {
+            totals = new long[categoryCount];
+            rows = new int[categoryCount];
+        }
+
+        Partition(Partition other, int categoryCount) {
+            totals = Arrays.copyOf(other.totals, categoryCount);
+            rows = Arrays.copyOf(other.rows, categoryCount);
+        }
+    }
+
+    MonthIndex(int categoryCount) {
+        this.categoryCount = categoryCount;
+        this.tree = new long[categoryCount][INITIAL_CAPACITY + 1];
+        this.treeOwned = new boolean[categoryCount];
+        this.partitions = new Partition[INITIAL_CAPACITY];
+        this.owned = new boolean[INITIAL_CAPACITY];
+    }
+
+    private MonthIndex(MonthIndex other) {
+        this.categoryCount = other.categoryCount;
+        this.firstMonth = other.firstMonth;
+        this.monthCount = other.monthCount;
+        this.tree = other.tree.clone();
+        this.treeOwned = new boolean[categoryCount];
+        this.partitions = other.partitions.clone();
+        this.owned = new boolean[partitions.length];
+    }
+
+    /**
+     * Skapar en kopia som kan ändras utan att påverka detta index.
+     * Partitioner och träd delas tills de ändras.
+     */
+    MonthIndex copy() {
+        return new MonthIndex(this);
+    }
+
+    /**
+     * Uppskattar hur många byte indexet håller i minnet. Partitioner som delas med
+     * en kopia räknas i båda.
+     */
+    long estimatedBytes() {
+        long bytes = 4L * OBJECT_BYTES + 4L * partitions.length;
+        for (long[] categoryTree : tree) {
+            bytes += OBJECT_BYTES + 8L * categoryTree.length;
+        }
+        for (Partition partition : partitions) {
+            if (partition == null) {
+                continue;
+            }
+            int count = partition.totals.length;
+            bytes += 3L * OBJECT_BYTES + 12L * count;
+        }
+        return bytes;
+    }
+
+    /**
+     * Lägger till en ny, tom kategori sist.
+     */
+    void addCategory() {
+        tree = Arrays.copyOf(tree, categoryCount + 1);
+        treeOwned = Arrays.copyOf(treeOwned, categoryCount + 1);
+        tree[categoryCount] = new long[partitions.length + 1];
+        treeOwned[categoryCount] = true;
+        categoryCount++;
+    }
+
+    /**
+     * Lägger till ett belopp i en kategori för den månad som en dag hör till.
+     *
+     * @param day      Epokdagen.
+     * @param category Kategorin.
+     * @param amount   Beloppet i öre, negativt när en rad tas bort.
+     * @param rows     Ändringen i antal rader, 1 vid tillägg och -1 vid borttagning.
+     */
+    void record(int day, int category, long amount, int rows) {
+        int offset = offsetFor(Dates.monthOf(day));
+        Partition partition = writable(offset);
+        partition.totals[category] = Math.addExact(partition.totals[category], amount);
+        partition.rows[category] += rows;
+        long[] categoryTree = writableTree(category);
+        for (int i = offset + 1; i < categoryTree.length; i += i & -i) {
+            categoryTree[i] += amount;
+        }
+    }
+
+    /**
+     * Kontrollerar om indexet saknar månader.
+     *
+     * @return true om ingen månad har några belopp.
+     */
+    public boolean isEmpty() {
+        return monthCount == 0;
+    }
+
+    /**
+     * Hämtar den tidigaste månaden i indexet.
+     *
+     * @return Månaden som antal månader sedan januari 1970.
+     */
+    public int getFirstMonth() {
+        return firstMonth;
+    }
+
+    /**
+     * Hämtar den senaste månaden i indexet.
+     *
+     * @return Månaden som antal månader sedan januari 1970.
+     */
+    public int getLastMonth() {
+        return firstMonth + monthCount - 1;
+    }
+
+    /**
+     * Hämtar summan för en kategori under en månad i konstant tid.
+     *
+     * @param category Kategorin.
+     * @param month    Månaden.
+     * @return Summan i öre.
+     */
+    public long monthTotal(int category, int month) {
+        Partition partition = partitionOf(month);
+        return partition == null || category >= partition.totals.length ? 0 : partition.totals[category];
+    }
+
+    /**
+     * Hämtar antalet rader för en kategori under en månad, även om raderna inte är inlästa.
+     *
+     * @param category Kategorin.
+     * @param month    Månaden.
+     * @return Antalet rader.
+     */
+    public int monthRows(int category, int month) {
+        Partition partition = partitionOf(month);
+        return partition == null || category >= partition.rows.length ? 0 : partition.rows[category];
+    }
+
+    /**
+     * Hämtar summan för en kategori över ett intervall av hela månader i logaritmisk tid.
+     *
+     * @param category  Kategorin.
+     * @param fromMonth Första månaden, inklusive.
+     * @param toMonth   Sista månaden, inklusive.
+     * @return Summan i öre.
+     */
+    public long monthsTotal(int category, int fromMonth, int toMonth) {
+        int from = Math.max(fromMonth - firstMonth, 0);
+        int to = Math.min(toMonth - firstMonth, monthCount - 1);
+        if (from > to) {
+            return 0;
+        }
+        return prefix(category, to + 1) - prefix(category, from);
+    }
+
+    /**
+     * Kontrollerar att Fenwick-träden stämmer med partitionernas summor.
+     *
+     * @throws IllegalStateException Om någon månad avviker.
+     */
+    void verify() {
+        for (int c = 0; c < categoryCount; c++) {
+            long sum = 0;
+            for (int offset = 0; offset < monthCount; offset++) {
+                Partition partition = partitions[offset];
+                sum += partition == null || c >= partition.totals.length ? 0 : partition.totals[c];
+                if (prefix(c, offset + 1) != sum) {
+                    throw new IllegalStateException("Månadsindex för kategori " + c
+                            + " avviker vid månad " + (firstMonth + offset));
+                }
+            }
+        }
+    }
+
+    private long prefix(int category, int count) {
+        long[] categoryTree = tree[category];
+        long sum = 0;
+        for (int i = count; i > 0; i -= i & -i) {
+            sum += categoryTree[i];
+        }
+        return sum;
+    }
+
+    private Partition partitionOf(int month) {
+        int offset = month - firstMonth;
+        if (offset < 0 || offset >= monthCount) {
+            return null;
+        }
+        return partitions[offset];
+    }
+
+    private Partition writable(int offset) {
+        Partition partition = partitions[offset];
+        if (partition == null) {
+            partition = new Partition(categoryCount);
+        } else if (!owned[offset] || partition.totals.length < categoryCount) {
+            partition = new Partition(partition, categoryCount);
+        }
+        partitions[offset] = partition;
+        owned[offset] = true;
+        return partition;
+    }
+
+    private long[] writableTree(int category) {
+        if (!treeOwned[category]) {
+            tree[category] = tree[category].clone();
+            treeOwned[category] = true;
+        }
+        return tree[category];
+    }
+
+    /**
+     * Hittar positionen för en månad och gör plats för den om den ligger
+     * utanför de månader som redan finns.
+     */
+    private int offsetFor(int month) {
+        if (monthCount == 0) {
+            firstMonth = month;
+        }
+        int shift = Math.max(firstMonth - month, 0);
+        int needed = Math.max(monthCount, month - firstMonth + 1) + shift;
+        if (shift > 0 || needed > partitions.length) {
+            int capacity = partitions.length;
+            while (capacity < needed) {
+                capacity *= 2;
+            }
+            Partition[] moved = new Partition[capacity];
+            boolean[] movedOwned = new boolean[capacity];
+            System.arraycopy(partitions, 0, moved, shift, monthCount);
+            System.arraycopy(owned, 0, movedOwned, shift, monthCount);
+            partitions = moved;
+            owned = movedOwned;
+            firstMonth -= shift;
+            monthCount += shift;
+            rebuildTrees();
+        }
+        int offset = month - firstMonth;
+        monthCount = Math.max(monthCount, offset + 1);
+        return offset;
+    }
+
+    /**
+     * Bygger om Fenwick-träden från partitionernas summor i linjär tid.
+     */
+    private void rebuildTrees() {
+        int capacity = partitions.length;
+        for (int c = 0; c < categoryCount; c++) {
+            long[] categoryTree = new long[capacity + 1];
+            for (int offset = 0; offset < monthCount; offset++) {
+                Partition partition = partitions[offset];
+                categoryTree[offset + 1] = partition == null || c >= partition.totals.length ? 0 : partition.totals[c];
+            }
+            for (int i = 1; i <= capacity; i++) {
+                int parent = i + (i & -i);
+                if (parent <= capacity) {
+                    categoryTree[parent] += categoryTree[i];
+                }
+            }
+            tree[c] = categoryTree;
+            treeOwned[c] = true;
+        }
+    }
+}
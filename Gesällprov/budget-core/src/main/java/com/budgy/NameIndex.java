@@ -0,0 +1,246 @@
+package com.budgy;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * NameIndex föreslår utgiftsnamn medan användaren skriver, till exempel "Hyra"
+ * efter att ha skrivit "hy".
+ * <p>
+ * Namnen lagras i ett prefixträd med primitiva arrayer. Varje nod håller de högst
+ * {@link #MAX_SUGGESTIONS} namnen under sig med högst vikt, så ett förslag kostar
+ * bara en vandring längs prefixet och ingen sökning i underträdet. Matchningen
+ * skiljer inte på stora och små bokstäver.
+ * <p>
+ * Vikten är en avtagande räkning: varje användning av namnet bidrar med
+ * 2^((dag - basdag) / halveringstid). Ett namn som används ofta vinner, men en
+ * användning förlorar hälften av sin vikt per halveringstid jämfört med en ny.
+ * Eftersom vikterna bara växer behåller alla nodernas listor sin ordning när
+ * tiden går, och en ändring uppdaterar bara noderna längs namnets väg.
+ */
+public final class NameIndex {
+    public static final int MAX_SUGGESTIONS = 8;
+
+    private static final double HALF_LIFE_DAYS = 30.0;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    private final int baseDay;
+
+    //Noder i prefixträdet, barnen är en länkad lista via nextSibling
+    private char[] keys = new char[INITIAL_CAPACITY];
+    private int[] firstChild = new int[INITIAL_CAPACITY];
+    private int[] nextSibling = new int[INITIAL_CAPACITY];
+    private int[] terminal = new int[INITIAL_CAPACITY];
+    private int[][] top = new int[INITIAL_CAPACITY][];
+    private byte[] topCount = new byte[INITIAL_CAPACITY];
+    private int nodeCount = 0;
+
+    //Namn, en position per namn-id
+    private String[] names = new String[INITIAL_CAPACITY];
+    private double[] weights = new double[INITIAL_CAPACITY];
+    private int nameCount = 0;
+
+    //Noderna längs det senast tillagda namnets väg, återanvänds mellan anropen
+    private int[] path = new int[32];
+
+    /**
+     * Skapar ett tomt index där vikterna räknas från en basdag.
+     *
+     * @param baseDay Dagen som vikterna räknas från, normalt dagens datum.
+     */
+    public NameIndex(int baseDay) {
+        this.baseDay = baseDay;
+        newNode('\0');
+    }
+
+    /**
+     * Bygger ett index från alla inlästa rader i ett tillstånd av budgeten.
+     * Vikten för varje namn summeras först, så att varje namn bara läggs in en gång.
+     *
+     * @param state Tillståndet som namnen hämtas från.
+     * @return Det nya indexet.
+     */
+    public static NameIndex build(Ledger.State state) {
+        NameIndex index = new NameIndex(Dates.today());
+        Map<String, double[]> sums = new HashMap<>();
+        for (int c = 0; c < state.categoryCount(); c++) {
+            for (int p = 0, n = state.size(c); p < n; p++) {
+                String name = state.nameAt(c, p);
+                double[] sum = sums.get(name);
+                if (sum == null) {
+                    sum = new double[1];
+                    sums.put(name, sum);
+                }
+                sum[0] += index.weightOf(state.dayAt(c, p));
+            }
+        }
+        for (Map.Entry<String, double[]> entry : sums.entrySet()) {
+            index.add(entry.getKey(), entry.getValue()[0]);
+        }
+        return index;
+    }
+
+    /**
+     * Noterar att ett namn har använts en viss dag.
+     *
+     * @param name Namnet.
+     * @param day  Dagen som epokdag.
+     */
+    public synchronized void record(String name, int day) {
+        add(name, weightOf(day));
+    }
+
+    /**
+     * Noterar att ett namn har använts ett antal gånger, till exempel från en
+     * aggregatfråga mot lagringen. Alla användningar räknas som den senaste dagen.
+     *
+     * @param name    Namnet.
+     * @param lastDay Den senaste dagen som namnet användes, som epokdag.
+     * @param uses    Antalet användningar.
+     */
+    public synchronized void record(String name, int lastDay, int uses) {
+        add(name, uses * weightOf(lastDay));
+    }
+
+    /**
+     * Hämtar de namn med högst vikt som börjar med ett prefix.
+     * Inga objekt skapas, namnen skrivs till den givna arrayen.
+     *
+     * @param prefix Det användaren har skrivit hittills.
+     * @param out    Arrayen som förslagen skrivs till, mest relevanta först.
+     * @return Antalet förslag som skrevs.
+     */
+    public synchronized int suggest(CharSequence prefix, String[] out) {
+        int node = ROOT;
+        for (int i = 0, n = prefix.length(); i < n && node != NONE; i++) {
+            node = child(node, Character.toLowerCase(prefix.charAt(i)));
+        }
+        if (node == NONE) {
+            return 0;
+        }
+        int count = Math.min(topCount[node], out.length);
+        int[] ids = top[node];
+        for (int i = 0; i < count; i++) {
+            out[i] = names[ids[i]];
+        }
+        return count;
+    }
+
+    /**
+     * Hämtar antalet olika namn i indexet.
+     *
+     * @return Antalet namn.
+     */
+    public synchronized int size() {
+        return nameCount;
+    }
+
+    private double weightOf(int day) {
+        return Math.pow(2.0, (day - baseDay) / HALF_LIFE_DAYS);
+    }
+
+    /**
+     * Lägger till vikt för ett namn och uppdaterar topplistorna längs dess väg.
+     */
+    private void add(String name, double weight) {
+        int length = name.length();
+        if (length == 0) {
+            return;
+        }
+        if (path.length < length + 1) {
+            path = new int[length + 1];
+        }
+        int node = ROOT;
+        path[0] = node;
+        for (int i = 0; i < length; i++) {
+            char key = Character.toLowerCase(name.charAt(i));
+            int next = child(node, key);
+            if (next == NONE) {
+                next = newNode(key);
+                nextSibling[next] = firstChild[node];
+                firstChild[node] = next;
+            }
+            node = next;
+            path[i + 1] = node;
+        }
+        int id = terminal[node];
+        if (id == NONE) {
+            id = newName();
+            terminal[node] = id;
+        }
+        names[id] = name; //Senaste stavningen visas
+        weights[id] += weight;
+        for (int i = 0; i <= length; i++) {
+            updateTop(path[i], id);
+        }
+    }
+
+    /**
+     * Flyttar fram ett namn i en nods topplista efter att dess vikt har ökat.
+     */
+    private void updateTop(int node, int id) {
+        int[] ids = top[node];
+        if (ids == null) {
+            ids = new int[MAX_SUGGESTIONS];
+            top[node] = ids;
+        }
+        int count = topCount[node];
+        int position = 0;
+        while (position < count && ids[position] != id) {
+            position++;
+        }
+        if (position == count) {
+            if (count < MAX_SUGGESTIONS) {
+                topCount[node] = (byte) (count + 1);
+            } else if (weights[id] > weights[ids[count - 1]]) {
+                position = count - 1;
+            } else {
+                return;
+            }
+            ids[position] = id;
+        }
+        while (position > 0 && weights[ids[position - 1]] < weights[id]) {
+            ids[position] = ids[position - 1];
+            position--;
+        }
+        ids[position] = id;
+    }
+
+    private int child(int node, char key) {
+        for (int c = firstChild[node]; c != NONE; c = nextSibling[c]) {
+            if (keys[c] == key) {
+                return c;
+            }
+        }
+        return NONE;
+    }
+
+    private int newNode(char key) {
+        if (nodeCount == keys.length) {
+            int capacity = nodeCount * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            terminal = Arrays.copyOf(terminal, capacity);
+            top = Arrays.copyOf(top, capacity);
+            topCount = Arrays.copyOf(topCount, capacity);
+        }
+        int node = nodeCount++;
+        keys[node] = key;
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        terminal[node] = NONE;
+        return node;
+    }
+
+    private int newName() {
+        if (nameCount == names.length) {
+            names = Arrays.copyOf(names, nameCount * 2);
+            weights = Arrays.copyOf(weights, nameCount * 2);
+        }
+        return nameCount++;
+    }
+}
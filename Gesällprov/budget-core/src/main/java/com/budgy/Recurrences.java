@@ -0,0 +1,271 @@
+package com.budgy;
+
+import java.util.Arrays;
+
+/**
+ * Recurrences håller regler för utgifter som återkommer, till exempel hyra varje
+ * månad eller en försäkring varje år.
+ * <p>
+ * En regel lagras en gång per utgift och skapar aldrig några rader. Utgiften själv
+ * är den första förekomsten, i den månad den lades till, och regeln beskriver de
+ * följande: var {@code period}:e månad till och med slutmånaden. Antalet förekomster
+ * i ett intervall av månader räknas fram i sluten form, så summan för trettio år
+ * kostar lika lite som för en månad. Förekomsterna kan också gås igenom en i taget
+ * med {@link #nextOccurrence(int, int)} utan att någon lista skapas.
+ * <p>
+ * En Recurrences ändras aldrig. {@link Ledger} skapar en ny vid varje ändring och
+ * publicerar den i sitt {@link Ledger.State}. Reglerna är få jämfört med raderna,
+ * så kopieringen är billig.
+ */
+public final class Recurrences {
+    public static final int NONE = 0;
+    public static final int MONTHLY = 1;
+    public static final int QUARTERLY = 3;
+    public static final int YEARLY = 12;
+
+    /**
+     * Slutmånad för regler som gäller tills vidare.
+     */
+    public static final int NO_END = Integer.MAX_VALUE;
+
+    static final Recurrences EMPTY = new Recurrences(new long[0], new int[0], new long[0], new int[0], new int[0],
+            new int[0]);
+
+    private final long[] ids;
+    private final int[] categories;
+    private final long[] amounts;
+    private final int[] startMonths;
+    private final int[] periods;
+    private final int[] endMonths;
+
+    private Recurrences(long[] ids, int[] categories, long[] amounts, int[] startMonths, int[] periods,
+                        int[] endMonths) {
+        this.ids = ids;
+        this.categories = categories;
+        this.amounts = amounts;
+        this.startMonths = startMonths;
+        this.periods = periods;
+        this.endMonths = endMonths;
+    }
+
+    /**
+     * Räknar förekomsterna efter den första i ett intervall av månader, i konstant tid.
+     *
+     * @param startMonth Månaden för den första förekomsten, själva utgiften.
+     * @param period     Antalet månader mellan förekomsterna.
+     * @param endMonth   Sista månaden som en förekomst får infalla, inklusive.
+     * @param fromMonth  Intervallets första månad, inklusive.
+     * @param toMonth    Intervallets sista månad, inklusive.
+     * @return Antalet förekomster i intervallet.
+     */
+    public static long occurrences(int startMonth, int period, int endMonth, int fromMonth, int toMonth) {
+        //Förekomsterna infaller i startMonth + k * period för k >= 1, räknat som long för att undvika överflöd
+        long first = Math.max((long) fromMonth, (long) startMonth + period);
+        long last = Math.min(toMonth, endMonth);
+        if (last < first) {
+            return 0;
+        }
+        long firstK = (first - startMonth + period - 1) / period;
+        long lastK = (last - startMonth) / period;
+        return Math.max(lastK - firstK + 1, 0);
+    }
+
+    /**
+     * Hämtar antalet regler.
+     *
+     * @return Antalet regler.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Hämtar id för utgiften som en regel hör till.
+     *
+     * @param position Regelns position.
+     * @return Utgiftens id.
+     */
+    public long idAt(int position) {
+        return ids[position];
+    }
+
+    /**
+     * Hämtar kategorin för en regel.
+     *
+     * @param position Regelns position.
+     * @return Kategorin.
+     */
+    public int categoryAt(int position) {
+        return categories[position];
+    }
+
+    /**
+     * Hämtar beloppet för varje förekomst av en regel.
+     *
+     * @param position Regelns position.
+     * @return Beloppet i öre.
+     */
+    public long amountAt(int position) {
+        return amounts[position];
+    }
+
+    /**
+     * Hämtar månaden för den första förekomsten, alltså utgiften själv.
+     *
+     * @param position Regelns position.
+     * @return Månaden, se {@link Dates}.
+     */
+    public int startMonthAt(int position) {
+        return startMonths[position];
+    }
+
+    /**
+     * Hämtar antalet månader mellan förekomsterna av en regel.
+     *
+     * @param position Regelns position.
+     * @return Perioden i månader.
+     */
+    public int periodAt(int position) {
+        return periods[position];
+    }
+
+    /**
+     * Hämtar den sista månaden som en regel gäller.
+     *
+     * @param position Regelns position.
+     * @return Slutmånaden, eller {@link #NO_END}.
+     */
+    public int endMonthAt(int position) {
+        return endMonths[position];
+    }
+
+    /**
+     * Hämtar positionen för regeln som hör till en utgift.
+     *
+     * @param id Utgiftens id.
+     * @return Regelns position, eller -1 om utgiften inte återkommer.
+     */
+    public int positionOf(long id) {
+        int position = Arrays.binarySearch(ids, id);
+        return position >= 0 ? position : -1;
+    }
+
+    /**
+     * Hämtar den första förekomsten efter utgiften själv som infaller tidigast en viss månad.
+     * Nästa förekomst fås genom att anropa igen med den returnerade månaden plus ett.
+     *
+     * @param position  Regelns position.
+     * @param fromMonth Den tidigaste månaden.
+     * @return Förekomstens månad, eller -1 om regeln inte har fler förekomster.
+     */
+    public int nextOccurrence(int position, int fromMonth) {
+        int start = startMonths[position];
+        int period = periods[position];
+        long first = Math.max((long) fromMonth, (long) start + period);
+        long month = start + (first - start + period - 1) / period * period;
+        return month <= endMonths[position] ? (int) month : -1;
+    }
+
+    /**
+     * Summerar förekomsterna av alla regler i en kategori under ett intervall av månader.
+     * Kostar en beräkning per regel oavsett intervallets längd.
+     *
+     * @param category  Kategorin.
+     * @param fromMonth Intervallets första månad, inklusive.
+     * @param toMonth   Intervallets sista månad, inklusive.
+     * @return Summan i öre.
+     * @throws ArithmeticException Om summan inte ryms i en long.
+     */
+    public long monthsTotal(int category, int fromMonth, int toMonth) {
+        long sum = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (categories[i] == category) {
+                sum = Money.add(sum, occurrenceTotal(i, fromMonth, toMonth));
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Lägger till förekomsterna av alla regler under ett intervall av månader till
+     * totalerna per kategori, i en enda genomgång av reglerna.
+     *
+     * @param fromMonth Intervallets första månad, inklusive.
+     * @param toMonth   Intervallets sista månad, inklusive.
+     * @param totals    Totalerna per kategori i öre, indexerade med kategorins id.
+     * @throws ArithmeticException Om en total inte ryms i en long.
+     */
+    public void addMonthsTotals(int fromMonth, int toMonth, long[] totals) {
+        for (int i = 0; i < ids.length; i++) {
+            int category = categories[i];
+            if (category < totals.length) {
+                totals[category] = Money.add(totals[category], occurrenceTotal(i, fromMonth, toMonth));
+            }
+        }
+    }
+
+    /**
+     * Uppskattar hur många byte reglerna håller i minnet.
+     */
+    long estimatedBytes() {
+        return 6L * 16 + 32L * ids.length;
+    }
+
+    /**
+     * Skapar en kopia med ytterligare en regel. Id:n måste vara stigande.
+     */
+    Recurrences with(long id, int category, long amount, int startMonth, int period, int endMonth) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Ogiltig period: " + period);
+        }
+        int size = ids.length;
+        Recurrences copy = new Recurrences(Arrays.copyOf(ids, size + 1), Arrays.copyOf(categories, size + 1),
+                Arrays.copyOf(amounts, size + 1), Arrays.copyOf(startMonths, size + 1),
+                Arrays.copyOf(periods, size + 1), Arrays.copyOf(endMonths, size + 1));
+        copy.ids[size] = id;
+        copy.categories[size] = category;
+        copy.amounts[size] = amount;
+        copy.startMonths[size] = startMonth;
+        copy.periods[size] = period;
+        copy.endMonths[size] = endMonth;
+        return copy;
+    }
+
+    /**
+     * Skapar en kopia utan regeln på en position.
+     */
+    Recurrences without(int position) {
+        return new Recurrences(remove(ids, position), remove(categories, position), remove(amounts, position),
+                remove(startMonths, position), remove(periods, position), remove(endMonths, position));
+    }
+
+    /**
+     * Skapar en kopia där regeln på en position har en ny sista månad. Övriga kolumner delas
+     * med originalet eftersom de inte ändras.
+     */
+    Recurrences withEndMonth(int position, int endMonth) {
+        if (endMonth < startMonths[position]) {
+            throw new IllegalArgumentException("Slutmånaden ligger före startmånaden: " + endMonth);
+        }
+        int[] ends = endMonths.clone();
+        ends[position] = endMonth;
+        return new Recurrences(ids, categories, amounts, startMonths, periods, ends);
+    }
+
+    private long occurrenceTotal(int position, int fromMonth, int toMonth) {
+        long count = occurrences(startMonths[position], periods[position], endMonths[position], fromMonth, toMonth);
+        return Money.multiply(amounts[position], count);
+    }
+
+    private static long[] remove(long[] array, int index) {
+        long[] result = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+    private static int[] remove(int[] array, int index) {
+        int[] result = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+}
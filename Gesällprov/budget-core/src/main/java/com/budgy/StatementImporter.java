@@ -0,0 +1,447 @@
+package com.budgy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * StatementImporter läser in kontoutdrag i CSV-format från en ström, till exempel
+ * från en Uri via ContentResolver eller från en fil, och lägger in raderna i budgeten.
+ * <p>
+ * Filen läses i en fast buffert och tolkas byte för byte, så minnet är begränsat
+ * oavsett filens storlek. Belopp tolkas direkt från byten utan att skapa en String,
+ * med samma regler för avgränsare som {@link Money#parse(CharSequence)}, och namn
+ * som återkommer hämtas ur en liten cache tillsammans med sin kategori.
+ * Datum tolkas också direkt från byten, som ÅÅÅÅ-MM-DD eller ÅÅÅÅMMDD, och rader utan giltigt
+ * datum får dagens datum.
+ * Raderna läggs till i budgeten i satser, och importen kan avbrytas när som helst.
+ */
+public class StatementImporter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BATCH_SIZE = 1024;
+    private static final int MAX_NAME_BYTES = 256;
+    private static final int NAME_CACHE_SIZE = 4096; //Måste vara en tvåpotens
+
+    //Gemensam för alla importer, så att ingen tråd blir kvar när skärmen som startade en import försvinner
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "budgy-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Format beskriver hur kontoutdraget är uppbyggt.
+     */
+    public static class Format {
+        final byte delimiter;
+        final int dateColumn;
+        final int nameColumn;
+        final int amountColumn;
+        final boolean hasHeader;
+
+        /**
+         * Konstruktor för Format.
+         *
+         * @param delimiter    Tecknet mellan fälten, oftast ';' eller ','.
+         * @param dateColumn   Index för kolumnen med datum, eller -1 om datum saknas.
+         * @param nameColumn   Index för kolumnen med text eller mottagare.
+         * @param amountColumn Index för kolumnen med belopp.
+         * @param hasHeader    true om första raden är en rubrikrad.
+         */
+        public Format(char delimiter, int dateColumn, int nameColumn, int amountColumn, boolean hasHeader) {
+            this.delimiter = (byte) delimiter;
+            this.dateColumn = dateColumn;
+            this.nameColumn = nameColumn;
+            this.amountColumn = amountColumn;
+            this.hasHeader = hasHeader;
+        }
+
+        /**
+         * Standardformatet: datum;text;belopp med en rubrikrad.
+         *
+         * @return Standardformatet.
+         */
+        public static Format defaults() {
+            return new Format(';', 0, 1, 2, true);
+        }
+    }
+
+    /**
+     * Listener tar emot förlopp och resultat från en import. Anropen sker på importtråden.
+     */
+    public interface Listener {
+        /**
+         * Anropas efter varje sats som lagts till i budgeten.
+         *
+         * @param bytesRead     Antalet lästa byte hittills.
+         * @param rowsImported  Antalet importerade rader hittills.
+         */
+        void onProgress(long bytesRead, long rowsImported);
+
+        /**
+         * Anropas när importen är klar eller har avbrutits.
+         *
+         * @param rowsImported Antalet importerade rader.
+         * @param rowsSkipped  Antalet rader som hoppades över, till exempel insättningar.
+         * @param cancelled    true om importen avbröts.
+         */
+        void onFinished(long rowsImported, long rowsSkipped, boolean cancelled);
+
+        /**
+         * Anropas om strömmen inte gick att läsa eller om raderna inte kunde läggas till
+         * i budgeten. Redan importerade satser finns kvar.
+         *
+         * @param e Felet som uppstod.
+         */
+        void onError(Exception e);
+    }
+
+    /**
+     * Task representerar en pågående import och kan användas för att avbryta den.
+     */
+    public static class Task {
+        private volatile boolean cancelled = false;
+
+        /**
+         * Avbryter importen. Satser som redan lagts till i budgeten behålls.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Kontrollerar om importen har avbrutits.
+         *
+         * @return true om importen har avbrutits.
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * Startar en import på importtråden. Strömmen stängs när importen är klar.
+     *
+     * @param in       Strömmen med CSV-data.
+     * @param format   Formatet på kontoutdraget.
+     * @param rules    Regler för att välja kategori per rad.
+     * @param listener Lyssnare för förlopp och resultat.
+     * @return En Task som kan avbryta importen.
+     */
+    public Task start(InputStream in, Format format, ImportRules rules, Listener listener) {
+        Task task = new Task();
+        executor.execute(() -> {
+            try (InputStream input = in) {
+                new Parser(format, rules, task, listener).run(input);
+            } catch (IOException | RuntimeException e) {
+                //Även oväntade fel måste nå lyssnaren, annars ser importen ut att pågå för alltid
+                listener.onError(e);
+            }
+        });
+        return task;
+    }
+
+    /**
+     * Parser håller tillståndet för en enskild import.
+     */
+    private static class Parser {
+        private final Format format;
+        private final ImportRules rules;
+        private final Task task;
+        private final Listener listener;
+
+        //Satsen som väntar på att läggas till i budgeten
+        private final int[] batchCategories = new int[BATCH_SIZE];
+        private final String[] batchNames = new String[BATCH_SIZE];
+        private final long[] batchAmounts = new long[BATCH_SIZE];
+        private final int[] batchDays = new int[BATCH_SIZE];
+        private int batchSize = 0;
+
+        //Cache av namn, nycklad på namnets byte
+        private final byte[][] cachedBytes = new byte[NAME_CACHE_SIZE][];
+        private final String[] cachedNames = new String[NAME_CACHE_SIZE];
+        private final int[] cachedCategories = new int[NAME_CACHE_SIZE];
+
+        //Tillstånd för aktuell rad
+        private final byte[] name = new byte[MAX_NAME_BYTES];
+        private int nameLength = 0;
+        private int field = 0;
+        private boolean inQuotes = false;
+        private boolean quotePending = false;
+        private boolean fieldStart = true;
+        private boolean skipRow;
+
+        //Tillstånd för aktuellt belopp
+        private long mantissa = 0;
+        private int scale = 0;
+        private boolean negative = false;
+        private boolean seenDigit = false;
+        private boolean seenSeparator = false;
+        private boolean overflow = false;
+
+        //Tillstånd för aktuellt datum: år, månad och dag samt antal siffror
+        private final int[] dateParts = new int[3];
+        private int datePart = 0;
+        private int dateDigits = 0;
+        private final int today = Dates.today();
+
+        private long rowsImported = 0;
+        private long rowsSkipped = 0;
+        private long bytesRead = 0;
+
+        Parser(Format format, ImportRules rules, Task task, Listener listener) {
+            this.format = format;
+            this.rules = rules;
+            this.task = task;
+            this.listener = listener;
+            this.skipRow = format.hasHeader;
+        }
+
+        void run(InputStream in) throws IOException {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while (!task.isCancelled() && (read = in.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    accept(buffer[i]);
+                }
+                bytesRead += read;
+            }
+            if (!task.isCancelled()) {
+                //Sista raden saknar ofta radbrytning
+                if (field > 0 || nameLength > 0 || seenDigit) {
+                    endRow();
+                }
+                commitBatch();
+            }
+            listener.onFinished(rowsImported, rowsSkipped, task.isCancelled());
+        }
+
+        private void accept(byte b) {
+            if (quotePending) {
+                quotePending = false;
+                if (b == '"') {
+                    //Dubbla citattecken inom citat är ett vanligt citattecken
+                    fieldByte(b);
+                    return;
+                }
+                inQuotes = false;
+            }
+            if (inQuotes) {
+                if (b == '"') {
+                    quotePending = true;
+                } else {
+                    fieldByte(b);
+                }
+                return;
+            }
+            if (b == '"' && fieldStart) {
+                inQuotes = true;
+                fieldStart = false;
+            } else if (b == format.delimiter) {
+                field++;
+                fieldStart = true;
+            } else if (b == '\n') {
+                endRow();
+            } else if (b != '\r') {
+                fieldStart = false;
+                fieldByte(b);
+            }
+        }
+
+        private void fieldByte(byte b) {
+            if (skipRow) {
+                return;
+            }
+            if (field == format.dateColumn) {
+                dateByte(b);
+            } else if (field == format.nameColumn) {
+                if (nameLength < MAX_NAME_BYTES) {
+                    name[nameLength++] = b;
+                }
+            } else if (field == format.amountColumn) {
+                amountByte(b);
+            }
+        }
+
+        /**
+         * Tolkar ett tecken i beloppsfältet. Både punkt och komma godtas som avgränsare, och
+         * {@link #toOre()} avgör vilka som är decimaltecken. Mellanslag, valutor och andra
+         * tecken ignoreras.
+         */
+        private void amountByte(byte b) {
+            if (b >= '0' && b <= '9') {
+                int digit = b - '0';
+                if (mantissa > (Long.MAX_VALUE - digit) / 10) {
+                    overflow = true;
+                } else {
+                    mantissa = mantissa * 10 + digit;
+                }
+                if (seenSeparator) {
+                    scale++;
+                }
+                seenDigit = true;
+            } else if (b == '-' && !seenDigit) {
+                negative = true;
+            } else if (b == ',' || b == '.') {
+                seenSeparator = true;
+                scale = 0;
+            }
+        }
+
+        /**
+         * Tolkar ett tecken i datumfältet. Bindestreck, snedstreck och punkt skiljer
+         * år, månad och dag åt, övriga tecken ignoreras.
+         */
+        private void dateByte(byte b) {
+            if (b >= '0' && b <= '9') {
+                if (datePart < 3 && dateDigits < 8) {
+                    dateParts[datePart] = dateParts[datePart] * 10 + (b - '0');
+                    dateDigits++;
+                }
+            } else if ((b == '-' || b == '/' || b == '.') && datePart < 2) {
+                datePart++;
+            }
+        }
+
+        /**
+         * Räknar om det tolkade datumet till en epokdag, eller dagens datum om det inte är giltigt.
+         */
+        private int toDay() {
+            int year = dateParts[0], month = dateParts[1], day = dateParts[2];
+            if (datePart == 0 && dateDigits == 8) {
+                //ÅÅÅÅMMDD utan avgränsare
+                day = year % 100;
+                month = year / 100 % 100;
+                year = year / 10_000;
+            }
+            if (year < 1900 || month < 1 || month > 12 || day < 1) {
+                return today;
+            }
+            int first = Dates.of(year, month, 1);
+            if (day > Dates.lastDayOf(Dates.monthOf(first)) - first + 1) {
+                return today;
+            }
+            return first + day - 1;
+        }
+
+        private void endRow() {
+            if (skipRow) {
+                skipRow = false;
+            } else if (!seenDigit || nameLength == 0) {
+                rowsSkipped++;
+            } else if (!negative) {
+                //Uttag är negativa i kontoutdrag, insättningar räknas inte som utgifter
+                rowsSkipped++;
+            } else {
+                long ore = toOre();
+                if (ore < 0) {
+                    rowsSkipped++;
+                } else {
+                    addRow(ore);
+                }
+            }
+            resetRow();
+        }
+
+        private void addRow(long ore) {
+            int slot = lookupName();
+            batchCategories[batchSize] = cachedCategories[slot];
+            batchNames[batchSize] = cachedNames[slot];
+            batchAmounts[batchSize] = ore;
+            batchDays[batchSize] = toDay();
+            batchSize++;
+            if (batchSize == BATCH_SIZE) {
+                commitBatch();
+            }
+        }
+
+        /**
+         * Räknar om det tolkade beloppet till öre. Som i {@link Money#parse(CharSequence)} är
+         * den sista avgränsaren ett decimaltecken om högst två siffror följer, annars är alla
+         * avgränsare tusentalsavgränsare, så "1.234" är 1 234 kr.
+         *
+         * @return Beloppet i öre, eller -1 om det inte ryms i en long.
+         */
+        private long toOre() {
+            if (overflow) {
+                return -1;
+            }
+            int decimals = seenSeparator && scale <= 2 ? scale : 0;
+            try {
+                return Math.multiplyExact(mantissa, decimals == 0 ? Money.ORE_PER_KRONA : decimals == 1 ? 10 : 1);
+            } catch (ArithmeticException e) {
+                return -1;
+            }
+        }
+
+        /**
+         * Hittar namnet i cachen eller lägger till det. En ny String och en ny
+         * klassificering skapas endast första gången ett namn ses.
+         */
+        private int lookupName() {
+            int start = 0, end = nameLength;
+            while (start < end && name[start] == ' ') {
+                start++;
+            }
+            while (end > start && name[end - 1] == ' ') {
+                end--;
+            }
+            int hash = 1;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + name[i];
+            }
+            int slot = (hash ^ (hash >>> 16)) & (NAME_CACHE_SIZE - 1);
+            byte[] cached = cachedBytes[slot];
+            if (cached == null || cached.length != end - start || !rangeEquals(cached, name, start)) {
+                byte[] key = Arrays.copyOfRange(name, start, end);
+                String text = new String(key, StandardCharsets.UTF_8);
+                cachedBytes[slot] = key;
+                cachedNames[slot] = text;
+                cachedCategories[slot] = rules.classify(text);
+            }
+            return slot;
+        }
+
+        private static boolean rangeEquals(byte[] cached, byte[] bytes, int offset) {
+            for (int i = 0; i < cached.length; i++) {
+                if (cached[i] != bytes[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void commitBatch() {
+            if (batchSize == 0) {
+                return;
+            }
+            Expense.addAll(batchCategories, batchNames, batchAmounts, batchDays, batchSize);
+            rowsImported += batchSize;
+            Arrays.fill(batchNames, 0, batchSize, null);
+            batchSize = 0;
+            listener.onProgress(bytesRead, rowsImported);
+        }
+
+        private void resetRow() {
+            nameLength = 0;
+            field = 0;
+            inQuotes = false;
+            quotePending = false;
+            fieldStart = true;
+            mantissa = 0;
+            scale = 0;
+            negative = false;
+            seenDigit = false;
+            seenSeparator = false;
+            overflow = false;
+            dateParts[0] = 0;
+            dateParts[1] = 0;
+            dateParts[2] = 0;
+            datePart = 0;
+            dateDigits = 0;
+        }
+    }
+}
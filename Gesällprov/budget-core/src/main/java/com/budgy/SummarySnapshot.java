@@ -0,0 +1,252 @@
+package com.budgy;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * SummarySnapshot är allt som sammanfattningen visar för en månad vid en viss
+ * version av budgeten: totaler, procentandelar, balans, balansen det senaste året,
+ * en prognos med och utan extra amortering och färdiga texter.
+ * <p>
+ * Sammanfattningen beräknas på en bakgrundstråd och sparas tills budgeten ändras,
+ * så att Summary kan visas direkt utan att räkna eller formatera något på
+ * huvudtråden. Skärmar som leder till Summary kan beräkna den i förväg med
+ * {@link #prefetch()}.
+ */
+public final class SummarySnapshot {
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "budgy-summary");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    //Senast beräknade sammanfattning, gäller så länge version och månad stämmer
+    private static volatile SummarySnapshot latest;
+
+    //Antal år som prognosen i sammanfattningen sträcker sig
+    private static final int FORECAST_YEARS = 10;
+    //Antal månader bakåt, inklusive den aktuella, som balansen för det senaste året gäller
+    private static final int HISTORY_MONTHS = 12;
+    //Extra amortering per månad som prognosen prövar när budgeten har lån
+    private static final long EXTRA_PAYMENT = Money.ofKronor(1_000);
+
+    private final long version;
+    private final int month;
+    private final BudgetShares shares;
+    private final String incomeLabel;
+    private final String[] categoryNames;
+    private final String[] categoryLabels;
+    private final String balanceLabel;
+    private final String historyLabel;
+    private final String forecastLabel;
+    private final String debtLabel;
+
+    /**
+     * OnReadyListener anropas när en sammanfattning finns tillgänglig.
+     */
+    public interface OnReadyListener {
+        /**
+         * Anropas på bakgrundstråden med sammanfattningen.
+         *
+         * @param snapshot Sammanfattningen.
+         */
+        void onReady(SummarySnapshot snapshot);
+    }
+
+    private SummarySnapshot(Ledger.State state, int month) {
+        this.version = state.getVersion();
+        this.month = month;
+        this.shares = BudgetShares.forMonth(state, month);
+        this.incomeLabel = "Income: " + String.format("%.1f", shares.getIncomePercent()) + "%";
+        this.categoryNames = new String[shares.getCategoryCount()];
+        this.categoryLabels = new String[categoryNames.length];
+        for (int c = 0; c < categoryLabels.length; c++) {
+            categoryNames[c] = state.categoryName(c);
+            categoryLabels[c] = categoryNames[c] + ": " + String.format("%.1f", shares.getPercent(c)) + "%";
+        }
+        long balance = shares.getBalance();
+        this.balanceLabel = (balance >= 0 ? "+" : "") + Money.toString(balance) + " KR";
+        //Balansen räknas bara från den första månaden med utgifter, inte för tiden innan budgeten fanns
+        MonthIndex months = state.months();
+        int historyFrom = months.isEmpty() ? month : Math.max(month - HISTORY_MONTHS + 1, months.getFirstMonth());
+        historyFrom = Math.min(historyFrom, month);
+        long history = state.balance(historyFrom, month);
+        this.historyLabel = "Last " + (month - historyFrom + 1) + " months: " + (history >= 0 ? "+" : "")
+                + Money.toString(history) + " KR";
+        Forecast.Result[] forecasts = Forecast.of(state, month + 1, FORECAST_YEARS)
+                .runAll(Forecast.Scenario.BASELINE, new Forecast.Scenario(EXTRA_PAYMENT, -1, 0));
+        long saved = forecasts[0].balance(forecasts[0].getMonthCount() - 1);
+        this.forecastLabel = "In " + FORECAST_YEARS + " years: " + (saved >= 0 ? "+" : "") + Money.toString(saved)
+                + " KR";
+        this.debtLabel = state.loans().size() == 0 ? null : debtLabel(forecasts[0], forecasts[1]);
+    }
+
+    /**
+     * Skriver när lånen är betalda enligt sina villkor och med extra amortering,
+     * till exempel "Debt-free: 2031-04, 2029-08 with +1 000 KR/month".
+     */
+    private static String debtLabel(Forecast.Result baseline, Forecast.Result extra) {
+        return "Debt-free: " + monthLabel(baseline.getDebtFreeMonth()) + ", " + monthLabel(extra.getDebtFreeMonth())
+                + " with +" + Money.toString(EXTRA_PAYMENT) + " KR/month";
+    }
+
+    private static String monthLabel(int month) {
+        if (month < 0) {
+            return "not within " + FORECAST_YEARS + " years";
+        }
+        return String.format(Locale.ROOT, "%d-%02d", Dates.yearOf(month), Dates.monthOfYear(month));
+    }
+
+    /**
+     * Hämtar den sparade sammanfattningen för innevarande månad om den fortfarande
+     * stämmer med budgeten. Beräknar ingenting och kan anropas från huvudtråden.
+     *
+     * @return Sammanfattningen, eller null om den behöver beräknas.
+     */
+    public static SummarySnapshot peek() {
+        SummarySnapshot snapshot = latest;
+        if (snapshot != null && snapshot.matches(Expense.getState(), Dates.currentMonth())) {
+            return snapshot;
+        }
+        return null;
+    }
+
+    /**
+     * Beräknar sammanfattningen för innevarande månad i förväg på bakgrundstråden,
+     * om den inte redan är beräknad för budgetens aktuella version.
+     */
+    public static void prefetch() {
+        executor.execute(() -> current(Expense.getState(), Dates.currentMonth()));
+    }
+
+    /**
+     * Hämtar sammanfattningen för innevarande månad. Lyssnaren anropas på
+     * bakgrundstråden, direkt med den sparade sammanfattningen om den stämmer.
+     *
+     * @param listener Lyssnare som får sammanfattningen.
+     */
+    public static void request(OnReadyListener listener) {
+        executor.execute(() -> listener.onReady(current(Expense.getState(), Dates.currentMonth())));
+    }
+
+    /**
+     * Returnerar den sparade sammanfattningen om den gäller, annars beräknas en ny.
+     * Körs endast på bakgrundstråden.
+     */
+    private static SummarySnapshot current(Ledger.State state, int month) {
+        SummarySnapshot snapshot = latest;
+        if (snapshot == null || !snapshot.matches(state, month)) {
+            snapshot = new SummarySnapshot(state, month);
+            latest = snapshot;
+        }
+        return snapshot;
+    }
+
+    private boolean matches(Ledger.State state, int month) {
+        return version == state.getVersion() && this.month == month;
+    }
+
+    /**
+     * Hämtar budgetens version som sammanfattningen beräknades från.
+     *
+     * @return Versionen.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Hämtar månaden som sammanfattningen gäller.
+     *
+     * @return Månaden, se {@link Dates}.
+     */
+    public int getMonth() {
+        return month;
+    }
+
+    /**
+     * Hämtar totaler, andelar och balans.
+     *
+     * @return Fördelningen av budgeten.
+     */
+    public BudgetShares getShares() {
+        return shares;
+    }
+
+    /**
+     * Hämtar texten med inkomstens andel, till exempel "Income: 52,3%".
+     *
+     * @return Texten.
+     */
+    public String getIncomeLabel() {
+        return incomeLabel;
+    }
+
+    /**
+     * Hämtar antalet kategorier i sammanfattningen.
+     *
+     * @return Antalet kategorier.
+     */
+    public int getCategoryCount() {
+        return categoryLabels.length;
+    }
+
+    /**
+     * Hämtar namnet på en kategori så som det var när sammanfattningen beräknades.
+     *
+     * @param category Kategorin.
+     * @return Kategorins namn.
+     */
+    public String getCategoryName(int category) {
+        return categoryNames[category];
+    }
+
+    /**
+     * Hämtar texten med en kategoris andel, till exempel "Fixed: 20,1%".
+     *
+     * @param category Kategorin.
+     * @return Texten.
+     */
+    public String getCategoryLabel(int category) {
+        return categoryLabels[category];
+    }
+
+    /**
+     * Hämtar texten med balansen, till exempel "+1 250 KR".
+     *
+     * @return Texten.
+     */
+    public String getBalanceLabel() {
+        return balanceLabel;
+    }
+
+    /**
+     * Hämtar texten med balansen för de senaste tolv månaderna, eller färre om
+     * budgeten är yngre, till exempel "Last 12 months: +18 000 KR".
+     *
+     * @return Texten.
+     */
+    public String getHistoryLabel() {
+        return historyLabel;
+    }
+
+    /**
+     * Hämtar texten med den samlade balansen om tio år enligt prognosen,
+     * till exempel "In 10 years: +150 000 KR".
+     *
+     * @return Texten.
+     */
+    public String getForecastLabel() {
+        return forecastLabel;
+    }
+
+    /**
+     * Hämtar texten med månaden då lånen är betalda, med och utan extra amortering.
+     *
+     * @return Texten, eller null om budgeten saknar lån.
+     */
+    public String getDebtLabel() {
+        return debtLabel;
+    }
+}
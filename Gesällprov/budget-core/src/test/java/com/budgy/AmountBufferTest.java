@@ -0,0 +1,99 @@
+package com.budgy;
+
+import org.junit.Test;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Kontrollerar att AmountBuffer formaterar och tolkar belopp som AmountInput visar dem,
+ * när användaren skriver ett tecken i taget och markören ska stå kvar efter det
+ * senast skrivna tecknet.
+ */
+public class AmountBufferTest {
+    private static final Locale SWEDISH = new Locale("sv", "SE");
+    private static final char GROUP = DecimalFormatSymbols.getInstance(SWEDISH).getGroupingSeparator();
+
+    @Test
+    public void typedAmountIsGroupedAndParsed() {
+        AmountBuffer buffer = new AmountBuffer(SWEDISH);
+        int cursor = type(buffer, "", 0, "12345,5");
+
+        assertEquals("12" + GROUP + "345,5", buffer.toString());
+        assertEquals(buffer.length(), cursor);
+        assertEquals(1_234_550, buffer.toAmount());
+    }
+
+    @Test
+    public void pointIsAcceptedAsDecimalSeparator() {
+        AmountBuffer buffer = new AmountBuffer(SWEDISH);
+        type(buffer, "", 0, "0.75");
+
+        assertEquals("0,75", buffer.toString());
+        assertEquals(75, buffer.toAmount());
+    }
+
+    @Test
+    public void cursorStaysAfterDigitTypedInTheMiddle() {
+        AmountBuffer buffer = new AmountBuffer(SWEDISH);
+        type(buffer, "", 0, "1245");
+        //Markören efter "12" i "1 245", där avgränsaren räknas som ett tecken
+        int cursor = type(buffer, buffer.toString(), 3, "3");
+
+        assertEquals("12" + GROUP + "345", buffer.toString());
+        assertEquals("12" + GROUP + "3", buffer.toString().substring(0, cursor));
+    }
+
+    @Test
+    public void otherCharactersAndExtraDigitsAreIgnored() {
+        AmountBuffer buffer = new AmountBuffer(SWEDISH);
+        read(buffer, "kr 007,505 abc");
+        assertEquals("7,50", buffer.toString());
+        assertEquals(750, buffer.toAmount());
+
+        read(buffer, "99999999999999999");
+        assertEquals(AmountBuffer.MAX_INTEGER_DIGITS, buffer.countSignificant(buffer, 0, buffer.length()));
+        assertEquals(9_999_999_999_999L * Money.ORE_PER_KRONA, buffer.toAmount());
+    }
+
+    @Test
+    public void setShowsOreOnlyWhenNeeded() {
+        AmountBuffer buffer = new AmountBuffer(SWEDISH);
+        buffer.set(1_234_550);
+        assertEquals("12" + GROUP + "345,50", buffer.toString());
+        buffer.set(100_000);
+        assertEquals("1" + GROUP + "000", buffer.toString());
+        buffer.set(5);
+        assertEquals("0,05", buffer.toString());
+        buffer.set(-100);
+        assertEquals("", buffer.toString());
+
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.toAmount());
+    }
+
+    /**
+     * Skriver tecknen ett i taget vid markören och formaterar om efter varje tecken,
+     * som AmountInput gör när fältet ändras.
+     *
+     * @return Markörens position efter det sista tecknet.
+     */
+    private static int type(AmountBuffer buffer, String text, int cursor, String keys) {
+        for (int i = 0; i < keys.length(); i++) {
+            String typed = text.substring(0, cursor) + keys.charAt(i) + text.substring(cursor);
+            int significant = buffer.countSignificant(typed, 0, cursor + 1);
+            buffer.read(typed, 0, typed.length());
+            text = buffer.toString();
+            cursor = buffer.positionAfter(significant);
+        }
+        return cursor;
+    }
+
+    private static void read(AmountBuffer buffer, String text) {
+        buffer.read(text, 0, text.length());
+    }
+}
@@ -0,0 +1,76 @@
+package com.budgy;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Kontrollerar att ändringar som görs innan den sparade budgeten är inläst följer med
+ * till den inlästa ledgern: egna kategorier kopplas på namn och återkommande rader
+ * och lån behåller sina regler.
+ */
+public class ExpenseAttachTest {
+
+    @After
+    public void tearDown() {
+        Expense.resetData();
+    }
+
+    @Test
+    public void interimCategoriesAreMatchedByName() {
+        //En tom ledger kopplas in först, så att kategorierna nedan skapas innan inläsningen är klar
+        Expense.resetData();
+        Expense.attach(new Ledger(), null);
+        int travel = Expense.addCategory("Resor");
+        int food = Expense.addCategory("Mat ute");
+        Expense.add(travel, "Tåg", 42_000);
+        Expense.add(food, "Lunch", 12_500);
+
+        //Den sparade budgeten har redan en egen kategori med samma id som "Resor"
+        Ledger restored = new Ledger();
+        restored.restoreCategory(Ledger.DEFAULT_CATEGORY_COUNT, "Mat ute");
+        restored.finishRestore();
+        Expense.attach(restored, null);
+
+        Ledger.State state = restored.state();
+        assertEquals(Ledger.DEFAULT_CATEGORY_COUNT + 2, state.categoryCount());
+        assertEquals("Mat ute", state.categoryName(Ledger.DEFAULT_CATEGORY_COUNT));
+        assertEquals(12_500, state.total(Ledger.DEFAULT_CATEGORY_COUNT));
+        assertEquals("Resor", state.categoryName(Ledger.DEFAULT_CATEGORY_COUNT + 1));
+        assertEquals(42_000, state.total(Ledger.DEFAULT_CATEGORY_COUNT + 1));
+    }
+
+    @Test
+    public void interimRecurrencesAndLoansKeepTheirTerms() {
+        int month = Dates.currentMonth();
+        Expense.resetData();
+        Expense.attach(new Ledger(), null);
+        Expense.addRecurring(Ledger.FIXED, "Gym", 29_900, 3, month + 12);
+        Expense.addLoan(Ledger.LOAN_CREDIT, "Bil", 12_000_000, 450, 60);
+        Expense.add(Ledger.VARIABLE, "Mat", 1_250);
+
+        Ledger restored = new Ledger();
+        restored.restore(7, Ledger.VARIABLE, "Kaffe", 3_900, Dates.today());
+        restored.finishRestore();
+        Expense.attach(restored, null);
+
+        Ledger.State state = restored.state();
+        Recurrences rules = state.recurrences();
+        Loans loans = state.loans();
+        assertEquals(2, rules.size());
+        assertEquals(1, loans.size());
+        int gym = rules.positionOf(state.snapshot(Ledger.FIXED).get(0).getId());
+        assertEquals(3, rules.periodAt(gym));
+        assertEquals(month + 12, rules.endMonthAt(gym));
+        int loan = loans.positionOf(state.snapshot(Ledger.LOAN_CREDIT).get(0).getId());
+        assertEquals(12_000_000, loans.principalAt(loan));
+        assertEquals(450, loans.rateAt(loan));
+        assertEquals(60, loans.termAt(loan));
+        //Gymmet återkommer var tredje månad och lånet varje månad
+        assertEquals(0, state.monthsTotal(Ledger.FIXED, month + 1, month + 2));
+        assertEquals(29_900, state.monthsTotal(Ledger.FIXED, month + 3, month + 3));
+        assertEquals(loans.paymentAt(loan), state.monthsTotal(Ledger.LOAN_CREDIT, month + 1, month + 1));
+        assertEquals(1_250 + 3_900, state.total(Ledger.VARIABLE));
+    }
+}
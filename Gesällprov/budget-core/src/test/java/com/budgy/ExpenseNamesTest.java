@@ -0,0 +1,76 @@
+package com.budgy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Kontrollerar att namnförslagen bygger på hela historiken och inte bara på de
+ * rader som är inlästa, och att de hålls uppdaterade när utgifter läggs till.
+ */
+public class ExpenseNamesTest {
+    private final String[] out = new String[NameIndex.MAX_SUGGESTIONS];
+
+    @Before
+    public void setUp() {
+        //En tom ledger kopplas in först, så att testets ledger inte får rader från andra tester
+        Expense.attach(new Ledger(), null);
+        Expense.resetData();
+    }
+
+    @After
+    public void tearDown() {
+        Expense.resetData();
+    }
+
+    @Test
+    public void suggestionsIncludeNamesFromMonthsThatAreNotLoaded() {
+        int today = Dates.today();
+        Ledger ledger = new Ledger();
+        ledger.restore(10, Ledger.VARIABLE, "Hemköp", 25_000, today);
+        ledger.finishRestore();
+        //Som ExpenseRepository: alla sparade namn, även de vars rader bara finns som summor
+        NameIndex names = new NameIndex(today);
+        names.record("Hemköp", today, 1);
+        names.record("Hyra", today - 40, 12);
+        names.record("Hygien", today - 200, 1);
+        ledger.setNameIndex(names);
+        Expense.attach(ledger, null);
+
+        assertEquals(2, Expense.suggestNames("hy", out));
+        assertEquals("Hyra", out[0]);
+        assertEquals("Hygien", out[1]);
+        assertEquals(1, Expense.suggestNames("hem", out));
+    }
+
+    @Test
+    public void namesAddedAfterAttachAreSuggested() {
+        Ledger ledger = new Ledger();
+        NameIndex names = new NameIndex(Dates.today());
+        names.record("Hyra", Dates.today() - 60, 2);
+        ledger.setNameIndex(names);
+        Expense.attach(ledger, null);
+
+        Expense.add(Ledger.VARIABLE, "Hygien", 4_900);
+        Expense.add(Ledger.VARIABLE, "Hygien", 3_900);
+        Expense.add(Ledger.VARIABLE, "Hygien", 2_900);
+
+        assertEquals(2, Expense.suggestNames("hy", out));
+        assertEquals("Hygien", out[0]);
+        assertEquals("Hyra", out[1]);
+    }
+
+    @Test
+    public void budgetWithoutHistoryBuildsSuggestionsFromRows() {
+        Ledger ledger = new Ledger();
+        ledger.add(Ledger.FIXED, "Hyra", 850_000, Dates.today());
+        Expense.attach(ledger, null);
+
+        assertEquals(1, Expense.suggestNames("h", out));
+        assertEquals("Hyra", out[0]);
+        //Förslagen sparas med budgeten så att de inte behöver byggas igen
+        assertEquals(1, ledger.getNameIndex().size());
+    }
+}
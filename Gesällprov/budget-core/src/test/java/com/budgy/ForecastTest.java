@@ -0,0 +1,57 @@
+package com.budgy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Räknar igenom en liten budget med ett räntefritt lån för hand och jämför med Forecast,
+ * med och utan extra amortering.
+ */
+public class ForecastTest {
+
+    @Test
+    public void debtFreeMonthAndBalanceForSmallBudget() {
+        int today = Dates.today();
+        int month = Dates.monthOf(today);
+        Ledger ledger = new Ledger();
+        ledger.setIncome(2_000_000);
+        //12 000 kr utan ränta på ett år, där den första betalningen görs i innevarande månad
+        ledger.addLoan(Ledger.LOAN_CREDIT, "Soffa", 1_200_000, 0, 12, today);
+        ledger.add(Ledger.VARIABLE, "Mat", 50_000, today);
+
+        Forecast forecast = Forecast.of(ledger.state(), month + 1, 1);
+        Forecast.Result[] results = forecast.runAll(Forecast.Scenario.BASELINE,
+                new Forecast.Scenario(100_000, -1, 0));
+        Forecast.Result baseline = results[0];
+        Forecast.Result extra = results[1];
+
+        //Elva betalningar återstår vid prognosens start, och matkostnaden är snittet av historiken
+        assertEquals(1_000_000, baseline.debt(0));
+        assertEquals(2_000_000 - 50_000 - 100_000, baseline.net(0));
+        assertEquals(100_000, baseline.debt(9));
+        assertEquals(0, baseline.debt(10));
+        assertEquals(month + 11, baseline.getDebtFreeMonth());
+        assertEquals(2_000_000 - 50_000, baseline.net(11));
+        assertEquals(11 * 1_850_000 + 1_950_000, baseline.balance(11));
+        assertEquals(0, baseline.getTotalInterest());
+
+        //Med 1 000 kr extra i månaden är lånet betalt efter sex månader, och utan ränta blir slutet lika
+        assertEquals(1_100_000 - 200_000, extra.debt(0));
+        assertEquals(0, extra.debt(5));
+        assertEquals(month + 6, extra.getDebtFreeMonth());
+        assertEquals(baseline.balance(11), extra.balance(11));
+    }
+
+    @Test
+    public void budgetWithoutLoansIsDebtFreeFromStart() {
+        int month = Dates.currentMonth();
+        Ledger ledger = new Ledger();
+        ledger.setIncome(1_000_000);
+        Forecast.Result result = Forecast.of(ledger.state(), month + 1, 2).run(Forecast.Scenario.BASELINE);
+
+        assertEquals(24, result.getMonthCount());
+        assertEquals(month + 1, result.getDebtFreeMonth());
+        assertEquals(24 * 1_000_000L, result.balance(23));
+    }
+}
@@ -0,0 +1,136 @@
+package com.budgy;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Låter flera trådar skriva till samma ledger medan andra trådar läser dess tillstånd.
+ * Varje tillstånd som en läsare ser ska vara en hel version, där totalerna är lika
+ * med summan av raderna, och när skrivarna är klara ska totalerna stämma med alla
+ * rader som lagts till och inte tagits bort.
+ */
+public class LedgerConcurrencyTest {
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int OPERATIONS = 2_000;
+
+    @Test
+    public void readersSeeConsistentStatesWhileWritersChangeLedger() throws InterruptedException {
+        Ledger ledger = new Ledger();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicLong expected = new AtomicLong();
+        AtomicLong statesChecked = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch writersDone = new CountDownLatch(WRITERS);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int w = 0; w < WRITERS; w++) {
+            int seed = w;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    start.await();
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        int category = random.nextInt(Ledger.DEFAULT_CATEGORY_COUNT);
+                        if (random.nextInt(10) < 6) {
+                            long amount = 1 + random.nextInt(1_000);
+                            ledger.add(category, "Rad " + seed + "-" + i, amount);
+                            expected.addAndGet(amount);
+                        } else {
+                            removeFirst(ledger, category, expected);
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    writersDone.countDown();
+                }
+            }, "writer-" + w));
+        }
+        for (int r = 0; r < READERS; r++) {
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    long previousVersion = -1;
+                    while (writing.get() && failure.get() == null) {
+                        Ledger.State state = ledger.state();
+                        assertConsistent(state);
+                        //Ett senare tillstånd får aldrig ha en äldre version
+                        assertTrue(state.getVersion() >= previousVersion);
+                        previousVersion = state.getVersion();
+                        statesChecked.incrementAndGet();
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }, "reader-" + r));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        writersDone.await();
+        writing.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError("En tråd misslyckades", failure.get());
+        }
+        assertTrue(statesChecked.get() > 0);
+        Ledger.State state = ledger.state();
+        assertConsistent(state);
+        ledger.verifyTotals();
+        assertEquals(expected.get(), state.totalExpenses());
+    }
+
+    /**
+     * Tar bort den första raden i en kategori. Raden kan hinna tas bort av en annan
+     * skrivare, och då räknas den inte bort två gånger.
+     */
+    private static void removeFirst(Ledger ledger, int category, AtomicLong expected) {
+        Ledger.State state = ledger.state();
+        if (state.size(category) == 0) {
+            return;
+        }
+        long amount = state.snapshot(category).get(0).getAmount();
+        if (ledger.removeById(category, state.idAt(category, 0))) {
+            expected.addAndGet(-amount);
+        }
+    }
+
+    /**
+     * Kontrollerar att varje kategoris total i tillståndet är summan av dess rader,
+     * och att id:n är stigande inom kategorin.
+     */
+    private static void assertConsistent(Ledger.State state) {
+        long all = 0;
+        for (int category = 0; category < Ledger.DEFAULT_CATEGORY_COUNT; category++) {
+            Ledger.Snapshot rows = state.snapshot(category);
+            assertEquals(state.size(category), rows.size());
+            long sum = 0;
+            long previousId = -1;
+            for (int position = 0; position < rows.size(); position++) {
+                sum += rows.get(position).getAmount();
+                assertTrue(state.idAt(category, position) > previousId);
+                previousId = state.idAt(category, position);
+            }
+            assertEquals("Kategori " + category, sum, state.total(category));
+            all += sum;
+        }
+        assertEquals(all, state.totalExpenses());
+    }
+}
@@ -0,0 +1,309 @@
+package com.budgy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Kontrollerar att kategorins lista och total stämmer med Summary efter en omstart
+ * och efter ett månadsskifte, när bara en månads rader läses in och övriga månader
+ * finns som summor per dag i månadsindexet, på samma sätt som i ExpenseRepository.
+ * Återkommande rader från tidigare månader ska synas i listan och kunna avslutas där.
+ */
+public class LedgerRestartTest {
+    private int month;
+    //Sparade rader som {id, kategori, belopp, dag, period, slutmånad}, period 0 för vanliga rader
+    private final List<long[]> stored = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        //En första tom ledger kopplas in så att ändringar från andra tester inte läggs ovanpå
+        Expense.resetData();
+        Expense.attach(new Ledger(), null);
+        month = Dates.currentMonth();
+        stored.clear();
+        //Rader från tidigare månader, till exempel importerade kontoutdrag
+        store(1, Ledger.VARIABLE, 12_000, Dates.firstDayOf(month - 2) + 3);
+        store(2, Ledger.FIXED, 850_000, Dates.firstDayOf(month - 1));
+        store(3, Ledger.VARIABLE, 4_500, Dates.lastDayOf(month - 1));
+        //Rader i innevarande månad
+        store(4, Ledger.VARIABLE, 3_900, Dates.firstDayOf(month));
+        store(5, Ledger.FIXED, 850_000, Dates.firstDayOf(month));
+        store(6, Ledger.LOAN_CREDIT, 150_000, Dates.firstDayOf(month) + 1);
+        store(7, Ledger.VARIABLE, 1_250, Dates.lastDayOf(month));
+        //Rader i nästa månad, som syns först efter månadsskiftet
+        store(8, Ledger.VARIABLE, 6_000, Dates.firstDayOf(month + 1));
+        store(9, Ledger.FIXED, 850_000, Dates.firstDayOf(month + 1) + 4);
+    }
+
+    @After
+    public void tearDown() {
+        Expense.resetData();
+    }
+
+    @Test
+    public void ruleFromEarlierMonthIsListedAndCounted() {
+        storeRule(10, Ledger.FIXED, 29_900, Dates.firstDayOf(month - 2) + 9, 1, Recurrences.NO_END);
+        Ledger ledger = restart(month);
+        Expense.attach(ledger, null);
+
+        assertMonth(ledger.state(), month);
+        assertArrayEquals(new long[]{5, 10}, ids(Expense.getExpenses(Ledger.FIXED)));
+        assertEquals(850_000 + 29_900, Expense.getTotal(Ledger.FIXED));
+        assertEquals(BudgetShares.forMonth(ledger.state(), month).getTotal(Ledger.FIXED),
+                Expense.getTotal(Ledger.FIXED));
+    }
+
+    @Test
+    public void removingRuleFromEarlierMonthEndsItAndKeepsHistory() {
+        storeRule(10, Ledger.FIXED, 29_900, Dates.firstDayOf(month - 2) + 9, 1, Recurrences.NO_END);
+        Ledger ledger = restart(month);
+        Expense.attach(ledger, null);
+        Ledger.Snapshot fixed = Expense.getExpenses(Ledger.FIXED);
+
+        Expense.remove(Ledger.FIXED, fixed.get(1));
+
+        Ledger.State state = ledger.state();
+        assertArrayEquals(new long[]{5}, ids(Expense.getExpenses(Ledger.FIXED)));
+        assertEquals(850_000, Expense.getTotal(Ledger.FIXED));
+        //Raden och förekomsten förra månaden finns kvar i historiken
+        assertEquals(29_900, state.monthsTotal(Ledger.FIXED, month - 2, month - 2));
+        assertEquals(850_000 + 29_900, state.monthsTotal(Ledger.FIXED, month - 1, month - 1));
+        assertEquals(850_000, state.monthsTotal(Ledger.FIXED, month + 1, month + 1));
+        assertEquals(month - 1, state.recurrences().endMonthAt(state.recurrences().positionOf(10)));
+        ledger.verifyTotals();
+    }
+
+    @Test
+    public void removingRuleStartedThisMonthRemovesIt() {
+        Ledger ledger = restart(month);
+        Expense.attach(ledger, null);
+        long id = ledger.addRecurring(Ledger.FIXED, "Gym", 29_900, Dates.firstDayOf(month), 1,
+                Recurrences.NO_END);
+        Expense.remove(Ledger.FIXED, Expense.getExpenses(Ledger.FIXED).get(1));
+
+        Ledger.State state = ledger.state();
+        assertArrayEquals(new long[]{5}, ids(Expense.getExpenses(Ledger.FIXED)));
+        assertEquals(-1, state.recurrences().positionOf(id));
+        assertEquals(850_000, state.monthsTotal(Ledger.FIXED, month + 1, month + 1));
+    }
+
+    @Test
+    public void restartShowsSameRowsAndTotalsAsSummary() {
+        Ledger ledger = restart(month);
+        Expense.attach(ledger, null);
+
+        assertMonth(ledger.state(), month);
+        for (int category = 0; category < Ledger.DEFAULT_CATEGORY_COUNT; category++) {
+            assertArrayEquals(idsIn(category, month), ids(Expense.getExpenses(category)));
+            assertEquals(totalIn(category, month), Expense.getTotal(category));
+        }
+        assertEquals(3_900 + 1_250, Expense.getTotal(Ledger.VARIABLE));
+        assertEquals(850_000, Expense.getTotal(Ledger.FIXED));
+        assertEquals(150_000, Expense.getTotal(Ledger.LOAN_CREDIT));
+    }
+
+    @Test
+    public void rolloverKeepsEarlierMonthsInSummary() {
+        Ledger ledger = restart(month + 1);
+        Ledger.State state = ledger.state();
+
+        assertMonth(state, month + 1);
+        assertEquals(6_000, state.months().monthTotal(Ledger.VARIABLE, month + 1));
+        //Månaden som nu är historik finns kvar som summor, och raderna har inte lästs in
+        assertMonth(state, month);
+        assertEquals(0, state.snapshot(Ledger.VARIABLE, month).size());
+        assertEquals(3_900 + 1_250, BudgetShares.forMonth(state, month).getTotal(Ledger.VARIABLE));
+        assertEquals(12_000 + 4_500 + 3_900 + 1_250 + 6_000,
+                state.months().monthsTotal(Ledger.VARIABLE, month - 2, month + 1));
+    }
+
+    @Test
+    public void balanceOverMonthsMatchesStoredRows() {
+        Ledger ledger = restart(month);
+        ledger.setIncome(2_000_000);
+        Ledger.State state = ledger.state();
+
+        //Intervall som börjar före den första raden, delar av historiken och en enda månad
+        for (int from = month - 4; from <= month + 1; from++) {
+            for (int to = from; to <= month + 1; to++) {
+                long expected = 2_000_000L * (to - from + 1);
+                for (int m = from; m <= to; m++) {
+                    for (int category = 0; category < Ledger.DEFAULT_CATEGORY_COUNT; category++) {
+                        expected -= totalIn(category, m);
+                    }
+                }
+                assertEquals(from + ".." + to, expected, state.balance(from, to));
+            }
+        }
+        //Ett tomt intervall har ingen inkomst och inga utgifter
+        assertEquals(0, state.balance(month, month - 1));
+    }
+
+    @Test
+    public void rowsAddedAfterRestartAreCountedOnce() {
+        Ledger ledger = restart(month);
+        Expense.attach(ledger, null);
+        Expense.add(Ledger.VARIABLE, "Kaffe", 3_500);
+        store(ledger.getNextId() - 1, Ledger.VARIABLE, 3_500, Dates.today());
+
+        assertArrayEquals(idsIn(Ledger.VARIABLE, month), ids(Expense.getExpenses(Ledger.VARIABLE)));
+        assertEquals(totalIn(Ledger.VARIABLE, month), Expense.getTotal(Ledger.VARIABLE));
+        assertEquals(BudgetShares.forMonth(ledger.state(), month).getTotal(Ledger.VARIABLE),
+                Expense.getTotal(Ledger.VARIABLE));
+    }
+
+    @Test
+    public void rowsFromOtherMonthsStayOutOfListWithoutRestart() {
+        //Appen har varit igång sedan förra månaden, så dess rader finns fortfarande inlästa
+        Ledger ledger = new Ledger();
+        Expense.attach(ledger, null);
+        for (long[] row : stored) {
+            ledger.add((int) row[1], "Rad " + row[0], row[2], (int) row[3]);
+        }
+
+        assertMonth(ledger.state(), month);
+        for (int category = 0; category < Ledger.DEFAULT_CATEGORY_COUNT; category++) {
+            assertEquals(idsIn(category, month).length, Expense.getExpenses(category).size());
+            assertEquals(BudgetShares.forMonth(ledger.state(), month).getTotal(category), Expense.getTotal(category));
+        }
+    }
+
+    @Test
+    public void removingByPositionCountsRowsInTheMonth() {
+        Ledger ledger = new Ledger();
+        Expense.attach(ledger, null);
+        for (long[] row : stored) {
+            ledger.add((int) row[1], "Rad " + row[0], row[2], (int) row[3]);
+        }
+        long kept = Expense.getExpenses(Ledger.VARIABLE).get(1).getId();
+
+        //Första raden i månadens lista, inte den första inlästa raden som hör till en tidigare månad
+        Expense.remove(Ledger.VARIABLE, 0);
+
+        assertArrayEquals(new long[]{kept}, ids(Expense.getExpenses(Ledger.VARIABLE)));
+        assertEquals(1_250, Expense.getTotal(Ledger.VARIABLE));
+        assertEquals(12_000 + 4_500, ledger.state().months().monthsTotal(Ledger.VARIABLE, month - 2, month - 1));
+    }
+
+    /**
+     * Kontrollerar att en månads rader och total i tillståndet stämmer med de sparade raderna
+     * och med fördelningen i Summary.
+     */
+    private void assertMonth(Ledger.State state, int shown) {
+        BudgetShares shares = BudgetShares.forMonth(state, shown);
+        for (int category = 0; category < Ledger.DEFAULT_CATEGORY_COUNT; category++) {
+            long expected = totalIn(category, shown);
+            assertEquals("Kategori " + category, expected, state.monthsTotal(category, shown, shown));
+            assertEquals("Kategori " + category, expected, shares.getTotal(category));
+        }
+    }
+
+    /**
+     * Läser in de sparade raderna som ExpenseRepository gör för en månad: månadens rader
+     * och återkommande rader som gäller månaden eller senare som rader, övriga som summor
+     * per dag och kategori.
+     */
+    private Ledger restart(int shown) {
+        Ledger ledger = new Ledger();
+        Map<Long, long[]> dayTotals = new TreeMap<>();
+        for (long[] row : stored) {
+            if (!loaded(row, shown)) {
+                int day = (int) row[3];
+                long key = (long) day * Ledger.DEFAULT_CATEGORY_COUNT + row[1];
+                long[] sum = dayTotals.computeIfAbsent(key, k -> new long[2]);
+                sum[0] += row[2];
+                sum[1]++;
+            }
+        }
+        for (Map.Entry<Long, long[]> entry : dayTotals.entrySet()) {
+            long key = entry.getKey();
+            ledger.restoreDayTotal((int) (key / Ledger.DEFAULT_CATEGORY_COUNT), (int) (key % Ledger.DEFAULT_CATEGORY_COUNT),
+                    entry.getValue()[0], (int) entry.getValue()[1]);
+        }
+        //Sorterade på kategori och id, som frågan i ExpenseRepository
+        for (int category = 0; category < Ledger.DEFAULT_CATEGORY_COUNT; category++) {
+            for (long[] row : stored) {
+                if (row[1] == category && loaded(row, shown)) {
+                    ledger.restore(row[0], category, "Rad " + row[0], row[2], (int) row[3]);
+                }
+            }
+        }
+        for (long[] row : stored) {
+            if (row[4] > 0) {
+                ledger.restoreRecurrence(row[0], (int) row[1], row[2], (int) row[3], (int) row[4], (int) row[5]);
+            }
+        }
+        long maxId = 0;
+        for (long[] row : stored) {
+            maxId = Math.max(maxId, row[0]);
+        }
+        ledger.setNextId(maxId + 1);
+        ledger.finishRestore();
+        return ledger;
+    }
+
+    private void store(long id, int category, long amount, int day) {
+        stored.add(new long[]{id, category, amount, day, 0, 0});
+    }
+
+    private void storeRule(long id, int category, long amount, int day, int period, int endMonth) {
+        stored.add(new long[]{id, category, amount, day, period, endMonth});
+    }
+
+    private static boolean loaded(long[] row, int shown) {
+        return Dates.monthOf((int) row[3]) == shown || row[4] > 0 && row[5] >= shown;
+    }
+
+    /**
+     * Returnerar om en sparad rad förekommer i en månad, som rad eller som förekomst av sin regel.
+     */
+    private static boolean occursIn(long[] row, int shown) {
+        int start = Dates.monthOf((int) row[3]);
+        if (start == shown) {
+            return true;
+        }
+        return row[4] > 0 && shown > start && shown <= row[5] && (shown - start) % row[4] == 0;
+    }
+
+    private long[] idsIn(int category, int shown) {
+        List<Long> ids = new ArrayList<>();
+        for (long[] row : stored) {
+            boolean active = row[4] > 0 && Dates.monthOf((int) row[3]) <= shown && shown <= row[5];
+            if (row[1] == category && (Dates.monthOf((int) row[3]) == shown || active)) {
+                ids.add(row[0]);
+            }
+        }
+        long[] result = new long[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
+    private long totalIn(int category, int shown) {
+        long sum = 0;
+        for (long[] row : stored) {
+            if (row[1] == category && occursIn(row, shown)) {
+                sum += row[2];
+            }
+        }
+        return sum;
+    }
+
+    private static long[] ids(List<Expense> expenses) {
+        long[] ids = new long[expenses.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = expenses.get(i).getId();
+        }
+        return ids;
+    }
+}
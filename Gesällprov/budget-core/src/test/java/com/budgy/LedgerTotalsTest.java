@@ -0,0 +1,118 @@
+package com.budgy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Kontrollerar att de löpande totalerna per kategori alltid är lika med summan av
+ * kategoriens rader, efter att rader lagts till och tagits bort. Kontrolläget är på,
+ * så varje ändring jämförs också med en full omräkning.
+ */
+public class LedgerTotalsTest {
+    @Before
+    public void setUp() {
+        Expense.resetData();
+        Expense.setConsistencyChecks(true);
+    }
+
+    @After
+    public void tearDown() {
+        Expense.setConsistencyChecks(false);
+        Expense.resetData();
+    }
+
+    @Test
+    public void totalsFollowAddedRows() {
+        Expense.add(Ledger.FIXED, "Hyra", 850_000);
+        Expense.add(Ledger.VARIABLE, "Mat", 1_250);
+        Expense.add(Ledger.VARIABLE, "Kaffe", 3_999);
+        Expense.add(Ledger.LOAN_CREDIT, "CSN", 150_000);
+
+        assertTotals();
+        assertEquals(5_249, Expense.getTotal(Ledger.VARIABLE));
+    }
+
+    @Test
+    public void totalsFollowRemovedRows() {
+        Expense.add(Ledger.VARIABLE, "Mat", 1_250);
+        Expense.add(Ledger.VARIABLE, "Kaffe", 3_999);
+        Expense.add(Ledger.VARIABLE, "Buss", 3_900);
+        Expense.add(Ledger.FIXED, "Hyra", 850_000);
+
+        Expense.remove(Ledger.VARIABLE, 0);
+        assertTotals();
+        Expense.remove(Ledger.FIXED, 0);
+        assertTotals();
+        Expense.remove(Ledger.VARIABLE, 1);
+        assertTotals();
+        assertEquals(3_999, Expense.getTotal(Ledger.VARIABLE));
+    }
+
+    @Test
+    public void longSequencesDoNotDrift() {
+        for (int i = 0; i < 10_000; i++) {
+            Expense.add(Ledger.VARIABLE, "Rad " + i, 10);
+        }
+        for (int i = 0; i < 9_999; i++) {
+            Expense.remove(Ledger.VARIABLE, 0);
+        }
+        assertEquals(10, Expense.getTotal(Ledger.VARIABLE));
+
+        Expense.remove(Ledger.VARIABLE, 0);
+        assertEquals(0, Expense.getTotal(Ledger.VARIABLE));
+    }
+
+    @Test
+    public void rejectedBatchLeavesNoRows() {
+        Expense.add(Ledger.VARIABLE, "Mat", Long.MAX_VALUE - 1_000);
+        Ledger.State before = Expense.getState();
+        try {
+            //Första raden är giltig, men den andra får rörliga utgifters total att slå runt
+            int today = Dates.today();
+            Expense.addAll(new int[]{Ledger.FIXED, Ledger.VARIABLE}, new String[]{"Hyra", "Kaffe"},
+                    new long[]{850_000, 3_999}, new int[]{today, today}, 2);
+            fail("Satsen borde ha avvisats");
+        } catch (ArithmeticException expected) {
+            //Förväntat
+        }
+
+        assertSame(before, Expense.getState());
+        assertEquals(0, Expense.getExpenses(Ledger.FIXED).size());
+        assertTotals();
+    }
+
+    @Test
+    public void totalsAreZeroAfterReset() {
+        Expense.add(Ledger.VARIABLE, "Mat", 1_250);
+        Expense.add(Ledger.FIXED, "Hyra", 850_000);
+        Expense.resetData();
+
+        assertTotals();
+        assertEquals(0, Expense.getTotal(Ledger.FIXED));
+        assertEquals(0, Expense.getTotal(Ledger.VARIABLE));
+    }
+
+    /**
+     * Räknar om totalerna från listorna och jämför dem med Expense-klassens totaler.
+     */
+    private static void assertTotals() {
+        assertEquals(sum(Expense.getExpenses(Ledger.FIXED)), Expense.getTotal(Ledger.FIXED));
+        assertEquals(sum(Expense.getExpenses(Ledger.LOAN_CREDIT)), Expense.getTotal(Ledger.LOAN_CREDIT));
+        assertEquals(sum(Expense.getExpenses(Ledger.VARIABLE)), Expense.getTotal(Ledger.VARIABLE));
+    }
+
+    private static long sum(List<Expense> expenses) {
+        long sum = 0;
+        for (Expense expense : expenses) {
+            sum += expense.getAmount();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,69 @@
+package com.budgy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Kontrollerar annuitetsberäkningen i Loans mot kända värden, med och utan ränta.
+ */
+public class LoansTest {
+
+    @Test
+    public void paymentMatchesKnownAnnuity() {
+        //100 000 kr på 30 år till 5 % ger 536,82 kr i månaden, avrundat uppåt till helt öre
+        assertEquals(53_683, Loans.payment(10_000_000, 500, 360));
+        //120 000 kr på 5 år till 4,5 % ger 2 237,16 kr i månaden, avrundat uppåt
+        assertEquals(223_717, Loans.payment(12_000_000, 450, 60));
+    }
+
+    @Test
+    public void balanceAfterMatchesKnownSchedule() {
+        long payment = Loans.payment(10_000_000, 500, 360);
+        assertEquals(10_000_000, Loans.balanceAfter(10_000_000, 500, payment, 0));
+        //Efter ett år återstår 98 524,53 kr
+        assertEquals(9_852_453, Loans.balanceAfter(10_000_000, 500, payment, 12));
+        //Avrundningen uppåt gör att lånet är betalt efter löptiden, aldrig negativt
+        assertEquals(0, Loans.balanceAfter(10_000_000, 500, payment, 360));
+    }
+
+    @Test
+    public void balanceAfterMatchesMonthByMonth() {
+        long payment = Loans.payment(12_000_000, 450, 60);
+        double balance = 12_000_000;
+        for (int made = 1; made < 60; made++) {
+            balance = balance * (1 + Loans.monthlyRate(450)) - payment;
+            long expected = Math.round(balance);
+            long actual = Loans.balanceAfter(12_000_000, 450, payment, made);
+            //Formeln och genomgången avrundar olika, men inte mer än ett öre
+            if (Math.abs(expected - actual) > 1) {
+                fail("Efter " + made + " betalningar: " + actual + ", väntade " + expected);
+            }
+        }
+    }
+
+    @Test
+    public void loanWithoutInterestIsSplitEvenly() {
+        assertEquals(333_334, Loans.payment(1_000_000, 0, 3));
+        assertEquals(666_666, Loans.balanceAfter(1_000_000, 0, 333_334, 1));
+        assertEquals(333_332, Loans.balanceAfter(1_000_000, 0, 333_334, 2));
+        assertEquals(0, Loans.balanceAfter(1_000_000, 0, 333_334, 3));
+    }
+
+    @Test
+    public void invalidTermsAreRejected() {
+        try {
+            Loans.payment(1_000_000, 0, 0);
+            fail("Löptiden 0 godtogs");
+        } catch (IllegalArgumentException expected) {
+            //Väntat
+        }
+        try {
+            Loans.payment(1_000_000, -1, 12);
+            fail("En negativ ränta godtogs");
+        } catch (IllegalArgumentException expected) {
+            //Väntat
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.budgy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Jämför antalet förekomster som Recurrences räknar fram i konstant tid med en
+ * genomgång av förekomsterna en i taget.
+ */
+public class RecurrencesTest {
+    private static final int START = 600;
+
+    @Test
+    public void occurrencesMatchCountingOneByOne() {
+        int[] periods = {Recurrences.MONTHLY, 2, Recurrences.QUARTERLY, 5, Recurrences.YEARLY};
+        int[] ends = {START, START + 1, START + 7, START + 24, START + 37, Recurrences.NO_END};
+        for (int period : periods) {
+            for (int end : ends) {
+                //Intervall före den första förekomsten, runt starten och långt efter slutet
+                for (int from = START - 14; from <= START + 50; from++) {
+                    for (int to = from - 1; to <= START + 50; to++) {
+                        assertEquals("period " + period + ", slut " + end + ", " + from + ".." + to,
+                                count(START, period, end, from, to),
+                                Recurrences.occurrences(START, period, end, from, to));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void occurrencesWithoutEndDoNotOverflow() {
+        assertEquals((Integer.MAX_VALUE - 1L - START) / Recurrences.YEARLY,
+                Recurrences.occurrences(START, Recurrences.YEARLY, Recurrences.NO_END, START, Integer.MAX_VALUE - 1));
+        assertEquals(0, Recurrences.occurrences(START, Recurrences.MONTHLY, Recurrences.NO_END,
+                Integer.MIN_VALUE, START));
+    }
+
+    /**
+     * Räknar förekomsterna efter den första genom att gå igenom dem en i taget.
+     */
+    private static long count(int start, int period, int end, int from, int to) {
+        long count = 0;
+        for (long month = (long) start + period; month <= to && month <= end; month += period) {
+            if (month >= from) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,283 @@
+package com.budgy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testar tolkningen av kontoutdrag i StatementImporter: citerade fält, belopp med
+ * olika avgränsare, belopp som inte ryms, datumformat, sista raden, avbrott, fel
+ * och cachen av namn.
+ */
+public class StatementImporterTest {
+    private static final String HEADER = "Datum;Text;Belopp\n";
+
+    @Before
+    public void setUp() {
+        Expense.resetData();
+    }
+
+    @After
+    public void tearDown() {
+        Expense.resetData();
+    }
+
+    @Test
+    public void quotedFieldsKeepDelimitersAndDoubledQuotes() throws Exception {
+        Result result = importText(HEADER + "2024-03-05;\"Café \"\"Lilla\"\"; hörnan\";-45,00\n");
+
+        assertEquals(1, result.imported);
+        Expense expense = Expense.getState().snapshot(Ledger.VARIABLE).get(0);
+        assertEquals("Café \"Lilla\"; hörnan", expense.getName());
+        assertEquals(4_500, expense.getAmount());
+    }
+
+    @Test
+    public void amountsAcceptSpaceAndPointAsGroupingSeparator() throws Exception {
+        Result result = importText(HEADER
+                + "2024-03-05;Mat;-1 234,56\n"
+                + "2024-03-05;Buss;-1.234,56\n"
+                + "2024-03-05;Lön;1.234,56\n"
+                + "2024-03-05;Kaffe;-39\n"
+                + "2024-03-05;Bok;-12.5\n");
+
+        //Insättningen räknas inte som en utgift
+        assertEquals(4, result.imported);
+        assertEquals(1, result.skipped);
+        Ledger.Snapshot rows = Expense.getState().snapshot(Ledger.VARIABLE);
+        assertEquals(123_456, rows.get(0).getAmount());
+        assertEquals(123_456, rows.get(1).getAmount());
+        assertEquals(3_900, rows.get(2).getAmount());
+        assertEquals(1_250, rows.get(3).getAmount());
+    }
+
+    @Test
+    public void threeDigitsAfterLastSeparatorAreThousands() throws Exception {
+        importText(HEADER
+                + "2024-03-05;Mat;-1.234\n"
+                + "2024-03-05;Buss;-1,234\n"
+                + "2024-03-05;Bok;-1.234.567\n");
+
+        //Samma belopp som Money.parse ger för texten
+        Ledger.Snapshot rows = Expense.getState().snapshot(Ledger.VARIABLE);
+        assertEquals(Money.parse("1.234"), rows.get(0).getAmount());
+        assertEquals(123_400, rows.get(0).getAmount());
+        assertEquals(123_400, rows.get(1).getAmount());
+        assertEquals(123_456_700, rows.get(2).getAmount());
+    }
+
+    @Test
+    public void amountsThatDoNotFitAreSkipped() throws Exception {
+        Result result = importText(HEADER
+                + "2024-03-05;Stor;-922337203685477581\n"
+                + "2024-03-05;Lång;-123456789012345678901234,50\n"
+                + "2024-03-05;Mat;-10,00\n");
+
+        //Kronorna ryms i en long men inte i öre, och det andra beloppet ryms inte alls
+        assertEquals(1, result.imported);
+        assertEquals(2, result.skipped);
+        assertEquals(1_000, Expense.getState().snapshot(Ledger.VARIABLE).get(0).getAmount());
+    }
+
+    @Test
+    public void unexpectedFailureIsReported() throws Exception {
+        Recorder recorder = new Recorder();
+        new StatementImporter().start(new ByteArrayInputStream((HEADER + "2024-03-05;Mat;-10,00\n")
+                .getBytes(StandardCharsets.UTF_8)), StatementImporter.Format.defaults(), new ImportRules(99), recorder);
+
+        //Kategorin finns inte, så satsen avvisas av ledgern och importen rapporteras som misslyckad
+        assertTrue(recorder.awaitError() instanceof IllegalArgumentException);
+        assertEquals(0, Expense.getState().snapshot(Ledger.VARIABLE).size());
+    }
+
+    @Test
+    public void datesAcceptCompactFormatAndFallBackToToday() throws Exception {
+        importText(HEADER
+                + "20240305;Mat;-10,00\n"
+                + "2024/03/06;Mat;-10,00\n"
+                + "2024-02-30;Mat;-10,00\n"
+                + "20241301;Mat;-10,00\n"
+                + ";Mat;-10,00\n");
+
+        Ledger.Snapshot rows = Expense.getState().snapshot(Ledger.VARIABLE);
+        assertEquals(Dates.of(2024, 3, 5), rows.get(0).getDay());
+        assertEquals(Dates.of(2024, 3, 6), rows.get(1).getDay());
+        assertEquals(Dates.today(), rows.get(2).getDay());
+        assertEquals(Dates.today(), rows.get(3).getDay());
+        assertEquals(Dates.today(), rows.get(4).getDay());
+    }
+
+    @Test
+    public void lastRowWithoutNewlineIsImported() throws Exception {
+        Result result = importText(HEADER + "2024-03-05;Mat;-10,00\r\n2024-03-06;Hyra;-8500");
+
+        assertEquals(2, result.imported);
+        assertEquals(2, Expense.getState().snapshot(Ledger.VARIABLE).size() + Expense.getState().snapshot(Ledger.FIXED).size());
+        assertEquals(850_000, Expense.getState().snapshot(Ledger.FIXED).get(0).getAmount());
+    }
+
+    @Test
+    public void cancelBetweenBuffersKeepsCommittedBatches() throws Exception {
+        //Första bufferten rymmer en hel sats och lite till, den andra läses aldrig in
+        StringBuilder first = new StringBuilder(HEADER);
+        for (int i = 0; i < 1_500; i++) {
+            first.append("2024-03-05;Mat;-1,00\n");
+        }
+        byte[] firstChunk = first.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] secondChunk = "2024-03-05;Mat;-1,00\n".getBytes(StandardCharsets.UTF_8);
+        AtomicReference<StatementImporter.Task> task = new AtomicReference<>();
+        CountDownLatch started = new CountDownLatch(1);
+        InputStream in = new InputStream() {
+            private int reads = 0;
+
+            @Override
+            public int read() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                reads++;
+                if (reads == 1) {
+                    System.arraycopy(firstChunk, 0, buffer, offset, firstChunk.length);
+                    return firstChunk.length;
+                }
+                awaitQuietly(started);
+                task.get().cancel();
+                if (reads == 2) {
+                    System.arraycopy(secondChunk, 0, buffer, offset, secondChunk.length);
+                    return secondChunk.length;
+                }
+                return -1;
+            }
+        };
+
+        Recorder recorder = new Recorder();
+        task.set(new StatementImporter().start(in, StatementImporter.Format.defaults(), ImportRules.defaults(),
+                recorder));
+        started.countDown();
+        Result result = recorder.await();
+
+        assertTrue(result.cancelled);
+        assertEquals(1_024, result.imported);
+        assertEquals(1_024, Expense.getState().snapshot(Ledger.VARIABLE).size());
+    }
+
+    @Test
+    public void namesInSameCacheSlotAreKeptApart() throws Exception {
+        //"Aa" och "BB" har samma hash och därmed samma plats i cachen
+        ImportRules rules = new ImportRules(Ledger.VARIABLE).add("aa", Ledger.FIXED);
+        Result result = importText(HEADER
+                + "2024-03-05;Aa;-1,00\n"
+                + "2024-03-05;BB;-2,00\n"
+                + "2024-03-05;Aa;-3,00\n", rules);
+
+        assertEquals(3, result.imported);
+        Ledger.Snapshot fixed = Expense.getState().snapshot(Ledger.FIXED);
+        Ledger.Snapshot variable = Expense.getState().snapshot(Ledger.VARIABLE);
+        assertEquals(2, fixed.size());
+        assertEquals("Aa", fixed.get(0).getName());
+        assertEquals("Aa", fixed.get(1).getName());
+        assertEquals(1, variable.size());
+        assertEquals("BB", variable.get(0).getName());
+        assertEquals(200, variable.get(0).getAmount());
+    }
+
+    @Test
+    public void otherFormatsUseTheirOwnColumns() throws Exception {
+        StatementImporter.Format format = new StatementImporter.Format(',', 2, 0, 1, false);
+        Result result = importText("\"Hyra, mars\",\"-8 500,00\",2024-03-01\n", format, ImportRules.defaults());
+
+        assertEquals(1, result.imported);
+        Expense expense = Expense.getState().snapshot(Ledger.FIXED).get(0);
+        assertEquals("Hyra, mars", expense.getName());
+        assertEquals(850_000, expense.getAmount());
+        assertEquals(Dates.of(2024, 3, 1), expense.getDay());
+        assertFalse(result.cancelled);
+    }
+
+    private static Result importText(String text) throws InterruptedException {
+        return importText(text, ImportRules.defaults());
+    }
+
+    private static Result importText(String text, ImportRules rules) throws InterruptedException {
+        return importText(text, StatementImporter.Format.defaults(), rules);
+    }
+
+    private static Result importText(String text, StatementImporter.Format format, ImportRules rules)
+            throws InterruptedException {
+        Recorder recorder = new Recorder();
+        new StatementImporter().start(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), format,
+                rules, recorder);
+        return recorder.await();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) throws IOException {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Resultatet av en import.
+     */
+    private static class Result {
+        long imported;
+        long skipped;
+        boolean cancelled;
+    }
+
+    /**
+     * Tar emot resultatet på importtråden och lämnar det till testet.
+     */
+    private static class Recorder implements StatementImporter.Listener {
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private final Result result = new Result();
+        private volatile Exception error;
+
+        @Override
+        public void onProgress(long bytesRead, long rowsImported) {}
+
+        @Override
+        public void onFinished(long rowsImported, long rowsSkipped, boolean cancelled) {
+            result.imported = rowsImported;
+            result.skipped = rowsSkipped;
+            result.cancelled = cancelled;
+            finished.countDown();
+        }
+
+        @Override
+        public void onError(Exception e) {
+            error = e;
+            finished.countDown();
+        }
+
+        Result await() throws InterruptedException {
+            assertTrue("Importen blev inte klar", finished.await(10, TimeUnit.SECONDS));
+            if (error != null) {
+                throw new AssertionError("Importen misslyckades", error);
+            }
+            return result;
+        }
+
+        Exception awaitError() throws InterruptedException {
+            assertTrue("Importen blev inte klar", finished.await(10, TimeUnit.SECONDS));
+            assertTrue("Importen misslyckades inte", error != null);
+            return error;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 /**
  * Module :app
- * Denna är inkluderad då jag använder eazegraph
  */
 
 plugins {
@@ -38,11 +37,14 @@ android {
 
 dependencies {
 
+    implementation(project(":budget-core"))
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation("androidx.cardview:cardview:1.0.0")
-    implementation("com.github.blackfizz:eazegraph:1.2.2@aar")
-    implementation("com.nineoldandroids:library:2.4.0")
+    implementation("androidx.fragment:fragment:1.6.2")
+    implementation("androidx.lifecycle:lifecycle-viewmodel:2.6.2")
+    implementation("androidx.lifecycle:lifecycle-livedata:2.6.2")
+    implementation("androidx.asynclayoutinflater:asynclayoutinflater:1.0.0")
     testImplementation(libs.junit)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
@@ -0,0 +1,211 @@
+package com.budgy;
+
+import android.text.Editable;
+import android.text.InputFilter;
+import android.text.Selection;
+import android.text.SpanWatcher;
+import android.text.Spannable;
+import android.text.Spanned;
+import android.text.TextWatcher;
+import android.widget.EditText;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * AmountInput gör ett EditText till ett fält för belopp i kronor.
+ * <p>
+ * Vid varje ändring läses siffrorna in i en {@link AmountBuffer} och bara den del av
+ * texten som skiljer sig från det formaterade beloppet skrivs om, direkt i fältets
+ * Editable. Texten byts aldrig ut med setText. Valutan " KR" läggs till en gång och
+ * markeras med ett span. Ändringar i valutan avvisas och markören hålls framför den.
+ * Fältets egna filter, till exempel från android:digits, gäller bara det användaren
+ * skriver och inte formateringen, som annars skulle tappa avgränsare och valuta.
+ * Beloppet hämtas med {@link #getAmount()}, som aldrig kastar undantag.
+ */
+public class AmountInput implements TextWatcher, InputFilter, SpanWatcher {
+    private static final String CURRENCY = " KR";
+    private static final InputFilter[] NO_FILTERS = new InputFilter[0];
+
+    private final EditText field;
+    private final AmountBuffer buffer;
+    //Markerar valutan i texten, span-objektet flyttas med texten av Editable
+    private final Object currency = new Object();
+    private boolean isEditing = false;
+
+    private AmountInput(EditText field) {
+        this.field = field;
+        this.buffer = new AmountBuffer(Locale.getDefault());
+    }
+
+    /**
+     * Kopplar en AmountInput till ett fält.
+     *
+     * @param field Fältet där beloppet skrivs in.
+     * @return AmountInput för fältet.
+     */
+    public static AmountInput attach(EditText field) {
+        AmountInput input = new AmountInput(field);
+        InputFilter[] filters = field.getFilters();
+        InputFilter[] withInput = Arrays.copyOf(filters, filters.length + 1);
+        withInput[filters.length] = input;
+        field.setFilters(withInput);
+        field.addTextChangedListener(input);
+        return input;
+    }
+
+    /**
+     * Hämtar beloppet i fältet.
+     *
+     * @return Beloppet i öre, eller 0 om fältet är tomt.
+     */
+    public long getAmount() {
+        return buffer.toAmount();
+    }
+
+    /**
+     * Kontrollerar om fältet saknar belopp.
+     *
+     * @return true om inga siffror har skrivits in.
+     */
+    public boolean isEmpty() {
+        return buffer.isEmpty();
+    }
+
+    /**
+     * Visar ett belopp i fältet.
+     *
+     * @param amount Beloppet i öre.
+     */
+    public void setAmount(long amount) {
+        buffer.set(amount);
+        Editable text = field.getText();
+        show(text, numberEnd(text));
+        Selection.setSelection(text, buffer.length());
+    }
+
+    /**
+     * Tömmer fältet.
+     */
+    public void clear() {
+        buffer.clear();
+        Editable text = field.getText();
+        show(text, numberEnd(text));
+    }
+
+    /**
+     * Avvisar ändringar som rör valutan genom att behålla den befintliga texten.
+     */
+    @Override
+    public CharSequence filter(CharSequence source, int start, int end, Spanned dest, int dstart, int dend) {
+        int suffix = dest.getSpanStart(currency);
+        if (isEditing || suffix < 0 || dend <= suffix) {
+            return null;
+        }
+        return dest.subSequence(dstart, dend);
+    }
+
+    @Override
+    public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+    @Override
+    public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+    /**
+     * Läser in siffrorna efter en ändring och formaterar om beloppet på plats.
+     * Markören hamnar efter samma siffra som före formateringen.
+     */
+    @Override
+    public void afterTextChanged(Editable editable) {
+        if (isEditing) return; //Undviker rekursiv ändring av text
+        int end = numberEnd(editable);
+        int cursor = Math.min(Selection.getSelectionEnd(editable), end);
+        int significant = cursor < 0 ? -1 : buffer.countSignificant(editable, 0, cursor);
+
+        buffer.read(editable, 0, end);
+        show(editable, end);
+        if (significant >= 0) {
+            Selection.setSelection(editable, buffer.positionAfter(significant));
+        }
+    }
+
+    @Override
+    public void onSpanAdded(Spannable text, Object what, int start, int end) {}
+
+    @Override
+    public void onSpanRemoved(Spannable text, Object what, int start, int end) {}
+
+    /**
+     * Flyttar markören framför valutan om den hamnar i eller efter den.
+     */
+    @Override
+    public void onSpanChanged(Spannable text, Object what, int ostart, int oend, int nstart, int nend) {
+        if (what != Selection.SELECTION_START && what != Selection.SELECTION_END) {
+            return;
+        }
+        int suffix = text.getSpanStart(currency);
+        if (!isEditing && suffix >= 0 && nstart > suffix) {
+            if (what == Selection.SELECTION_END) {
+                Selection.setSelection(text, Math.min(Selection.getSelectionStart(text), suffix), suffix);
+            } else {
+                Selection.setSelection(text, suffix, Math.max(Selection.getSelectionEnd(text), suffix));
+            }
+        }
+    }
+
+    /**
+     * Skriver det formaterade beloppet till texten. Bara tecknen som skiljer sig byts ut,
+     * och valutan läggs till eller tas bort när fältet slutar eller börjar vara tomt.
+     * Textens filter stängs av under tiden, eftersom en DigitsKeyListener annars tar
+     * bort tusentalsavgränsaren och valutan.
+     */
+    private void show(Editable text, int end) {
+        isEditing = true;
+        InputFilter[] filters = text.getFilters();
+        text.setFilters(NO_FILTERS);
+        try {
+            format(text, end);
+        } finally {
+            text.setFilters(filters);
+            isEditing = false;
+        }
+    }
+
+    private void format(Editable text, int end) {
+        if (buffer.isEmpty()) {
+            if (text.length() > 0) {
+                text.clear();
+            }
+            text.removeSpan(currency);
+        } else {
+            //Hoppa över lika tecken i början och slutet och byt bara ut mitten
+            int length = buffer.length();
+            int prefix = 0;
+            while (prefix < end && prefix < length && text.charAt(prefix) == buffer.charAt(prefix)) {
+                prefix++;
+            }
+            int suffix = 0;
+            while (suffix < end - prefix && suffix < length - prefix
+                    && text.charAt(end - 1 - suffix) == buffer.charAt(length - 1 - suffix)) {
+                suffix++;
+            }
+            if (prefix < end - suffix || prefix < length - suffix) {
+                text.replace(prefix, end - suffix, buffer, prefix, length - suffix);
+            }
+            if (text.getSpanStart(currency) < 0) {
+                int start = text.length();
+                text.append(CURRENCY);
+                text.setSpan(currency, start, text.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                text.setSpan(this, 0, text.length(), Spanned.SPAN_INCLUSIVE_INCLUSIVE);
+            }
+        }
+    }
+
+    /**
+     * Hämtar positionen där beloppet slutar, alltså där valutan börjar om den finns.
+     */
+    private int numberEnd(Editable text) {
+        int suffix = text.getSpanStart(currency);
+        return suffix >= 0 ? suffix : text.length();
+    }
+}
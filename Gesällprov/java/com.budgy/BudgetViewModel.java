@@ -0,0 +1,203 @@
+package com.budgy;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.ViewModel;
+
+import java.io.InputStream;
+
+/**
+ * BudgetViewModel är den gemensamma modellen för alla skärmar i {@link MainActivity}.
+ * <p>
+ * Den prenumererar en gång på ändringar i budgeten och lämnar dem vidare som LiveData,
+ * så att en skärm bara tar emot ändringar medan dess vyer finns och aldrig behöver
+ * avsluta någon prenumeration själv. Den senaste sammanfattningen hålls också här och
+ * beräknas om när budgeten ändras medan någon visar den, så att Summary visas direkt
+ * när användaren kommer tillbaka, tillsammans med den senast ritade bilden av
+ * diagrammet. Modellen lever lika länge som aktiviteten, även när skärmen roteras.
+ * <p>
+ * En import av ett kontoutdrag körs också härifrån, så att den fortsätter och kan
+ * avbrytas även om skärmen som startade den skapas om.
+ */
+public class BudgetViewModel extends ViewModel {
+    private final MutableLiveData<LedgerChange> changes = new MutableLiveData<>();
+    private final MutableLiveData<SummarySnapshot> summary = new MutableLiveData<>();
+    private final ChartCache chartCache = new ChartCache();
+    private final ChangeNotifier.Subscription subscription;
+    private final StatementImporter importer = new StatementImporter();
+    private final MutableLiveData<ImportStatus> importStatus = new MutableLiveData<>();
+    private StatementImporter.Task importTask;
+    //Ökar för varje import, så att en avbruten import inte skriver över nästa imports status
+    private volatile int importGeneration;
+
+    /**
+     * ImportStatus beskriver hur långt en import av ett kontoutdrag har kommit.
+     */
+    public static final class ImportStatus {
+        public static final int RUNNING = 0;
+        public static final int FINISHED = 1;
+        public static final int CANCELLED = 2;
+        public static final int FAILED = 3;
+
+        private final int state;
+        private final long rowsImported;
+        private final long rowsSkipped;
+
+        ImportStatus(int state, long rowsImported, long rowsSkipped) {
+            this.state = state;
+            this.rowsImported = rowsImported;
+            this.rowsSkipped = rowsSkipped;
+        }
+
+        /**
+         * Hämtar importens läge.
+         *
+         * @return {@link #RUNNING}, {@link #FINISHED}, {@link #CANCELLED} eller {@link #FAILED}.
+         */
+        public int getState() {
+            return state;
+        }
+
+        /**
+         * Hämtar antalet rader som har lagts till i budgeten hittills.
+         *
+         * @return Antalet importerade rader.
+         */
+        public long getRowsImported() {
+            return rowsImported;
+        }
+
+        /**
+         * Hämtar antalet rader som hoppades över, till exempel insättningar.
+         *
+         * @return Antalet överhoppade rader, 0 tills importen är klar.
+         */
+        public long getRowsSkipped() {
+            return rowsSkipped;
+        }
+    }
+
+    /**
+     * Konstruktor för BudgetViewModel. Skapas av ViewModelProvider.
+     */
+    public BudgetViewModel() {
+        //Utskicken sker på huvudtråden en gång per bildruta, se LedgerEvents
+        subscription = Expense.subscribe(change -> {
+            changes.setValue(change);
+            if (summary.hasActiveObservers()) {
+                refreshSummary();
+            }
+        });
+    }
+
+    /**
+     * Hämtar ändringarna i budgeten. Värdet är den senaste sammanslagna ändringen.
+     *
+     * @return Ändringarna som LiveData.
+     */
+    public LiveData<LedgerChange> getChanges() {
+        return changes;
+    }
+
+    /**
+     * Hämtar sammanfattningen för innevarande månad. Värdet är null medan en ny
+     * sammanfattning beräknas.
+     *
+     * @return Sammanfattningen som LiveData.
+     */
+    public LiveData<SummarySnapshot> getSummary() {
+        return summary;
+    }
+
+    /**
+     * Hämtar bilden av sammanfattningens diagram.
+     *
+     * @return Cachen för diagrammet.
+     */
+    public ChartCache getChartCache() {
+        return chartCache;
+    }
+
+    /**
+     * Hämtar läget för den senaste importen av ett kontoutdrag.
+     *
+     * @return Importens läge som LiveData, null om ingen import har startats.
+     */
+    public LiveData<ImportStatus> getImportStatus() {
+        return importStatus;
+    }
+
+    /**
+     * Startar en import av ett kontoutdrag i standardformatet. Raderna läggs till i
+     * budgeten i satser och sammanfattningen räknas om medan importen pågår.
+     * En import som redan pågår avbryts först. Strömmen stängs när importen är klar.
+     *
+     * @param in Strömmen med kontoutdraget, till exempel från ContentResolver.
+     */
+    public void startImport(InputStream in) {
+        cancelImport();
+        int generation = ++importGeneration;
+        importStatus.setValue(new ImportStatus(ImportStatus.RUNNING, 0, 0));
+        importTask = importer.start(in, StatementImporter.Format.defaults(), ImportRules.defaults(),
+                new StatementImporter.Listener() {
+                    @Override
+                    public void onProgress(long bytesRead, long rowsImported) {
+                        post(generation, ImportStatus.RUNNING, rowsImported, 0);
+                    }
+
+                    @Override
+                    public void onFinished(long rowsImported, long rowsSkipped, boolean cancelled) {
+                        post(generation, cancelled ? ImportStatus.CANCELLED : ImportStatus.FINISHED, rowsImported,
+                                rowsSkipped);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        post(generation, ImportStatus.FAILED, 0, 0);
+                    }
+                });
+    }
+
+    /**
+     * Avbryter en pågående import. Satser som redan har lagts till i budgeten behålls.
+     */
+    public void cancelImport() {
+        if (importTask != null) {
+            importTask.cancel();
+            importTask = null;
+        }
+    }
+
+    /**
+     * Ser till att sammanfattningen stämmer med budgeten. En sparad sammanfattning som
+     * gäller visas direkt, annars beräknas en ny på bakgrundstråden.
+     */
+    public void refreshSummary() {
+        SummarySnapshot ready = SummarySnapshot.peek();
+        if (ready != null) {
+            if (ready != summary.getValue()) {
+                summary.setValue(ready);
+            }
+            return;
+        }
+        summary.setValue(null); //En gammal sammanfattning ska inte visas medan den nya beräknas
+        SummarySnapshot.request(summary::postValue);
+    }
+
+    /**
+     * Lämnar importens läge till huvudtråden, om importen fortfarande är den senaste.
+     * Anropas på importtråden.
+     */
+    private void post(int generation, int state, long rowsImported, long rowsSkipped) {
+        if (generation == importGeneration) {
+            importStatus.postValue(new ImportStatus(state, rowsImported, rowsSkipped));
+        }
+    }
+
+    @Override
+    protected void onCleared() {
+        cancelImport();
+        subscription.cancel();
+        chartCache.clear();
+    }
+}
@@ -0,0 +1,24 @@
+package com.budgy;
+
+import android.app.Application;
+
+/**
+ * BudgyApp är applikationsklassen för Budgy.
+ * Den startar inläsningen av den sparade budgeten från databasen när processen skapas,
+ * så att budgeten finns kvar även efter att Android har avslutat appen.
+ * Det är den senast valda budgetprofilen som läses in, se {@link Profiles}.
+ */
+public class BudgyApp extends Application {
+
+    /**
+     * Körs när processen startar. Läser in den aktiva profilens budget från databasen
+     * på en bakgrundstråd och kopplar sedan in den i Expense-klassen på huvudtråden,
+     * vilket meddelas till alla skärmar som prenumererar på ändringar.
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        LedgerEvents.installFrameScheduler(); //Ändringsmeddelanden skickas högst en gång per bildruta
+        Profiles.init(this);
+    }
+}
@@ -0,0 +1,37 @@
+package com.budgy;
+
+import android.graphics.Color;
+
+/**
+ * CategoryColors ger varje kategori en färg i diagrammet.
+ * Standardkategorierna har appens egna färger. Egna kategorier får en färg vars
+ * nyans flyttas med det gyllene snittet för varje id, så att även många kategorier
+ * går att skilja åt utan att någon färg behöver sparas.
+ */
+public final class CategoryColors {
+    public static final int INCOME = Color.parseColor("#B8E1FF");
+
+    private static final int[] DEFAULT_COLORS = {
+            Color.parseColor("#087E8B"), //Fixed
+            Color.parseColor("#FFF275"), //Loan/Credit
+            Color.parseColor("#C492B1") //Variable
+    };
+    private static final float GOLDEN_ANGLE = 137.508f;
+
+    private CategoryColors() {
+    }
+
+    /**
+     * Hämtar färgen för en kategori.
+     *
+     * @param category Kategorins id.
+     * @return Färgen som ARGB.
+     */
+    public static int of(int category) {
+        if (category < DEFAULT_COLORS.length) {
+            return DEFAULT_COLORS[category];
+        }
+        float hue = (category * GOLDEN_ANGLE) % 360f;
+        return Color.HSVToColor(new float[]{hue, 0.45f, 0.85f});
+    }
+}
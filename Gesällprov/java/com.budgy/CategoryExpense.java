@@ -0,0 +1,257 @@
+package com.budgy;
+
+import android.os.Bundle;
+import android.view.View;
+import android.widget.AutoCompleteTextView;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Locale;
+
+/**
+ * CategoryExpense hanterar användarens inmatning av utgifter i en kategori.
+ * Samma skärm används för alla kategorier, både standardkategorierna och de som
+ * användaren lägger till själv. Kategorin anges med sitt id i argumenten, och
+ * "Next"-knappen går vidare till nästa kategori eller till sammanfattningen.
+ * Skärmen visas i {@link MainActivity}.
+ */
+public class CategoryExpense extends Fragment implements ExpenseList.OnExpenseDeleteListener {
+    public static final String ARG_CATEGORY = "category";
+
+    //Rubrik och förklaring för standardkategorierna, indexerade med kategorins id
+    private static final int[] DEFAULT_TITLES = {R.string.fixed_expense, R.string.loan_credit, R.string.variable_expense};
+    private static final int[] DEFAULT_INFOS = {R.string.fixed_info, R.string.loanncred_info, R.string.variable_info};
+    //Valen för hur ofta en utgift återkommer, i den ordning som knappen stegar igenom dem
+    private static final int[] REPEAT_PERIODS = {Recurrences.NONE, Recurrences.MONTHLY, Recurrences.QUARTERLY,
+            Recurrences.YEARLY};
+    private static final int[] REPEAT_TEXTS = {R.string.repeat_none, R.string.repeat_monthly,
+            R.string.repeat_quarterly, R.string.repeat_yearly};
+
+    AutoCompleteTextView expenseName;
+    EditText expenseAmount, loanRate, loanTerm, categoryName;
+    Button title, repeat, addExpense, addCategory, nextButton;
+    RecyclerView expenseList;
+    TextView totalExpense, info;
+    ExpenseList adapter;
+    AmountInput amountInput;
+    //Läser räntan i procent med två decimaler, vilket är samma sak som baspunkter
+    AmountBuffer rateBuffer = new AmountBuffer(Locale.getDefault());
+    int category;
+    int repeatChoice;
+
+    /**
+     * Konstruktor för CategoryExpense. Layouten skapas av Fragment.
+     */
+    public CategoryExpense() {
+        super(R.layout.category);
+    }
+
+    /**
+     * Skapar skärmen för en kategori.
+     *
+     * @param category Kategorins id.
+     * @return Skärmen.
+     */
+    public static CategoryExpense newInstance(int category) {
+        CategoryExpense fragment = new CategoryExpense();
+        Bundle args = new Bundle();
+        args.putInt(ARG_CATEGORY, category);
+        fragment.setArguments(args);
+        return fragment;
+    }
+
+    /**
+     * Körs när skärmens vyer har skapats. Initierar komponenterna
+     * samt sätter upp RecyclerView för att visa kategorins utgifter.
+     * Hanterar knapptryckningar för att lägga till utgifter och kategorier och för att navigera vidare.
+     *
+     * @param view               Skärmens rotvy.
+     * @param savedInstanceState Sparad instansdata vid återställning av skärmen.
+     */
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        category = requireArguments().getInt(ARG_CATEGORY, Ledger.FIXED);
+        if (category < 0 || category >= Expense.getCategoryCount()) {
+            category = Ledger.FIXED;
+        }
+        MainActivity host = (MainActivity) requireActivity();
+
+        title = view.findViewById(R.id.topPanel);
+        info = view.findViewById(R.id.info);
+        expenseName = view.findViewById(R.id.expense_name);
+        expenseAmount = view.findViewById(R.id.expense_amount);
+        loanRate = view.findViewById(R.id.loan_rate);
+        loanTerm = view.findViewById(R.id.loan_term);
+        repeat = view.findViewById(R.id.repeat_button);
+        addExpense = view.findViewById(R.id.add_expense_button);
+        categoryName = view.findViewById(R.id.category_name);
+        addCategory = view.findViewById(R.id.add_category_button);
+        nextButton = view.findViewById(R.id.next_button);
+        expenseList = view.findViewById(R.id.expense_list);
+        totalExpense = view.findViewById(R.id.total_expense);
+
+        //Standardkategorierna har egna texter, egna kategorier visar sitt namn
+        if (category < DEFAULT_TITLES.length) {
+            title.setText(DEFAULT_TITLES[category]);
+            info.setText(DEFAULT_INFOS[category]);
+        } else {
+            title.setText(getString(R.string.category_expense, Expense.getCategoryName(category).toUpperCase()));
+            info.setText(R.string.category_info);
+        }
+        updateNextButton();
+
+        amountInput = AmountInput.attach(expenseAmount);
+
+        //Lån kan anges med ränta och löptid, då räknas månadsbeloppet fram ur lånebeloppet
+        if (category == Ledger.LOAN_CREDIT) {
+            loanRate.setVisibility(View.VISIBLE);
+            loanTerm.setVisibility(View.VISIBLE);
+        }
+
+        //Fasta utgifter återkommer normalt varje månad, övriga läggs till en gång
+        setRepeatChoice(category == Ledger.FIXED ? 1 : 0);
+        repeat.setOnClickListener(v -> setRepeatChoice((repeatChoice + 1) % REPEAT_PERIODS.length));
+
+        //Föreslår namn som användaren har skrivit tidigare, vanligast och senast använda först
+        expenseName.setAdapter(new NameSuggestions(requireContext()));
+
+        //Hämta befintliga (om de finns) och koppla till RecyclerView-adaptern, med rader från den delade poolen
+        ExpenseRows rows = host.getExpenseRows();
+        adapter = new ExpenseList(this, rows);
+        adapter.submit(Expense.getExpenses(category));
+        rows.attach(expenseList);
+        expenseList.setAdapter(adapter);
+        updateTotalExpense(); //Uppdaterar den totala summan av kategorins utgifter
+
+        //Listan och totalsumman uppdateras när budgeten ändras, högst en gång per bildruta
+        BudgetViewModel model = new ViewModelProvider(host).get(BudgetViewModel.class);
+        model.getChanges().observe(getViewLifecycleOwner(), change -> {
+            if (change.has(LedgerChange.RESET)) {
+                adapter.replace(Expense.getExpenses(category)); //En ny budget har egna id:n
+                updateTotalExpense();
+            } else if (change.affects(category)) {
+                adapter.submit(Expense.getExpenses(category));
+                updateTotalExpense();
+            }
+            if (change.has(LedgerChange.CATEGORY_ADDED)) {
+                updateNextButton();
+            }
+        });
+
+        /**
+         * Hanterar klick på "Add"-knappen.
+         * Om både namn och belopp är angivna, läggs utgiften till i kategorin,
+         * som återkommande om ett intervall är valt. Med ränta och löptid läggs
+         * beloppet till som ett lån i stället.
+         */
+        addExpense.setOnClickListener(v -> {
+            String name = expenseName.getText().toString().trim();
+
+            if (!name.isEmpty() && !amountInput.isEmpty()) {
+                int period = REPEAT_PERIODS[repeatChoice];
+                int term = loanTermMonths();
+                if (term > 0) {
+                    rateBuffer.read(loanRate.getText(), 0, loanRate.getText().length());
+                    int rate = (int) Math.min(rateBuffer.toAmount(), Loans.BASIS_POINTS);
+                    Expense.addLoan(category, name, amountInput.getAmount(), rate, term);
+                } else if (period == Recurrences.NONE) {
+                    Expense.add(category, name, amountInput.getAmount());
+                } else {
+                    Expense.addRecurring(category, name, amountInput.getAmount(), period, Recurrences.NO_END);
+                }
+
+                //Listan och totalsumman uppdateras när ändringen meddelas, här rensas bara inputfälten
+                expenseName.setText("");
+                amountInput.clear();
+                loanRate.setText("");
+                loanTerm.setText("");
+            }
+        });
+
+        /**
+         * Hanterar klick på "Add category"-knappen.
+         * Skapar en ny kategori med det angivna namnet och öppnar den direkt.
+         */
+        addCategory.setOnClickListener(v -> {
+            String name = categoryName.getText().toString().trim();
+            if (!name.isEmpty()) {
+                int created = Expense.addCategory(name);
+                categoryName.setText("");
+                host.showCategory(created);
+            }
+        });
+
+        /**
+         * Navigerar till nästa kategori, eller till sammanfattningen från den sista kategorin.
+         * Rensar den aktuella listan i RecyclerView innan övergången sker.
+         */
+        nextButton.setOnClickListener(v -> {
+            adapter.replace(null); //Rensar RecyclerView-listan
+            if (isLastCategory()) {
+                //Sammanfattningen beräknas medan den skapas
+                SummarySnapshot.prefetch();
+                host.showSummary();
+            } else {
+                host.showCategory(category + 1);
+            }
+        });
+    }
+
+    /**
+     * Tar bort en utgift från listan.
+     * Listan i RecyclerView och den totala summan uppdateras när borttagningen meddelas.
+     *
+     * @param expense Utgiften som ska tas bort.
+     */
+    @Override
+    public void onDeleteExpense(Expense expense) {
+        Expense.remove(category, expense);
+    }
+
+    /**
+     * Väljer hur ofta nästa utgift återkommer och visar valet på knappen.
+     *
+     * @param choice Index i REPEAT_PERIODS.
+     */
+    private void setRepeatChoice(int choice) {
+        repeatChoice = choice;
+        repeat.setText(REPEAT_TEXTS[choice]);
+    }
+
+    /**
+     * Hämtar lånets löptid från fältet.
+     *
+     * @return Löptiden i månader, eller 0 om utgiften inte är ett lån.
+     */
+    private int loanTermMonths() {
+        String term = loanTerm.getText().toString().trim();
+        if (category != Ledger.LOAN_CREDIT || term.isEmpty() || loanRate.getText().length() == 0) {
+            return 0;
+        }
+        return Integer.parseInt(term); //Fältet tar bara emot upp till tre siffror
+    }
+
+    private boolean isLastCategory() {
+        return category == Expense.getCategoryCount() - 1;
+    }
+
+    /**
+     * Visar "Calculate" på den sista kategorin och "Next" på övriga.
+     */
+    private void updateNextButton() {
+        nextButton.setText(isLastCategory() ? R.string.make : R.string.next);
+    }
+
+    /**
+     * Uppdaterar TextView som visar den totala summan av kategorins utgifter.
+     */
+    private void updateTotalExpense() {
+        totalExpense.setText("TOTAL: " + Money.toString(Expense.getTotal(category)) + " KR");
+    }
+}
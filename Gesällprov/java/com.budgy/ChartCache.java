@@ -0,0 +1,79 @@
+package com.budgy;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+/**
+ * ChartCache sparar den senast ritade bilden av diagrammet i Summary.
+ * <p>
+ * Bilden gäller för en version av budgeten, en månad och en storlek på diagrammet.
+ * När användaren kommer tillbaka till Summary utan att något har ändrats ritas
+ * bilden direkt i stället för att sektionerna räknas och ritas om, och ingen
+ * animation spelas. Där det går sparas bilden som en hardware-bitmap, så att den
+ * ligger kvar i grafikminnet och bara behöver ritas ut.
+ */
+public final class ChartCache {
+    private Bitmap bitmap;
+    private long version = -1;
+    private int month = -1;
+
+    /**
+     * Avgör om bilden visar samma data, oavsett storlek. Då behöver diagrammet inte animeras.
+     *
+     * @param version Budgetens version.
+     * @param month   Månaden som visas.
+     * @return true om bilden är ritad från samma data.
+     */
+    public boolean holds(long version, int month) {
+        return bitmap != null && this.version == version && this.month == month;
+    }
+
+    /**
+     * Hämtar bilden om den visar samma data i samma storlek.
+     *
+     * @param version Budgetens version.
+     * @param month   Månaden som visas.
+     * @param width   Diagrammets bredd i pixlar.
+     * @param height  Diagrammets höjd i pixlar.
+     * @return Bilden, eller null om den behöver ritas om.
+     */
+    public Bitmap get(long version, int month, int width, int height) {
+        if (!holds(version, month) || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+            return null;
+        }
+        return bitmap;
+    }
+
+    /**
+     * Sparar en nyritad bild och släpper den tidigare.
+     *
+     * @param version  Budgetens version.
+     * @param month    Månaden som visas.
+     * @param rendered Bilden, ritad i programvara.
+     * @return Bilden som sparades, som hardware-bitmap om det går.
+     */
+    public Bitmap put(long version, int month, Bitmap rendered) {
+        Bitmap stored = rendered;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            Bitmap hardware = rendered.copy(Bitmap.Config.HARDWARE, false);
+            if (hardware != null) {
+                rendered.recycle();
+                stored = hardware;
+            }
+        }
+        //Den tidigare bilden kan fortfarande visas, så den släpps utan recycle
+        bitmap = stored;
+        this.version = version;
+        this.month = month;
+        return stored;
+    }
+
+    /**
+     * Släpper bilden.
+     */
+    public void clear() {
+        bitmap = null;
+        version = -1;
+        month = -1;
+    }
+}
@@ -1,35 +1,87 @@
 package com.budgy;
 
-import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageButton;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
-import java.util.List;
 
 /**
  * ExpenseList är en RecyclerView-adapter som hanterar visningen av en lista med utgifter.
+ * Utgifterna läses sida för sida genom {@link ExpensePages}, så bara raderna kring den
+ * synliga delen finns som objekt även när kategorin har hundratusentals rader.
+ * Nya listor lämnas in med submit och jämförs mot den gamla på radernas id,
+ * så att en tillagd eller borttagen utgift bara animerar och binder om den raden.
  * Den möjliggör även borttagning av enskilda utgifter via en delete-knapp.
+ * Raderna tas från {@link ExpenseRows} och delas med listorna i de andra kategorierna.
  */
 public class ExpenseList extends RecyclerView.Adapter<ExpenseList.ExpenseViewHolder> {
-    private List<Expense> expenseList;
-    private OnExpenseDeleteListener deleteListener;
+    private final OnExpenseDeleteListener deleteListener;
+    private final ExpenseRows rows;
+    private final ExpensePages pages = new ExpensePages();
+
+    /**
+     * Skickar skillnaderna mellan två listor vidare till RecyclerView.
+     * En rad ändras aldrig efter att den lagts till, så samma id betyder samma innehåll.
+     */
+    private final ExpensePages.OnRangeChangedListener updates = new ExpensePages.OnRangeChangedListener() {
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(position, count);
+        }
+    };
 
     /**
      * Konstruktor för ExpenseList.
      *
-     * @param expenseList   Listan med utgifter som ska visas i RecyclerView.
      * @param deleteListener En lyssnare för borttagning av utgifter.
+     * @param rows           Raderna som delas mellan listorna.
      */
-    public ExpenseList(List<Expense> expenseList, OnExpenseDeleteListener deleteListener) {
-        this.expenseList = expenseList;
+    public ExpenseList(OnExpenseDeleteListener deleteListener, ExpenseRows rows) {
         this.deleteListener = deleteListener;
+        this.rows = rows;
+        setHasStableIds(true);
+    }
+
+    /**
+     * Visar en ny ögonblicksbild av kategorin och animerar bara de rader som
+     * lagts till eller tagits bort sedan den förra. Har månaden bytts sedan
+     * den förra visas listan om i stället.
+     *
+     * @param snapshot Kategorins utgifter.
+     */
+    public void submit(Ledger.Snapshot snapshot) {
+        Ledger.Snapshot previous = pages.getSnapshot();
+        if (previous != null && snapshot != null && previous.getMonth() != snapshot.getMonth()) {
+            replace(snapshot);
+            return;
+        }
+        pages.submit(snapshot);
+        ExpensePages.diff(previous, snapshot, updates);
     }
 
     /**
-     * Skapar en ny ViewHolder när en ny view behöver skapas.
+     * Visar en ögonblicksbild utan att jämföra den med den förra, till exempel när
+     * hela budgeten har bytts ut och id:n inte längre går att jämföra.
+     *
+     * @param snapshot Kategorins utgifter, eller null för en tom lista.
+     */
+    public void replace(Ledger.Snapshot snapshot) {
+        pages.submit(snapshot);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Skapar en ny ViewHolder när poolen inte har någon ledig rad.
+     * Delete-knappens lyssnare sätts här en gång och slår upp utgiften
+     * från hållarens aktuella adapter och position när den klickas, eftersom
+     * hållaren senare kan bindas av en annan kategoris lista.
      *
      * @param parent   Föräldervyn där den nya vyn kommer att placeras.
      * @param viewType Typen av view.
@@ -38,8 +90,15 @@ public class ExpenseList extends RecyclerView.Adapter<ExpenseList.ExpenseViewHol
     @NonNull
     @Override
     public ExpenseViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.expense_list, parent, false);
-        return new ExpenseViewHolder(view);
+        ExpenseViewHolder holder = new ExpenseViewHolder(rows.take(parent));
+        holder.deleteButton.setOnClickListener(v -> {
+            ExpenseList owner = (ExpenseList) holder.getBindingAdapter();
+            int position = holder.getBindingAdapterPosition();
+            if (owner != null && owner.deleteListener != null && position != RecyclerView.NO_POSITION) {
+                owner.deleteListener.onDeleteExpense(owner.pages.get(position));
+            }
+        });
+        return holder;
     }
 
     /**
@@ -50,25 +109,43 @@ public class ExpenseList extends RecyclerView.Adapter<ExpenseList.ExpenseViewHol
      */
     @Override
     public void onBindViewHolder(@NonNull ExpenseViewHolder holder, int position) {
-        Expense expense = expenseList.get(position);
+        Expense expense = pages.get(position);
         holder.expenseName.setText(expense.getName());
-        holder.expenseAmount.setText(expense.getAmount() + " KR");
-
-        holder.deleteButton.setOnClickListener(v -> {
-            if (deleteListener != null) {
-                deleteListener.onDeleteExpense(position);
-            }
-        });
+        //Beloppet formateras i hållarens egen buffert, så ingen String skapas per bindning
+        int length = Money.formatWithCurrency(expense.getAmount(), holder.amountText);
+        holder.expenseAmount.setText(holder.amountText, 0, length);
     }
 
     /**
-     * Hämtar det totala antalet objekt i listan.
+     * Hämtar antalet utgifter, även de vars sida inte är inläst.
      *
-     * @return Antalet utgifter i listan.
+     * @return Antalet rader i listan.
      */
     @Override
     public int getItemCount() {
-        return expenseList.size();
+        return pages.size();
+    }
+
+    /**
+     * Alla rader har samma typ, så att de kan delas mellan listorna via poolen.
+     *
+     * @param position Positionen i listan.
+     * @return Radernas gemensamma typ.
+     */
+    @Override
+    public int getItemViewType(int position) {
+        return ExpenseRows.VIEW_TYPE;
+    }
+
+    /**
+     * Hämtar det stabila id:t för utgiften på en position utan att läsa in dess sida.
+     *
+     * @param position Positionen i listan.
+     * @return Utgiftens id.
+     */
+    @Override
+    public long getItemId(int position) {
+        return pages.getId(position);
     }
 
     /**
@@ -77,6 +154,7 @@ public class ExpenseList extends RecyclerView.Adapter<ExpenseList.ExpenseViewHol
     public static class ExpenseViewHolder extends RecyclerView.ViewHolder {
         TextView expenseName, expenseAmount;
         ImageButton deleteButton;
+        final char[] amountText = new char[Money.MAX_LENGTH_WITH_CURRENCY];
 
         /**
          * Konstruktor för ExpenseViewHolder.
@@ -98,8 +176,8 @@ public class ExpenseList extends RecyclerView.Adapter<ExpenseList.ExpenseViewHol
         /**
          * Metod som anropas när en utgift tas bort.
          *
-         * @param position Positionen av den utgift som ska tas bort.
+         * @param expense Utgiften som ska tas bort.
          */
-        void onDeleteExpense(int position);
+        void onDeleteExpense(Expense expense);
     }
 }
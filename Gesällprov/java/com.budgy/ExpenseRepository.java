@@ -0,0 +1,451 @@
+package com.budgy;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ExpenseRepository lagrar inkomst och utgifter i en SQLite-databas.
+ * Den tar emot ändringar från Expense-klassen, samlar ihop dem och skriver dem
+ * i en gemensam transaktion på en enda bakgrundstråd, så att huvudtråden aldrig
+ * väntar på disken. Skrivningarnas satser kompileras en gång per öppnad databas.
+ * Belopp lagras som heltal i öre, så att summorna i databasen är exakta.
+ * Varje utgift har ett datum. Endast raderna för den månad som visas läses in,
+ * tillsammans med återkommande rader som fortfarande gäller så att de kan avslutas
+ * från listan. Övriga rader läses in som summor per dag till ledgerns månadsindex. Kategoriernas
+ * listor och totaler visar samma månad ur indexet, se {@link Expense#getTotal}.
+ * Kategorier som användaren har lagt till sparas med sitt id, så att id:t
+ * pekar ut samma kategori efter omstart. Återkommande utgifter sparas som en rad
+ * plus en regel, och reglerna läses alltid in oavsett vilken månad raden ligger i.
+ * Lån sparas på samma sätt med sina villkor i en egen tabell.
+ * Varje budgetprofil har en egen databasfil, men alla profiler skrivs och läses på
+ * samma bakgrundstråd, så en profil som läses in igen ser alltid sina egna
+ * tidigare ändringar.
+ */
+public class ExpenseRepository implements Ledger.MutationLog {
+    private static final String DATABASE_NAME = "budgy.db";
+    private static final String PROFILE_DATABASE_FORMAT = "budgy-%d.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final int WRITE_INCOME = 0;
+    private static final int WRITE_ADD = 1;
+    private static final int WRITE_REMOVE = 2;
+    private static final int WRITE_RESET = 3;
+    private static final int WRITE_CATEGORY = 4;
+    private static final int WRITE_RECURRENCE = 5;
+    private static final int WRITE_RECURRENCE_END = 6;
+    private static final int WRITE_LOAN = 7;
+
+    //Rader som läses in: månadens rader och återkommande rader som gäller månaden eller senare
+    private static final String LOADED_ROWS = "(day BETWEEN ? AND ? OR _id IN "
+            + "(SELECT expense_id FROM recurrence WHERE end_month >= ?))";
+
+    //Gemensam för alla profiler så att skrivningar och inläsningar sker i ordning
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "budgy-db");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Helper helper;
+
+    //Ändringar som väntar på att skrivas, skyddade av låset på listan
+    private final List<PendingWrite> pending = new ArrayList<>();
+    private boolean flushScheduled = false;
+    //Förberedda satser för den öppna databasen, används bara på bakgrundstråden
+    private Statements statements;
+
+    /**
+     * OnLoadedListener anropas när den sparade budgeten har lästs in.
+     */
+    public interface OnLoadedListener {
+        /**
+         * Anropas på bakgrundstråden med den inlästa ledgern.
+         *
+         * @param ledger Den inlästa ledgern.
+         */
+        void onLoaded(Ledger ledger);
+    }
+
+    /**
+     * Konstruktor för ExpenseRepository för standardprofilen.
+     *
+     * @param context Context som används för att öppna databasen.
+     */
+    public ExpenseRepository(Context context) {
+        this(context, Profiles.DEFAULT_PROFILE);
+    }
+
+    /**
+     * Konstruktor för ExpenseRepository för en budgetprofil.
+     *
+     * @param context Context som används för att öppna databasen.
+     * @param profile Profilens id. Standardprofilen använder den ursprungliga databasfilen.
+     */
+    public ExpenseRepository(Context context, int profile) {
+        String name = profile == Profiles.DEFAULT_PROFILE ? DATABASE_NAME
+                : String.format(Locale.ROOT, PROFILE_DATABASE_FORMAT, profile);
+        this.helper = new Helper(context.getApplicationContext(), name);
+    }
+
+    /**
+     * Läser in budgeten för innevarande månad. Se {@link #load(int, OnLoadedListener)}.
+     *
+     * @param listener Lyssnare som får den inlästa ledgern.
+     */
+    public void load(OnLoadedListener listener) {
+        load(Dates.currentMonth(), listener);
+    }
+
+    /**
+     * Läser in inkomsten och utgifterna för en månad från databasen på bakgrundstråden.
+     * Återkommande rader som gäller månaden eller senare läses också in som rader.
+     * Övriga rader läses in som summor per dag och kategori, så att månadsindexet
+     * täcker hela historiken medan minnet bara växer med den visade månadens rader.
+     * Antalet rader per kategori hämtas först med en aggregatfråga så att
+     * ledgerns kolumner kan dimensioneras en gång.
+     *
+     * @param month    Månaden vars rader ska läsas in.
+     * @param listener Lyssnare som får den inlästa ledgern.
+     */
+    public void load(int month, OnLoadedListener listener) {
+        executor.execute(() -> {
+            SQLiteDatabase db = helper.getWritableDatabase();
+            String[] range = {String.valueOf(Dates.firstDayOf(month)), String.valueOf(Dates.lastDayOf(month)),
+                    String.valueOf(month)};
+            Ledger ledger = new Ledger();
+            try (Cursor cursor = db.rawQuery("SELECT _id, name FROM category ORDER BY _id", null)) {
+                while (cursor.moveToNext()) {
+                    ledger.restoreCategory(cursor.getInt(0), cursor.getString(1));
+                }
+            }
+            try (Cursor cursor = db.rawQuery("SELECT category, COUNT(*) FROM expense "
+                    + "WHERE " + LOADED_ROWS + " GROUP BY category", range)) {
+                while (cursor.moveToNext()) {
+                    ledger.reserve(cursor.getInt(0), cursor.getInt(1));
+                }
+            }
+            try (Cursor cursor = db.rawQuery("SELECT income FROM budget WHERE id = 0", null)) {
+                if (cursor.moveToFirst()) {
+                    ledger.setIncome(cursor.getLong(0));
+                }
+            }
+            try (Cursor cursor = db.rawQuery("SELECT day, category, SUM(amount), COUNT(*) FROM expense "
+                    + "WHERE NOT " + LOADED_ROWS + " GROUP BY day, category", range)) {
+                while (cursor.moveToNext()) {
+                    ledger.restoreDayTotal(cursor.getInt(0), cursor.getInt(1), cursor.getLong(2), cursor.getInt(3));
+                }
+            }
+            try (Cursor cursor = db.rawQuery("SELECT _id, category, name, amount, day FROM expense "
+                    + "WHERE " + LOADED_ROWS + " ORDER BY category, _id", range)) {
+                while (cursor.moveToNext()) {
+                    ledger.restore(cursor.getLong(0), cursor.getInt(1), cursor.getString(2), cursor.getLong(3),
+                            cursor.getInt(4));
+                }
+            }
+            try (Cursor cursor = db.rawQuery("SELECT r.expense_id, e.category, e.amount, e.day, r.period, r.end_month "
+                    + "FROM recurrence r JOIN expense e ON e._id = r.expense_id ORDER BY r.expense_id", null)) {
+                while (cursor.moveToNext()) {
+                    ledger.restoreRecurrence(cursor.getLong(0), cursor.getInt(1), cursor.getLong(2), cursor.getInt(3),
+                            cursor.getInt(4), cursor.getInt(5));
+                }
+            }
+            try (Cursor cursor = db.rawQuery("SELECT l.expense_id, l.principal, l.rate, l.term, e.day "
+                    + "FROM loan l JOIN expense e ON e._id = l.expense_id ORDER BY l.expense_id", null)) {
+                while (cursor.moveToNext()) {
+                    ledger.restoreLoan(cursor.getLong(0), cursor.getLong(1), cursor.getInt(2), cursor.getInt(3),
+                            cursor.getInt(4));
+                }
+            }
+            //Namnförslagen bygger på alla sparade rader, även månader som bara läses in som summor
+            NameIndex names = new NameIndex(Dates.today());
+            try (Cursor cursor = db.rawQuery("SELECT name, MAX(day), COUNT(*) FROM expense GROUP BY name", null)) {
+                while (cursor.moveToNext()) {
+                    names.record(cursor.getString(0), cursor.getInt(1), cursor.getInt(2));
+                }
+            }
+            ledger.setNameIndex(names);
+            //Nya rader får id efter alla sparade, även de som inte lästes in
+            try (Cursor cursor = db.rawQuery("SELECT MAX(_id) FROM expense", null)) {
+                if (cursor.moveToFirst()) {
+                    ledger.setNextId(cursor.getLong(0) + 1);
+                }
+            }
+            ledger.finishRestore();
+            listener.onLoaded(ledger);
+        });
+    }
+
+    /**
+     * Skriver väntande ändringar och stänger sedan databasen, till exempel när
+     * profilens ledger släpps ur minnet. Databasen öppnas igen om den behövs.
+     */
+    public void close() {
+        executor.execute(() -> {
+            flush();
+            if (statements != null) {
+                statements.close();
+                statements = null;
+            }
+            helper.close();
+        });
+    }
+
+    @Override
+    public void onIncome(long income) {
+        enqueue(new PendingWrite(WRITE_INCOME, 0, 0, null, income, 0));
+    }
+
+    @Override
+    public void onAdd(long id, int category, String name, long amount, int day) {
+        enqueue(new PendingWrite(WRITE_ADD, id, category, name, amount, day));
+    }
+
+    @Override
+    public void onRemove(long id, int category) {
+        enqueue(new PendingWrite(WRITE_REMOVE, id, category, null, 0, 0));
+    }
+
+    @Override
+    public void onReset() {
+        enqueue(new PendingWrite(WRITE_RESET, 0, 0, null, 0, 0));
+    }
+
+    @Override
+    public void onCategory(int category, String name) {
+        enqueue(new PendingWrite(WRITE_CATEGORY, 0, category, name, 0, 0));
+    }
+
+    @Override
+    public void onRecurrence(long id, int period, int endMonth) {
+        //Perioden och slutmånaden skickas i fälten för kategori och dag
+        enqueue(new PendingWrite(WRITE_RECURRENCE, id, period, null, 0, endMonth));
+    }
+
+    @Override
+    public void onRecurrenceEnd(long id, int endMonth) {
+        //Slutmånaden skickas i fältet för dag
+        enqueue(new PendingWrite(WRITE_RECURRENCE_END, id, 0, null, 0, endMonth));
+    }
+
+    @Override
+    public void onLoan(long id, long principal, int rate, int term) {
+        //Räntan och löptiden skickas i fälten för kategori och dag
+        enqueue(new PendingWrite(WRITE_LOAN, id, rate, null, principal, term));
+    }
+
+    /**
+     * Lägger en ändring i kö. Endast den första ändringen i en skur schemalägger
+     * en skrivning, resten följer med i samma transaktion.
+     */
+    private void enqueue(PendingWrite write) {
+        synchronized (pending) {
+            pending.add(write);
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        executor.execute(this::flush);
+    }
+
+    /**
+     * Skriver alla väntande ändringar i en och samma transaktion. Körs på bakgrundstråden.
+     */
+    private void flush() {
+        List<PendingWrite> batch;
+        synchronized (pending) {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+
+        SQLiteDatabase db = helper.getWritableDatabase();
+        if (statements == null) {
+            statements = new Statements(db);
+        }
+        db.beginTransaction();
+        try {
+            for (PendingWrite write : batch) {
+                switch (write.type) {
+                    case WRITE_INCOME:
+                        statements.income.bindLong(1, write.amount);
+                        statements.income.executeInsert();
+                        break;
+                    case WRITE_ADD:
+                        statements.insert.bindLong(1, write.id);
+                        statements.insert.bindLong(2, write.category);
+                        statements.insert.bindString(3, write.name);
+                        statements.insert.bindLong(4, write.amount);
+                        statements.insert.bindLong(5, write.day);
+                        statements.insert.executeInsert();
+                        break;
+                    case WRITE_REMOVE:
+                        statements.delete.bindLong(1, write.id);
+                        statements.delete.executeUpdateDelete();
+                        statements.deleteRecurrence.bindLong(1, write.id);
+                        statements.deleteRecurrence.executeUpdateDelete();
+                        statements.deleteLoan.bindLong(1, write.id);
+                        statements.deleteLoan.executeUpdateDelete();
+                        break;
+                    case WRITE_RESET:
+                        //Kategorierna behålls, precis som i ledgern
+                        db.execSQL("DELETE FROM expense");
+                        db.execSQL("DELETE FROM recurrence");
+                        db.execSQL("DELETE FROM loan");
+                        db.execSQL("DELETE FROM budget");
+                        break;
+                    case WRITE_CATEGORY:
+                        statements.category.bindLong(1, write.category);
+                        statements.category.bindString(2, write.name);
+                        statements.category.executeInsert();
+                        break;
+                    case WRITE_RECURRENCE:
+                        statements.recurrence.bindLong(1, write.id);
+                        statements.recurrence.bindLong(2, write.category);
+                        statements.recurrence.bindLong(3, write.day);
+                        statements.recurrence.executeInsert();
+                        break;
+                    case WRITE_RECURRENCE_END:
+                        statements.endRecurrence.bindLong(1, write.day);
+                        statements.endRecurrence.bindLong(2, write.id);
+                        statements.endRecurrence.executeUpdateDelete();
+                        //Ett avslutat lån har inga villkor kvar, precis som i ledgern
+                        statements.deleteLoan.bindLong(1, write.id);
+                        statements.deleteLoan.executeUpdateDelete();
+                        break;
+                    case WRITE_LOAN:
+                        statements.loan.bindLong(1, write.id);
+                        statements.loan.bindLong(2, write.amount);
+                        statements.loan.bindLong(3, write.category);
+                        statements.loan.bindLong(4, write.day);
+                        statements.loan.executeInsert();
+                        break;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * PendingWrite är en ändring som väntar på att skrivas till databasen.
+     */
+    private static class PendingWrite {
+        final int type;
+        final long id;
+        final int category;
+        final String name;
+        final long amount;
+        final int day;
+
+        PendingWrite(int type, long id, int category, String name, long amount, int day) {
+            this.type = type;
+            this.id = id;
+            this.category = category;
+            this.name = name;
+            this.amount = amount;
+            this.day = day;
+        }
+    }
+
+    /**
+     * Statements håller de förberedda satserna för skrivningar mot en öppen databas,
+     * så att de bara kompileras en gång och kan stängas tillsammans med databasen.
+     */
+    private static class Statements {
+        final SQLiteStatement insert;
+        final SQLiteStatement delete;
+        final SQLiteStatement recurrence;
+        final SQLiteStatement endRecurrence;
+        final SQLiteStatement deleteRecurrence;
+        final SQLiteStatement loan;
+        final SQLiteStatement deleteLoan;
+        final SQLiteStatement income;
+        final SQLiteStatement category;
+
+        Statements(SQLiteDatabase db) {
+            insert = db.compileStatement(
+                    "INSERT OR REPLACE INTO expense (_id, category, name, amount, day) VALUES (?, ?, ?, ?, ?)");
+            delete = db.compileStatement("DELETE FROM expense WHERE _id = ?");
+            recurrence = db.compileStatement(
+                    "INSERT OR REPLACE INTO recurrence (expense_id, period, end_month) VALUES (?, ?, ?)");
+            endRecurrence = db.compileStatement("UPDATE recurrence SET end_month = ? WHERE expense_id = ?");
+            deleteRecurrence = db.compileStatement("DELETE FROM recurrence WHERE expense_id = ?");
+            loan = db.compileStatement(
+                    "INSERT OR REPLACE INTO loan (expense_id, principal, rate, term) VALUES (?, ?, ?, ?)");
+            deleteLoan = db.compileStatement("DELETE FROM loan WHERE expense_id = ?");
+            income = db.compileStatement("INSERT OR REPLACE INTO budget (id, income) VALUES (0, ?)");
+            category = db.compileStatement("INSERT OR REPLACE INTO category (_id, name) VALUES (?, ?)");
+        }
+
+        void close() {
+            insert.close();
+            delete.close();
+            recurrence.close();
+            endRecurrence.close();
+            deleteRecurrence.close();
+            loan.close();
+            deleteLoan.close();
+            income.close();
+            category.close();
+        }
+    }
+
+    /**
+     * Helper skapar databasens tabeller.
+     */
+    private static class Helper extends SQLiteOpenHelper {
+
+        Helper(Context context, String name) {
+            super(context, name, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE expense ("
+                    + "_id INTEGER PRIMARY KEY, "
+                    + "category INTEGER NOT NULL, "
+                    + "name TEXT NOT NULL, "
+                    + "amount INTEGER NOT NULL, "
+                    + "day INTEGER NOT NULL)");
+            db.execSQL("CREATE TABLE budget ("
+                    + "id INTEGER PRIMARY KEY CHECK (id = 0), "
+                    + "income INTEGER NOT NULL)");
+            //Endast kategorier som användaren har lagt till, standardkategorierna finns alltid i ledgern
+            db.execSQL("CREATE TABLE category ("
+                    + "_id INTEGER PRIMARY KEY, "
+                    + "name TEXT NOT NULL)");
+            //En regel per återkommande utgift, beloppet och första datumet finns i utgiftens rad
+            db.execSQL("CREATE TABLE recurrence ("
+                    + "expense_id INTEGER PRIMARY KEY, "
+                    + "period INTEGER NOT NULL, "
+                    + "end_month INTEGER NOT NULL)");
+            //Lånets månadsbelopp och första betalning finns i utgiftens rad, betalningarna i recurrence
+            db.execSQL("CREATE TABLE loan ("
+                    + "expense_id INTEGER PRIMARY KEY, "
+                    + "principal INTEGER NOT NULL, "
+                    + "rate INTEGER NOT NULL, "
+                    + "term INTEGER NOT NULL)");
+            //Täckande index för att läsa en månads rader och summera övriga per dag
+            db.execSQL("CREATE INDEX expense_day ON expense (day, category, amount)");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            //Schemat har bara en version, det finns inget att uppgradera
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.budgy;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import androidx.asynclayoutinflater.view.AsyncLayoutInflater;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayDeque;
+
+/**
+ * ExpenseRows håller raderna i utgiftslistorna varma mellan kategorierna.
+ * <p>
+ * Alla listor i {@link MainActivity} delar samma RecycledViewPool, och en lista lämnar
+ * tillbaka sina rader till poolen när skärmen byts. Nästa kategori tar därför rader
+ * som redan finns i stället för att skapa nya på bildrutan. De första raderna skapas
+ * i förväg på en bakgrundstråd medan startskärmen visas, så att även den första
+ * kategorin slipper skapa dem.
+ * <p>
+ * Poolen lever lika länge som aktiviteten. Raderna är skapade med aktivitetens Context
+ * och får inte överleva den, till exempel när skärmen roteras.
+ */
+public final class ExpenseRows {
+    public static final int VIEW_TYPE = R.layout.expense_list;
+
+    //Rader som poolen sparar, mer än vad som ryms på skärmen plus hämtningen i förväg
+    private static final int MAX_POOLED = 24;
+    //Rader som varje lista behåller bundna precis utanför skärmen
+    private static final int ITEM_CACHE_SIZE = 6;
+
+    private final RecyclerView.RecycledViewPool pool = new RecyclerView.RecycledViewPool();
+    //Rader som skapats i förväg och ännu inte tagits av någon lista
+    private final ArrayDeque<View> inflated = new ArrayDeque<>();
+    private final ViewGroup container;
+
+    /**
+     * Konstruktor för ExpenseRows.
+     *
+     * @param container Behållaren som skärmarna visas i, används som förälder när rader skapas.
+     */
+    public ExpenseRows(ViewGroup container) {
+        this.container = container;
+        pool.setMaxRecycledViews(VIEW_TYPE, MAX_POOLED);
+    }
+
+    /**
+     * Börjar skapa rader på en bakgrundstråd. Varje rad läggs undan på huvudtråden
+     * när den är klar.
+     *
+     * @param count Antal rader att skapa.
+     */
+    public void preinflate(int count) {
+        AsyncLayoutInflater inflater = new AsyncLayoutInflater(container.getContext());
+        for (int i = 0; i < count; i++) {
+            inflater.inflate(VIEW_TYPE, container, (view, resid, parent) -> inflated.add(view));
+        }
+    }
+
+    /**
+     * Kopplar en lista till den delade poolen och ställer in hur den hämtar rader i förväg.
+     * Listan lämnar sina rader till poolen när den tas bort från skärmen.
+     *
+     * @param list Listan som ska visa utgifter.
+     */
+    public void attach(RecyclerView list) {
+        LinearLayoutManager layoutManager = new LinearLayoutManager(list.getContext());
+        layoutManager.setRecycleChildrenOnDetach(true);
+        layoutManager.setItemPrefetchEnabled(true);
+        list.setLayoutManager(layoutManager);
+        list.setRecycledViewPool(pool);
+        list.setItemViewCacheSize(ITEM_CACHE_SIZE);
+        list.setHasFixedSize(true); //Listans storlek styrs av layouten, inte av antalet rader
+    }
+
+    /**
+     * Tar en rad som skapats i förväg, eller skapar en ny om ingen finns kvar.
+     *
+     * @param parent Listan som raden ska visas i.
+     * @return Radens vy.
+     */
+    View take(ViewGroup parent) {
+        View view = inflated.poll();
+        if (view != null) {
+            return view; //RecyclerView gör om layoutparametrarna när raden läggs till
+        }
+        return LayoutInflater.from(parent.getContext()).inflate(VIEW_TYPE, parent, false);
+    }
+}
@@ -1,58 +1,79 @@
 package com.budgy;
 
-import android.content.Intent;
 import android.os.Bundle;
-import android.text.Editable;
-import android.text.TextWatcher;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
-import androidx.appcompat.app.AppCompatActivity;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
 
 /**
- * Income är en aktivitet där användaren kan ange sin inkomst.
- * Den hanterar inmatning, formatering av text samt navigering till nästa steg i budgetprocessen.
+ * Income är en skärm i {@link MainActivity} där användaren kan ange sin inkomst.
+ * Den hanterar inmatning av beloppet samt navigering till nästa steg i budgetprocessen.
  */
-public class Income extends AppCompatActivity {
+public class Income extends Fragment {
+    private static final String ARG_CAME_FROM_SUMMARY = "cameFromSummary";
+
     Button nextButton, backToChartButton;
     EditText income;
+    AmountInput incomeAmount;
     boolean cameFromSummary = false;
 
     /**
-     * Körs när aktiviteten skapas. Initierar layout och komponenter,
+     * Konstruktor för Income. Layouten skapas av Fragment.
+     */
+    public Income() {
+        super(R.layout.income);
+    }
+
+    /**
+     * Skapar skärmen för inkomsten.
+     *
+     * @param cameFromSummary true om användaren kom från Summary och ska kunna gå tillbaka dit.
+     * @return Skärmen.
+     */
+    public static Income newInstance(boolean cameFromSummary) {
+        Income fragment = new Income();
+        Bundle args = new Bundle();
+        args.putBoolean(ARG_CAME_FROM_SUMMARY, cameFromSummary);
+        fragment.setArguments(args);
+        return fragment;
+    }
+
+    /**
+     * Körs när skärmens vyer har skapats. Initierar komponenterna
      * samt hämtar tidigare sparad inkomst om den finns.
      *
-     * @param savedInstanceState Sparad instansdata vid återställning av aktiviteten.
+     * @param view               Skärmens rotvy.
+     * @param savedInstanceState Sparad instansdata vid återställning av skärmen.
      */
     @Override
-    protected void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-        setContentView(R.layout.income);
-
-        nextButton = findViewById(R.id.next_button);
-        income = findViewById(R.id.income_amount);
-        backToChartButton = findViewById(R.id.back_to_chart);
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        nextButton = view.findViewById(R.id.next_button);
+        income = view.findViewById(R.id.income_amount);
+        backToChartButton = view.findViewById(R.id.back_to_chart);
+        MainActivity host = (MainActivity) requireActivity();
 
+        //Formaterar beloppet medan det skrivs, med " KR" efter
+        incomeAmount = AmountInput.attach(income);
         if (Expense.getIncome() > 0) {
-            income.setText(String.valueOf(Expense.getIncome()));
+            incomeAmount.setAmount(Expense.getIncome());
         }
 
-        //Hämta flagga från Intent (om användaren kom från Summary)
-        cameFromSummary = getIntent().getBooleanExtra("cameFromSummary", false);
+        //Hämta flagga från argumenten (om användaren kom från Summary)
+        cameFromSummary = requireArguments().getBoolean(ARG_CAME_FROM_SUMMARY, false);
 
         //Sätt knappen osynlig i början
         backToChartButton.setVisibility(cameFromSummary ? View.VISIBLE : View.GONE);
 
         /**
          * Hanterar klick på "Next"-knappen.
-         * Sparar den inmatade inkomsten efter att ha rensat eventuella extra tecken
-         * och navigerar sedan till nästa aktivitet.
+         * Sparar den inmatade inkomsten och navigerar sedan till nästa skärm.
          */
         nextButton.setOnClickListener(v -> {
             saveIncome();
-            //Navigera till nästa sida
-            Intent intent = new Intent(Income.this, FixedExpense.class);
-            startActivity(intent);
+            host.showCategory(Ledger.FIXED); //Navigera till nästa sida
         });
 
         /**
@@ -61,48 +82,8 @@ public class Income extends AppCompatActivity {
          */
         backToChartButton.setOnClickListener(v -> {
             saveIncome();
-            Intent intent = new Intent(Income.this, Summary.class);
-            startActivity(intent);
-        });
-
-        /**
-         * Lyssnar på förändringar i inmatningsfältet för att säkerställa att valutan
-         * "KR" alltid finns med i texten.
-         */
-        income.addTextChangedListener(new TextWatcher() {
-            private boolean isEditing = false;
-
-            /**
-             * Anropas innan texten i EditText ändras.
-             * I denna implementering används den inte, men måste inkluderas eftersom den är en del av TextWatcher-gränssnittet.
-             */
-            @Override
-            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
-
-            /**
-             * Anropas när texten ändras i EditText.
-             * I denna implementering används den inte, men måste inkluderas eftersom den är en del av TextWatcher-gränssnittet.
-             */
-            @Override
-            public void onTextChanged(CharSequence s, int start, int before, int count) {}
-
-            /**
-             * Anropas efter att texten har ändrats.
-             * Säkerställer att " KR" alltid läggs till i slutet av inmatningen och att markören placeras korrekt.
-             */
-            @Override
-            public void afterTextChanged(Editable editable) {
-                if (isEditing) return; //Undviker rekursiv ändring av text
-                isEditing = true;
-                //Tar bort eventuell befintlig " KR" text och rensar mellanslag
-                String text = editable.toString().replace(" KR", "").trim();
-                if (!text.isEmpty()) { //Om texten inte är tom, lägg till " KR" och uppdatera texten i EditText
-                    text += " KR";
-                    income.setText(text);
-                    income.setSelection(text.length() - 3);
-                }
-                isEditing = false;
-            }
+            SummarySnapshot.prefetch(); //Sammanfattningen beräknas medan nästa skärm skapas
+            host.showSummary();
         });
     }
 
@@ -110,10 +91,6 @@ public class Income extends AppCompatActivity {
      * Sparar inkomsten från EditText till Expense-klassen.
      */
     private void saveIncome() {
-        double incomeValue = 0;
-        if (!income.getText().toString().isEmpty()) {
-            incomeValue = Double.parseDouble(income.getText().toString().replace(" KR", "").trim());
-        }
-        Expense.setIncome(incomeValue);
+        Expense.setIncome(incomeAmount.getAmount()); //Ett tomt fält ger 0
     }
 }
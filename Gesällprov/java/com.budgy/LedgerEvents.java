@@ -0,0 +1,35 @@
+package com.budgy;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * LedgerEvents kopplar budgetens ändringsmeddelanden till Android.
+ * Meddelanden skickas på huvudtråden en gång per bildruta, oavsett hur många
+ * ändringar som hann göras. Skärmarna tar emot dem via {@link BudgetViewModel},
+ * som prenumererar en gång för hela aktiviteten.
+ */
+public final class LedgerEvents {
+
+    private LedgerEvents() {
+    }
+
+    /**
+     * Låter alla ändringsmeddelanden vänta till nästa bildruta på huvudtråden.
+     * Anropas en gång när appen startar.
+     */
+    public static void installFrameScheduler() {
+        Looper mainLooper = Looper.getMainLooper();
+        Handler mainHandler = new Handler(mainLooper);
+        Expense.setChangeScheduler(dispatch -> {
+            Choreographer.FrameCallback callback = frameTimeNanos -> dispatch.run();
+            if (Looper.myLooper() == mainLooper) {
+                Choreographer.getInstance().postFrameCallback(callback);
+            } else {
+                //Choreographer är knuten till huvudtråden, ändringar från till exempel importer hoppar dit först
+                mainHandler.post(() -> Choreographer.getInstance().postFrameCallback(callback));
+            }
+        });
+    }
+}
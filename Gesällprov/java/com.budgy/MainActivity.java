@@ -0,0 +1,130 @@
+package com.budgy;
+
+import android.os.Bundle;
+import android.view.ViewGroup;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentManager;
+
+/**
+ * MainActivity är den enda aktiviteten i budgetappen.
+ * Varje skärm är ett fragment som byts ut i samma behållare, så en övergång skapar
+ * aldrig en ny aktivitet. Alla skärmar delar samma {@link BudgetViewModel}.
+ * <p>
+ * En skärm finns högst en gång i backstacken. Går användaren till en skärm som redan
+ * finns där, till exempel tillbaka till Summary, plockas skärmarna ovanför bort i
+ * stället för att en ny kopia läggs på. Minnet växer därför inte med antalet varv
+ * mellan sammanfattningen och de andra skärmarna.
+ * <p>
+ * Utgiftslistorna i kategorierna delar rader via {@link ExpenseRows}.
+ */
+public class MainActivity extends AppCompatActivity {
+    private static final String TAG_INCOME = "income";
+    private static final String TAG_SUMMARY = "summary";
+    private static final String TAG_CATEGORY = "category:";
+    //Rader som skapas i förväg, ungefär en skärm full
+    private static final int PREINFLATED_ROWS = 12;
+
+    private ExpenseRows expenseRows;
+
+    /**
+     * Initialiserar aktiviteten och visar startskärmen första gången.
+     * Vid återskapande, till exempel efter rotation, återställer FragmentManager skärmarna själv.
+     * Raderna till utgiftslistorna börjar skapas i bakgrunden direkt.
+     *
+     * @param savedInstanceState Om aktiviteten återställs sparas tidigare tillstånd här.
+     */
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.main);
+        expenseRows = new ExpenseRows((ViewGroup) findViewById(R.id.fragment_container));
+        expenseRows.preinflate(PREINFLATED_ROWS);
+
+        if (savedInstanceState == null) {
+            getSupportFragmentManager().beginTransaction()
+                    .setReorderingAllowed(true)
+                    .add(R.id.fragment_container, new Start())
+                    .commit();
+        }
+    }
+
+    /**
+     * Hämtar raderna som delas mellan kategoriernas utgiftslistor.
+     *
+     * @return Aktivitetens rader.
+     */
+    public ExpenseRows getExpenseRows() {
+        return expenseRows;
+    }
+
+    /**
+     * Går tillbaka till startskärmen och tömmer backstacken.
+     */
+    public void showStart() {
+        getSupportFragmentManager().popBackStack(null, FragmentManager.POP_BACK_STACK_INCLUSIVE);
+    }
+
+    /**
+     * Visar skärmen för inkomsten.
+     *
+     * @param cameFromSummary true om användaren kom från sammanfattningen och ska kunna gå tillbaka dit.
+     */
+    public void showIncome(boolean cameFromSummary) {
+        if (!popTo(TAG_INCOME)) {
+            push(Income.newInstance(cameFromSummary), TAG_INCOME);
+        }
+    }
+
+    /**
+     * Visar skärmen för en kategoris utgifter.
+     *
+     * @param category Kategorins id.
+     */
+    public void showCategory(int category) {
+        String tag = TAG_CATEGORY + category;
+        if (!popTo(tag)) {
+            push(CategoryExpense.newInstance(category), tag);
+        }
+    }
+
+    /**
+     * Visar sammanfattningen. Finns den inte redan i backstacken töms stacken först,
+     * så att sammanfattningen ligger närmast startskärmen och varje nytt varv börjar där.
+     */
+    public void showSummary() {
+        if (!popTo(TAG_SUMMARY)) {
+            getSupportFragmentManager().popBackStack(null, FragmentManager.POP_BACK_STACK_INCLUSIVE);
+            push(new Summary(), TAG_SUMMARY);
+        }
+    }
+
+    /**
+     * Plockar bort skärmarna ovanför en skärm som redan finns i backstacken.
+     *
+     * @param tag Skärmens namn i backstacken.
+     * @return true om skärmen fanns och nu visas.
+     */
+    private boolean popTo(String tag) {
+        FragmentManager manager = getSupportFragmentManager();
+        for (int i = manager.getBackStackEntryCount() - 1; i >= 0; i--) {
+            if (tag.equals(manager.getBackStackEntryAt(i).getName())) {
+                manager.popBackStack(tag, 0);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ersätter den visade skärmen och lägger övergången i backstacken.
+     * Den ersatta skärmens vyer förstörs, bara fragmentet och dess argument finns kvar.
+     */
+    private void push(Fragment fragment, String tag) {
+        getSupportFragmentManager().beginTransaction()
+                .setReorderingAllowed(true)
+                .replace(R.id.fragment_container, fragment, tag)
+                .addToBackStack(tag)
+                .commit();
+    }
+}
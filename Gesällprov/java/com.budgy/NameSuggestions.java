@@ -0,0 +1,93 @@
+package com.budgy;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Filter;
+import android.widget.Filterable;
+import android.widget.TextView;
+
+/**
+ * NameSuggestions är adaptern för förslagen under fältet för utgiftens namn.
+ * Förslagen hämtas från {@link Expense#suggestNames(CharSequence, String[])} på
+ * filtrets bakgrundstråd vid varje tangenttryckning.
+ */
+public class NameSuggestions extends BaseAdapter implements Filterable {
+    private final LayoutInflater inflater;
+    private final Filter filter = new NameFilter();
+    private String[] suggestions = new String[0];
+    private int count = 0;
+
+    /**
+     * Konstruktor för NameSuggestions.
+     *
+     * @param context Context som används för att skapa raderna.
+     */
+    public NameSuggestions(Context context) {
+        this.inflater = LayoutInflater.from(context);
+    }
+
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public String getItem(int position) {
+        return suggestions[position];
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        TextView view = (TextView) (convertView != null ? convertView
+                : inflater.inflate(android.R.layout.simple_dropdown_item_1line, parent, false));
+        view.setText(suggestions[position]);
+        return view;
+    }
+
+    @Override
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * NameFilter hämtar förslagen för det som har skrivits i fältet.
+     */
+    private class NameFilter extends Filter {
+        @Override
+        protected FilterResults performFiltering(CharSequence prefix) {
+            FilterResults results = new FilterResults();
+            if (prefix == null || prefix.length() == 0) {
+                return results;
+            }
+            String[] found = new String[NameIndex.MAX_SUGGESTIONS];
+            results.count = Expense.suggestNames(prefix, found);
+            results.values = found;
+            return results;
+        }
+
+        @Override
+        protected void publishResults(CharSequence prefix, FilterResults results) {
+            if (results.count > 0) {
+                suggestions = (String[]) results.values;
+                count = results.count;
+                notifyDataSetChanged();
+            } else {
+                count = 0;
+                notifyDataSetInvalidated();
+            }
+        }
+
+        @Override
+        public CharSequence convertResultToString(Object result) {
+            return (String) result;
+        }
+    }
+}
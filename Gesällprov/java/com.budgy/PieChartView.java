@@ -0,0 +1,271 @@
+package com.budgy;
+
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.View;
+import android.view.animation.DecelerateInterpolator;
+
+import java.util.Arrays;
+
+/**
+ * PieChartView ritar budgetens fördelning som en ring med en sektion per värde.
+ * <p>
+ * Sektionernas vinklar och etiketternas positioner räknas ut en gång när värdena
+ * eller storleken ändras, så att onDraw bara ritar färdiga bågar och inte skapar
+ * några objekt. Diagrammet ritas fram medurs från toppen med plattformens ValueAnimator.
+ * Etiketten ritas i sektionen när den får plats, annars visas den bara i förklaringen.
+ * Antalet sektioner är inte begränsat.
+ * <p>
+ * Med en {@link ChartCache} ritas det färdiga diagrammet en gång till en bild,
+ * som sedan ritas ut direkt så länge datan och storleken är desamma.
+ */
+public class PieChartView extends View {
+    //Hålets radie i förhållande till diagrammets radie
+    private static final float INNER_RATIO = 0.55f;
+    private static final float LABEL_SIZE_SP = 12f;
+    private static final long ANIMATION_MS = 700;
+    private static final int EMPTY_COLOR = Color.parseColor("#E0E0E0");
+
+    private final Paint slicePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    //Ringens mittlinje, bågarna ritas med ringens bredd som linjebredd
+    private final RectF ring = new RectF();
+    private final ValueAnimator animator = ValueAnimator.ofFloat(0f, 1f);
+
+    private int count;
+    private float[] values = new float[4];
+    private int[] colors = new int[4];
+    private String[] labels = new String[4];
+    //Uträknat från värdena och storleken, i grader från toppen
+    private float[] startAngles = new float[4];
+    private float[] sweepAngles = new float[4];
+    private float[] labelX = new float[4];
+    private float[] labelY = new float[4];
+    private boolean[] labelFits = new boolean[4];
+    private boolean dirty;
+    //Sant när summan av värdena är 0, då ritas en tom ring
+    private boolean empty = true;
+    //Hur stor del av varvet som är framritad, 1 när animationen är klar
+    private float progress = 1f;
+    //Bilden av det färdiga diagrammet och vilken data den gäller för
+    private ChartCache cache;
+    private long version = -1;
+    private int month = -1;
+    private Bitmap bitmap;
+
+    /**
+     * Konstruktor för PieChartView.
+     *
+     * @param context Context som vyn skapas i.
+     */
+    public PieChartView(Context context) {
+        this(context, null);
+    }
+
+    /**
+     * Konstruktor för PieChartView när vyn skapas från en layout.
+     *
+     * @param context Context som vyn skapas i.
+     * @param attrs   Attributen från layouten.
+     */
+    public PieChartView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        slicePaint.setStyle(Paint.Style.STROKE);
+        labelPaint.setColor(Color.BLACK);
+        labelPaint.setTextAlign(Paint.Align.CENTER);
+        labelPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, LABEL_SIZE_SP,
+                getResources().getDisplayMetrics()));
+        animator.setDuration(ANIMATION_MS);
+        animator.setInterpolator(new DecelerateInterpolator());
+        //Den interpolerade andelen läses direkt, så att inget värde packas in per bildruta
+        animator.addUpdateListener(animation -> {
+            progress = animation.getAnimatedFraction();
+            invalidate();
+        });
+    }
+
+    /**
+     * Tar bort alla sektioner.
+     */
+    public void clear() {
+        Arrays.fill(labels, 0, count, null);
+        count = 0;
+        dirty = true;
+        bitmap = null;
+        invalidate();
+    }
+
+    /**
+     * Lägger till en sektion efter de befintliga.
+     *
+     * @param label Etiketten som visas i sektionen.
+     * @param value Sektionens värde, sektionen får sin andel av summan av alla värden.
+     * @param color Sektionens färg som ARGB.
+     */
+    public void addSlice(String label, float value, int color) {
+        if (count == values.length) {
+            grow(count * 2);
+        }
+        values[count] = value;
+        colors[count] = color;
+        labels[count] = label;
+        count++;
+        dirty = true;
+        invalidate();
+    }
+
+    /**
+     * Anger var bilden av diagrammet sparas och vilken data sektionerna visar.
+     * Anropas efter att sektionerna lagts till. Finns en bild för datan i vyns
+     * storlek används den, annars ritas en ny så snart storleken är känd.
+     *
+     * @param cache   Cachen som bilden sparas i.
+     * @param version Budgetens version som sektionerna kommer från.
+     * @param month   Månaden som visas.
+     */
+    public void setCache(ChartCache cache, long version, int month) {
+        this.cache = cache;
+        this.version = version;
+        this.month = month;
+        updateBitmap(getWidth(), getHeight());
+        invalidate();
+    }
+
+    /**
+     * Ritar fram diagrammet från början.
+     */
+    public void startAnimation() {
+        layoutSlices();
+        animator.cancel();
+        progress = 0f;
+        animator.start();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        float width = w - getPaddingLeft() - getPaddingRight();
+        float height = h - getPaddingTop() - getPaddingBottom();
+        float radius = Math.max(0f, Math.min(width, height) / 2f);
+        float thickness = radius * (1f - INNER_RATIO);
+        float middle = radius - thickness / 2f;
+        float cx = getPaddingLeft() + width / 2f;
+        float cy = getPaddingTop() + height / 2f;
+        ring.set(cx - middle, cy - middle, cx + middle, cy + middle);
+        slicePaint.setStrokeWidth(thickness);
+        dirty = true;
+        updateBitmap(w, h);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        animator.cancel();
+        progress = 1f;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        //En hardware-bitmap kan bara ritas med hårdvaruacceleration
+        if (bitmap != null && progress == 1f && canvas.isHardwareAccelerated()) {
+            canvas.drawBitmap(bitmap, 0f, 0f, null);
+            return;
+        }
+        drawChart(canvas, progress * 360f);
+    }
+
+    /**
+     * Ritar diagrammet fram till en vinkel.
+     *
+     * @param canvas   Där diagrammet ritas.
+     * @param revealed Hur många grader från toppen som ritas, 360 för hela diagrammet.
+     */
+    private void drawChart(Canvas canvas, float revealed) {
+        if (dirty) {
+            layoutSlices();
+        }
+        if (empty) {
+            slicePaint.setColor(EMPTY_COLOR);
+            canvas.drawArc(ring, -90f, revealed, false, slicePaint);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            float start = startAngles[i];
+            if (start >= revealed) {
+                break;
+            }
+            slicePaint.setColor(colors[i]);
+            canvas.drawArc(ring, start - 90f, Math.min(sweepAngles[i], revealed - start), false, slicePaint);
+        }
+        //Etiketten visas när sektionen är framritad till sin mitt
+        float textOffset = (labelPaint.ascent() + labelPaint.descent()) / 2f;
+        for (int i = 0; i < count; i++) {
+            if (labelFits[i] && startAngles[i] + sweepAngles[i] / 2f <= revealed) {
+                canvas.drawText(labels[i], labelX[i], labelY[i] - textOffset, labelPaint);
+            }
+        }
+    }
+
+    /**
+     * Räknar ut sektionernas vinklar och var etiketterna ska stå, och om de får plats.
+     */
+    private void layoutSlices() {
+        dirty = false;
+        float total = 0f;
+        for (int i = 0; i < count; i++) {
+            total += Math.max(0f, values[i]);
+        }
+        empty = total <= 0f;
+        float middle = ring.width() / 2f;
+        float cx = ring.centerX();
+        float cy = ring.centerY();
+        float angle = 0f;
+        for (int i = 0; i < count; i++) {
+            float sweep = total > 0f ? Math.max(0f, values[i]) / total * 360f : 0f;
+            startAngles[i] = angle;
+            sweepAngles[i] = sweep;
+            angle += sweep;
+
+            //Etiketten står mitt i ringen och måste rymmas i bågen den står på
+            double mid = Math.toRadians(startAngles[i] + sweep / 2f - 90f);
+            labelX[i] = cx + (float) (middle * Math.cos(mid));
+            labelY[i] = cy + (float) (middle * Math.sin(mid));
+            float arcLength = (float) Math.toRadians(sweep) * middle;
+            labelFits[i] = labels[i] != null && labelPaint.measureText(labels[i]) < arcLength
+                    && labelPaint.getTextSize() < slicePaint.getStrokeWidth();
+        }
+    }
+
+    /**
+     * Hämtar bilden av diagrammet från cachen, eller ritar och sparar en ny
+     * om datan eller storleken har ändrats. Anropas aldrig från onDraw.
+     */
+    private void updateBitmap(int width, int height) {
+        if (cache == null || width == 0 || height == 0) {
+            return;
+        }
+        bitmap = cache.get(version, month, width, height);
+        if (bitmap == null) {
+            Bitmap rendered = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            drawChart(new Canvas(rendered), 360f);
+            bitmap = cache.put(version, month, rendered);
+        }
+    }
+
+    private void grow(int capacity) {
+        values = Arrays.copyOf(values, capacity);
+        colors = Arrays.copyOf(colors, capacity);
+        labels = Arrays.copyOf(labels, capacity);
+        startAngles = Arrays.copyOf(startAngles, capacity);
+        sweepAngles = Arrays.copyOf(sweepAngles, capacity);
+        labelX = Arrays.copyOf(labelX, capacity);
+        labelY = Arrays.copyOf(labelY, capacity);
+        labelFits = Arrays.copyOf(labelFits, capacity);
+    }
+}
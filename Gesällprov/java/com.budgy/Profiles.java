@@ -0,0 +1,216 @@
+package com.budgy;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
+
+import java.util.Arrays;
+
+/**
+ * Profiles håller reda på användarens budgetprofiler, till exempel en per hushåll
+ * eller en per månad, och vilken av dem som är aktiv.
+ * <p>
+ * Varje profil har en egen databas, se {@link ExpenseRepository}. En profil läses in
+ * först när den väljs, och de senast använda hålls kvar i en {@link LedgerCache} under
+ * en minnesgräns, så att byte till en av dem sker direkt utan att läsa databasen.
+ * En profil som släpps ur cachen får sina väntande ändringar skrivna och sin databas
+ * stängd. Profilernas namn och vilken som är aktiv sparas i SharedPreferences.
+ * Alla metoder anropas på huvudtråden.
+ */
+public final class Profiles {
+    public static final int DEFAULT_PROFILE = 0;
+
+    private static final String PREFERENCES = "profiles";
+    private static final String KEY_IDS = "ids";
+    private static final String KEY_NAME = "name_";
+    private static final String KEY_CURRENT = "current";
+    private static final String KEY_NEXT_ID = "next_id";
+    //Andel av appens minnesklass som inlästa budgetar får använda tillsammans
+    private static final int MEMORY_FRACTION = 16;
+
+    private static Context context;
+    private static SharedPreferences preferences;
+    private static Handler mainHandler;
+    private static LedgerCache cache;
+    //Lagringen för varje profil i cachen
+    private static final SparseArray<ExpenseRepository> repositories = new SparseArray<>();
+    //Profiler som läses in just nu, så att samma profil inte läses in två gånger
+    private static final SparseArray<ExpenseRepository> loading = new SparseArray<>();
+    private static int[] ids = {DEFAULT_PROFILE};
+    //Profilen som senast valdes, inläsningar av andra profiler kopplas inte in
+    private static int requested = DEFAULT_PROFILE;
+
+    private Profiles() {
+    }
+
+    /**
+     * Läser in listan med profiler och börjar läsa in den aktiva profilens budget.
+     * Budgeten kopplas in i Expense-klassen på huvudtråden när den är inläst.
+     * Anropas en gång när appen startar.
+     *
+     * @param appContext Context som används för databaser och inställningar.
+     */
+    public static void init(Context appContext) {
+        context = appContext.getApplicationContext();
+        preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        mainHandler = new Handler(Looper.getMainLooper());
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        long maxBytes = activityManager.getMemoryClass() * 1024L * 1024L / MEMORY_FRACTION;
+        cache = new LedgerCache(maxBytes, (profile, ledger) -> {
+            ExpenseRepository repository = repositories.get(profile);
+            repositories.remove(profile);
+            if (repository != null) {
+                repository.close();
+            }
+        });
+
+        ids = parseIds(preferences.getString(KEY_IDS, String.valueOf(DEFAULT_PROFILE)));
+        int stored = preferences.getInt(KEY_CURRENT, DEFAULT_PROFILE);
+        int profile = indexOf(stored) >= 0 ? stored : DEFAULT_PROFILE;
+        requested = profile;
+        ExpenseRepository repository = new ExpenseRepository(context, profile);
+        loading.put(profile, repository);
+        repository.load(ledger -> mainHandler.post(() -> {
+            loading.remove(profile);
+            if (requested != profile) {
+                repository.close();
+                return;
+            }
+            //Ändringar som gjordes innan inläsningen var klar läggs ovanpå, se Expense.attach
+            Expense.attach(ledger, repository);
+            repositories.put(profile, repository);
+            cache.put(profile, ledger);
+        }));
+    }
+
+    /**
+     * Byter till en annan profil. En profil som finns i cachen byts in direkt,
+     * andra läses in på bakgrundstråden och byts in när de är klara.
+     *
+     * @param profile Profilens id.
+     */
+    public static void switchTo(int profile) {
+        if (profile == requested || indexOf(profile) < 0) {
+            return;
+        }
+        requested = profile;
+        Ledger cached = cache.get(profile);
+        if (cached != null) {
+            activate(profile, cached);
+            return;
+        }
+        if (loading.get(profile) != null) {
+            return; //Byts in när den pågående inläsningen är klar
+        }
+        ExpenseRepository repository = new ExpenseRepository(context, profile);
+        loading.put(profile, repository);
+        repository.load(ledger -> mainHandler.post(() -> {
+            loading.remove(profile);
+            //Användaren hann välja en annan profil medan denna lästes in
+            if (requested != profile) {
+                repository.close();
+                return;
+            }
+            ledger.setMutationLog(repository);
+            repositories.put(profile, repository);
+            activate(profile, ledger);
+        }));
+    }
+
+    /**
+     * Skapar en ny, tom profil och byter till den direkt.
+     *
+     * @param name Profilens namn.
+     * @return Den nya profilens id.
+     */
+    public static int create(String name) {
+        int profile = preferences.getInt(KEY_NEXT_ID, DEFAULT_PROFILE + 1);
+        ids = Arrays.copyOf(ids, ids.length + 1);
+        ids[ids.length - 1] = profile;
+        preferences.edit()
+                .putInt(KEY_NEXT_ID, profile + 1)
+                .putString(KEY_NAME + profile, name)
+                .putString(KEY_IDS, joinIds(ids))
+                .apply();
+
+        //En ny profil har en tom databas, så den behöver inte läsas in
+        requested = profile;
+        ExpenseRepository repository = new ExpenseRepository(context, profile);
+        Ledger ledger = new Ledger();
+        ledger.setMutationLog(repository);
+        repositories.put(profile, repository);
+        activate(profile, ledger);
+        return profile;
+    }
+
+    /**
+     * Hämtar alla profiler i den ordning de skapades.
+     *
+     * @return Profilernas id.
+     */
+    public static int[] getIds() {
+        return ids.clone();
+    }
+
+    /**
+     * Hämtar namnet på en profil.
+     *
+     * @param profile Profilens id.
+     * @return Profilens namn.
+     */
+    public static String getName(int profile) {
+        String name = preferences.getString(KEY_NAME + profile, null);
+        return name != null ? name : context.getString(R.string.profile_default);
+    }
+
+    /**
+     * Hämtar den profil som senast valdes. Den är aktiv, eller blir det när den är inläst.
+     *
+     * @return Profilens id.
+     */
+    public static int getCurrent() {
+        return requested;
+    }
+
+    /**
+     * Gör en profil aktiv och markerar den som senast använd i cachen, vilket även
+     * mäter om cachen och släpper de äldsta profilerna om den är för stor.
+     */
+    private static void activate(int profile, Ledger ledger) {
+        preferences.edit().putInt(KEY_CURRENT, profile).apply();
+        Expense.switchTo(ledger);
+        cache.put(profile, ledger);
+    }
+
+    private static int indexOf(int profile) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == profile) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int[] parseIds(String value) {
+        String[] parts = value.split(",");
+        int[] parsed = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            parsed[i] = Integer.parseInt(parts[i]);
+        }
+        return parsed;
+    }
+
+    private static String joinIds(int[] values) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(values[i]);
+        }
+        return builder.toString();
+    }
+}
@@ -1,32 +1,89 @@
 package com.budgy;
 
-import android.content.Intent;
 import android.os.Bundle;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
 import android.widget.Button;
-import androidx.appcompat.app.AppCompatActivity;
+import android.widget.EditText;
+import android.widget.Spinner;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
 
 /**
- * Start är den första aktiviteten i budgetappen.
+ * Start är den första skärmen i budgetappen, visad i {@link MainActivity}.
  * Den visar en startskärm med en knapp som låter användaren påbörja budgetprocessen.
+ * Här väljer användaren också vilken budgetprofil som ska användas, eller skapar en ny.
  */
-public class Start extends AppCompatActivity {
+public class Start extends Fragment {
+    Spinner profileSpinner;
+    EditText profileName;
+    int[] profileIds;
+
+    /**
+     * Konstruktor för Start. Layouten skapas av Fragment.
+     */
+    public Start() {
+        super(R.layout.start);
+    }
 
     /**
-     * Initialiserar aktiviteten och sätter layouten.
      * Hämtar referens till startknappen och sätter en lyssnare för att navigera vidare.
+     * Visar budgetprofilerna och byter profil direkt när användaren väljer en annan.
      *
-     * @param savedInstanceState Om aktiviteten återställs sparas tidigare tillstånd här.
+     * @param view               Skärmens rotvy.
+     * @param savedInstanceState Om skärmen återställs sparas tidigare tillstånd här.
      */
     @Override
-    protected void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-        setContentView(R.layout.start);
-
-        Button startButton = findViewById(R.id.start_button);
-        startButton.setOnClickListener(v -> {
-            //Navigera vidare till nästa
-            Intent intent = new Intent(Start.this, Income.class);
-            startActivity(intent);
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        profileSpinner = view.findViewById(R.id.profile_spinner);
+        profileName = view.findViewById(R.id.profile_name);
+        showProfiles();
+        profileSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                Profiles.switchTo(profileIds[position]); //Gör ingenting om profilen redan är vald
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {}
+        });
+
+        //Skapar en ny, tom profil med namnet i fältet och byter till den
+        Button newProfileButton = view.findViewById(R.id.new_profile_button);
+        newProfileButton.setOnClickListener(v -> {
+            String name = profileName.getText().toString().trim();
+            if (name.isEmpty()) {
+                return;
+            }
+            Profiles.create(name);
+            profileName.getText().clear();
+            showProfiles();
         });
+
+        Button startButton = view.findViewById(R.id.start_button);
+        //Navigera vidare till nästa
+        startButton.setOnClickListener(v -> ((MainActivity) requireActivity()).showIncome(false));
+    }
+
+    /**
+     * Visar alla profiler i listan med den valda profilen markerad.
+     */
+    private void showProfiles() {
+        profileIds = Profiles.getIds();
+        String[] names = new String[profileIds.length];
+        int selected = 0;
+        for (int i = 0; i < profileIds.length; i++) {
+            names[i] = Profiles.getName(profileIds[i]);
+            if (profileIds[i] == Profiles.getCurrent()) {
+                selected = i;
+            }
+        }
+        ArrayAdapter<String> adapter = new ArrayAdapter<>(requireContext(), android.R.layout.simple_spinner_item,
+                names);
+        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        profileSpinner.setAdapter(adapter);
+        profileSpinner.setSelection(selected, false);
     }
 }
@@ -1,131 +1,259 @@
 package com.budgy;
 
-import android.content.Intent;
-import android.graphics.Color;
+import android.net.Uri;
 import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.Button;
 import android.widget.LinearLayout;
+import android.widget.ProgressBar;
 import android.widget.TextView;
-import androidx.appcompat.app.AppCompatActivity;
-import org.eazegraph.lib.charts.PieChart;
-import org.eazegraph.lib.models.PieModel;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
+
+import java.io.FileNotFoundException;
+import java.io.InputStream;
 
 /**
- * Summary är en aktivitet som visar en sammanfattning av användarens budget.
- * Den presenterar en PieChart som visar fördelningen av inkomster och utgifter
- * samt en balansräkning. Användaren kan navigera tillbaka till föregående steg
- * eller börja om processen.
+ * Summary är en skärm i {@link MainActivity} som visar en sammanfattning av användarens budget.
+ * Den presenterar ett diagram, {@link PieChartView}, som visar fördelningen av inkomster och utgifter
+ * för innevarande månad samt en balansräkning, balansen för det senaste året och en prognos
+ * där lånen också prövas med extra amortering. Användaren kan navigera tillbaka till föregående
+ * steg eller börja om processen, och importera ett kontoutdrag i CSV-format från en fil.
  */
-public class Summary extends AppCompatActivity {
+public class Summary extends Fragment {
     LinearLayout startOver, income, expenses;
-    PieChart pieChart;
-    TextView balanceView;
+    LinearLayout legend;
+    PieChartView pieChart;
+    TextView balanceView, historyView, forecastView, debtView, incomePercentage;
+    ChartCache chartCache;
+    Button importButton, importCancel;
+    LinearLayout importProgress;
+    ProgressBar importSpinner;
+    TextView importStatus;
+    BudgetViewModel model;
+
+    //Öppnar ett dokument via systemets filväljare, registreras innan skärmen startas
+    private final ActivityResultLauncher<String[]> openStatement =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importStatement);
+
+    /**
+     * Konstruktor för Summary. Layouten skapas av Fragment.
+     */
+    public Summary() {
+        super(R.layout.summary);
+    }
 
     /**
-     * Initialiserar aktiviteten, sätter layouten och hämtar referenser till UI-komponenter.
-     * Beräknar och visar användarens balans samt skapar PieChart för budgetfördelning.
+     * Hämtar referenser till UI-komponenter och visar sammanfattningen från den
+     * gemensamma modellen, med balans och PieChart för budgetfördelning.
      * Hanterar knappar för att navigera mellan olika sektioner i appen.
      *
-     * @param savedInstanceState Om aktiviteten återställs sparas tidigare tillstånd här.
+     * @param view               Skärmens rotvy.
+     * @param savedInstanceState Om skärmen återställs sparas tidigare tillstånd här.
      */
     @Override
-    protected void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-        setContentView(R.layout.summary);
-
-        pieChart = findViewById(R.id.piechart);
-        setupPieChart(pieChart);
-
-        startOver = findViewById(R.id.start_over_button);
-        income = findViewById(R.id.income_button);
-        expenses = findViewById(R.id.expenses_button);
-        balanceView = findViewById(R.id.balance);
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        pieChart = view.findViewById(R.id.piechart);
+        legend = view.findViewById(R.id.legend);
+        startOver = view.findViewById(R.id.start_over_button);
+        income = view.findViewById(R.id.income_button);
+        expenses = view.findViewById(R.id.expenses_button);
+        balanceView = view.findViewById(R.id.balance);
+        historyView = view.findViewById(R.id.history);
+        forecastView = view.findViewById(R.id.forecast);
+        debtView = view.findViewById(R.id.debt_free);
+        incomePercentage = view.findViewById(R.id.income_percentage);
+        importButton = view.findViewById(R.id.import_button);
+        importCancel = view.findViewById(R.id.import_cancel);
+        importProgress = view.findViewById(R.id.import_progress);
+        importSpinner = view.findViewById(R.id.import_spinner);
+        importStatus = view.findViewById(R.id.import_status);
+        MainActivity host = (MainActivity) requireActivity();
 
         /**
-         * Beräknar och visar balans genom att subtrahera totala utgifter från inkomsten.
-         * Visar balansen i en TextView.
+         * Visar sammanfattningen direkt om den redan är beräknad för budgetens aktuella version,
+         * till exempel när användaren kommer tillbaka från Income utan att ha ändrat något.
+         * Annars beräknas den på en bakgrundstråd och visas när den är klar. Modellen
+         * beräknar om den när budgeten ändras medan den visas, till exempel under en import.
          */
-        double balance = Expense.getIncome() -
-                (Expense.getTotalFixedExpenses() +
-                        Expense.getTotalLoanCredits() +
-                        Expense.getTotalVariableExpenses());
-        balanceView.setText((balance >= 0 ? "+" : "") + balance + " KR");
+        model = new ViewModelProvider(host).get(BudgetViewModel.class);
+        chartCache = model.getChartCache();
+        model.refreshSummary();
+        model.getSummary().observe(getViewLifecycleOwner(), snapshot -> {
+            if (snapshot != null) {
+                showSummary(snapshot);
+            }
+        });
 
         /**
-         * Navigerar tillbaka till startskärmen och återställer alla budgetdata.
+         * Navigerar tillbaka till startskärmen och återställer den aktiva profilens budgetdata.
+         * Övriga profiler påverkas inte, och på startskärmen kan användaren välja en av dem.
          * Anropas när användaren trycker på "Start Over"-knappen.
          */
         startOver.setOnClickListener(v -> {
             Expense.resetData();
-            startActivity(new Intent(Summary.this, Start.class));
+            host.showStart();
         });
 
         /**
-         * Navigerar till Income-aktiviteten när användaren trycker på "Income"-knappen.
+         * Navigerar till Income när användaren trycker på "Income"-knappen.
          */
-        income.setOnClickListener(v -> {
-            Intent intent = new Intent(Summary.this, Income.class);
-            intent.putExtra("cameFromSummary", true); //Skickar flagga att användaren kom från Summary
-            startActivity(intent);
-        });
+        income.setOnClickListener(v -> host.showIncome(true)); //Användaren kom från Summary
 
         /**
-         * Navigerar till FixedExpense-aktiviteten när användaren trycker på "Expenses"-knappen.
+         * Navigerar till den första kategorins utgifter när användaren trycker på "Expenses"-knappen.
          */
-        expenses.setOnClickListener(v -> startActivity(new Intent(Summary.this, FixedExpense.class)));
+        expenses.setOnClickListener(v -> host.showCategory(Ledger.FIXED));
+
+        /**
+         * Låter användaren välja ett kontoutdrag och importerar det. Importen körs i modellen,
+         * så den fortsätter om skärmen roteras, och kan avbrytas medan den pågår.
+         * Banker anger CSV-filer olika, vissa som text och vissa som kalkylblad.
+         */
+        importButton.setOnClickListener(v -> openStatement.launch(new String[]{"text/*", "application/vnd.ms-excel"}));
+        importCancel.setOnClickListener(v -> model.cancelImport());
+        model.getImportStatus().observe(getViewLifecycleOwner(), this::showImport);
+    }
+
+    /**
+     * Startar importen av det valda kontoutdraget.
+     *
+     * @param uri Dokumentet som användaren valde, eller null om valet avbröts.
+     */
+    private void importStatement(Uri uri) {
+        if (uri == null) {
+            return;
+        }
+        try {
+            InputStream in = requireContext().getContentResolver().openInputStream(uri);
+            if (in == null) {
+                throw new FileNotFoundException(uri.toString());
+            }
+            model.startImport(in);
+        } catch (FileNotFoundException e) {
+            showImport(new BudgetViewModel.ImportStatus(BudgetViewModel.ImportStatus.FAILED, 0, 0));
+        }
     }
 
     /**
-     * Beräknar och visar PieChart med fördelning av inkomster och utgifter.
-     * Hämtar de aktuella budgetvärdena och beräknar procentandelar för varje kategori.
+     * Visar hur långt importen har kommit, eller resultatet när den är klar.
+     *
+     * @param status Importens läge, eller null om ingen import har startats.
+     */
+    private void showImport(BudgetViewModel.ImportStatus status) {
+        if (status == null) {
+            importProgress.setVisibility(View.GONE);
+            return;
+        }
+        boolean running = status.getState() == BudgetViewModel.ImportStatus.RUNNING;
+        importProgress.setVisibility(View.VISIBLE);
+        importSpinner.setVisibility(running ? View.VISIBLE : View.GONE);
+        importCancel.setVisibility(running ? View.VISIBLE : View.GONE);
+        importButton.setEnabled(!running);
+        switch (status.getState()) {
+            case BudgetViewModel.ImportStatus.RUNNING:
+                importStatus.setText(getString(R.string.import_running, status.getRowsImported()));
+                break;
+            case BudgetViewModel.ImportStatus.FINISHED:
+                importStatus.setText(getString(R.string.import_finished, status.getRowsImported(),
+                        status.getRowsSkipped()));
+                break;
+            case BudgetViewModel.ImportStatus.CANCELLED:
+                importStatus.setText(getString(R.string.import_cancelled, status.getRowsImported()));
+                break;
+            default:
+                importStatus.setText(R.string.import_failed);
+                break;
+        }
+    }
+
+    /**
+     * Visar en färdig sammanfattning i diagrammet och balansen.
+     * Diagram och balans kommer från samma version av budgeten så att de alltid stämmer överens.
+     *
+     * @param snapshot Sammanfattningen som ska visas.
+     */
+    private void showSummary(SummarySnapshot snapshot) {
+        setupPieChart(pieChart, snapshot);
+        balanceView.setText(snapshot.getBalanceLabel());
+        historyView.setText(snapshot.getHistoryLabel());
+        forecastView.setText(snapshot.getForecastLabel());
+        String debt = snapshot.getDebtLabel();
+        debtView.setVisibility(debt != null ? View.VISIBLE : View.GONE);
+        debtView.setText(debt);
+    }
+
+    /**
+     * Visar PieChart med fördelning av inkomster och utgifter, med en sektion
+     * och en rad i förklaringen per kategori oavsett hur många kategorier som finns.
      * Uppdaterar PieChart och TextViews med procentandelen av varje kategori.
+     * Diagrammet animeras bara när datan har ändrats sedan det senast ritades,
+     * annars visas den sparade bilden direkt.
      *
      * @param pieChart PieChart som ska uppdateras med budgetfördelning.
+     * @param snapshot Sammanfattningen som ska visas.
      */
-    private void setupPieChart(PieChart pieChart) {
-        //Hämta totala inkomst och utgifter från Expense.java
-        double totalIncome = Expense.getIncome();
-        double totalFixed = Expense.getTotalFixedExpenses();
-        double totalLoan = Expense.getTotalLoanCredits();
-        double totalVariable = Expense.getTotalVariableExpenses();
-        double totalBudget = totalIncome + totalFixed + totalLoan + totalVariable;
-
-        //Hämta TextViews från layouten
-        TextView incomePercentage = findViewById(R.id.income_percentage);
-        TextView fixedPercentage = findViewById(R.id.fixed_percentage);
-        TextView loanPercentage = findViewById(R.id.loanncred_percentage);
-        TextView variablePercentage = findViewById(R.id.variable_percentage);
+    private void setupPieChart(PieChartView pieChart, SummarySnapshot snapshot) {
+        BudgetShares budget = snapshot.getShares();
+        int categoryCount = snapshot.getCategoryCount();
+
+        //Förklaringen har inkomsten först och sedan en rad per kategori
+        incomePercentage.setText(snapshot.getIncomeLabel());
+        setupLegend(snapshot);
 
         //Rensar PieChart för att ta bort tidigare data innan nya värden läggs till
-        pieChart.clearChart();
+        pieChart.clear();
 
         /**
-         * Beräknar procentandelen av varje kategori i budgeten och uppdaterar TextViews samt PieChart.
-         * Procentvärdena visas bredvid varje kategori och PieChart-sektionerna skapas dynamiskt.
+         * Lägger till en sektion i PieChart för inkomsten och för varje kategori med belopp.
+         * Beloppen hämtas från samma version av budgeten, i kronor för visning.
          */
-        if (totalBudget > 0) {
-            float incomePercent = (float) ((totalIncome / totalBudget) * 100);
-            float fixedPercent = (float) ((totalFixed / totalBudget) * 100);
-            float loanPercent = (float) ((totalLoan / totalBudget) * 100);
-            float variablePercent = (float) ((totalVariable / totalBudget) * 100);
-
-            //Uppdatera TextViews med procent
-            incomePercentage.setText("Income: " + String.format("%.1f", incomePercent) + "%");
-            fixedPercentage.setText("Fixed: " + String.format("%.1f", fixedPercent) + "%");
-            loanPercentage.setText("Loan/Credit: " + String.format("%.1f", loanPercent) + "%");
-            variablePercentage.setText("Variable: " + String.format("%.1f", variablePercent) + "%");
-
-            //Lägg till "slices" i PieChart
-            if (totalIncome > 0)
-                pieChart.addPieSlice(new PieModel("Income", (float) totalIncome, Color.parseColor("#B8E1FF")));
-            if (totalFixed > 0)
-                pieChart.addPieSlice(new PieModel("Fixed", (float) totalFixed, Color.parseColor("#087E8B")));
-            if (totalLoan > 0)
-                pieChart.addPieSlice(new PieModel("Loan/Credit", (float) totalLoan, Color.parseColor("#FFF275")));
-            if (totalVariable > 0)
-                pieChart.addPieSlice(new PieModel("Variable", (float) totalVariable, Color.parseColor("#C492B1")));
+        if (budget.hasShares()) {
+            if (budget.getIncome() > 0) {
+                pieChart.addSlice("Income", (float) Money.toKronor(budget.getIncome()), CategoryColors.INCOME);
+            }
+            for (int c = 0; c < categoryCount; c++) {
+                long total = budget.getTotal(c);
+                if (total > 0) {
+                    pieChart.addSlice(snapshot.getCategoryName(c), (float) Money.toKronor(total), CategoryColors.of(c));
+                }
+            }
+        }
+        //Slutligen startas en animation för PieChart, om datan är ny
+        boolean changed = !chartCache.holds(snapshot.getVersion(), snapshot.getMonth());
+        pieChart.setCache(chartCache, snapshot.getVersion(), snapshot.getMonth());
+        if (changed) {
+            pieChart.startAnimation();
+        }
+    }
 
+    /**
+     * Visar en rad per kategori i förklaringen under diagrammet. Befintliga rader
+     * återanvänds och endast rader för nya kategorier skapas.
+     *
+     * @param snapshot Sammanfattningen som ska visas.
+     */
+    private void setupLegend(SummarySnapshot snapshot) {
+        int categoryCount = snapshot.getCategoryCount();
+        //Första raden i förklaringen är inkomsten
+        int needed = categoryCount + 1;
+        LayoutInflater inflater = getLayoutInflater();
+        for (int i = legend.getChildCount(); i < needed; i++) {
+            legend.addView(inflater.inflate(R.layout.legend_item, legend, false));
+        }
+        if (legend.getChildCount() > needed) {
+            legend.removeViews(needed, legend.getChildCount() - needed);
+        }
+        for (int c = 0; c < categoryCount; c++) {
+            View row = legend.getChildAt(c + 1);
+            row.findViewById(R.id.legend_color).setBackgroundColor(CategoryColors.of(c));
+            TextView label = row.findViewById(R.id.legend_label);
+            label.setText(snapshot.getCategoryLabel(c));
         }
-        //Slutligen startas en animation för PieChart.
-        pieChart.startAnimation();
     }
 }